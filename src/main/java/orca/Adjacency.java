@@ -0,0 +1,84 @@
+package orca;
+
+/**
+ * An oracle that answers whether two nodes of a graph are connected. 
+ * 
+ * Implementations should not allocate objects per query: this is called in 
+ * the innermost loops of the orbit counting. 
+ * 
+ * @author Peter
+ *
+ */
+public interface Adjacency
+{
+	/**
+	 * Graphs with at most this many nodes always use a bit matrix (of at most
+	 * 8 MB).
+	 */
+	public static final int SMALL_GRAPH = 8192;
+	
+	/**
+	 * Graphs with at most this average degree use binary search over the 
+	 * neighbor lists.
+	 */
+	public static final double SPARSE_DEGREE = 4.0;
+	
+	/**
+	 * @return True if there is a link between a and b. 
+	 */
+	public boolean connected(int a, int b);
+	
+	/**
+	 * An estimate of the memory used by this structure in bytes, 
+	 * excluding the graph itself. 
+	 */
+	public long memory();
+	
+	/**
+	 * Chooses an adjacency structure based on the number of nodes and links 
+	 * in the graph. Small or dense graphs get a bit matrix, very sparse graphs
+	 * use binary search over the sorted neighbor lists, and everything else 
+	 * gets a hash set of packed node pairs.
+	 * 
+	 * @param graph
+	 * @return
+	 */
+	public static Adjacency forGraph(OrcaGraph graph)
+	{
+		long n = graph.size(), m = graph.numLinks();
+		
+		if(MatrixAdjacency.supports(graph) && 
+				(n <= SMALL_GRAPH || MatrixAdjacency.memory(n) <= HashAdjacency.memory(m)))
+			return matrix(graph);
+		
+		if(n > 0 && 2.0 * m / n <= SPARSE_DEGREE)
+			return sorted(graph);
+		
+		return hashed(graph);
+	}
+	
+	/**
+	 * An open-addressing hash set of links, packed into longs.
+	 */
+	public static Adjacency hashed(OrcaGraph graph)
+	{
+		return new HashAdjacency(graph);
+	}
+	
+	/**
+	 * A bit matrix with a bit for every pair of nodes. Requires n^2/8 bytes.
+	 */
+	public static Adjacency matrix(OrcaGraph graph)
+	{
+		return new MatrixAdjacency(graph);
+	}
+	
+	/**
+	 * Binary search over the shorter of the two (sorted) neighbor lists. 
+	 * Requires no memory beyond the graph.
+	 */
+	public static Adjacency sorted(OrcaGraph graph)
+	{
+		return new SortedAdjacency(graph);
+	}
+}
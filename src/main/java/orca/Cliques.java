@@ -0,0 +1,361 @@
+package orca;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts, for every node, the number of complete graphlets (cliques) of a 
+ * given size that it is part of. 
+ * 
+ * The links are oriented along a degeneracy ordering of the nodes, so that 
+ * every node has at most as many out-neighbors as the degeneracy of the 
+ * graph. Each clique is then enumerated exactly once, from its first node in 
+ * the ordering, by intersecting the sorted out-neighbor rows, and all its 
+ * members are credited. 
+ * 
+ * A {@link CursorGraph} is not oriented in memory: its rows are read with a
+ * cursor when they are needed, and filtered to the out-neighbors.
+ * 
+ * The nodes can be divided over several {@link Worker}s, which may run 
+ * concurrently.
+ * 
+ * @author Peter
+ *
+ */
+final class Cliques
+{
+	private final int size;
+	
+	// * The oriented graph, in CSR form, or the cursor graph it is read from
+	private final int[] offsets;
+	private final int[] targets;
+	private final CursorGraph cursorGraph;
+	private final int maxOutDegree;
+	
+	private final AtomicLongArray counts;
+	
+	/**
+	 * @param graph
+	 * @param size The size of the cliques to count.
+	 */
+	public Cliques(OrcaGraph graph, int size)
+	{
+		if(size < 1)
+			throw new IllegalArgumentException("Clique size ("+size+") should be positive.");
+		
+		this.size = size;
+		
+		int n = graph.size();
+		int[] inOffsets = graph.offsets(), inTargets = graph.targets();
+		
+		int[] rank = degeneracyOrder(inOffsets, inTargets);
+		
+		offsets = new int[n + 1];
+		for (int v = 0; v < n; v++)
+		{
+			int out = 0;
+			for (int e = inOffsets[v]; e < inOffsets[v + 1]; e++)
+				if(rank[inTargets[e]] > rank[v])
+					out++;
+			
+			offsets[v + 1] = offsets[v] + out;
+		}
+		
+		// * the rows stay sorted by node index
+		targets = new int[offsets[n]];
+		int max = 0;
+		for (int v = 0; v < n; v++)
+		{
+			int k = offsets[v];
+			for (int e = inOffsets[v]; e < inOffsets[v + 1]; e++)
+				if(rank[inTargets[e]] > rank[v])
+					targets[k++] = inTargets[e];
+			
+			max = Math.max(max, offsets[v + 1] - offsets[v]);
+		}
+		
+		maxOutDegree = max;
+		counts = new AtomicLongArray(n);
+		cursorGraph = null;
+	}
+	
+	/**
+	 * Counts the cliques of a {@link CursorGraph}, such as a compressed or 
+	 * mapped graph. The degeneracy ordering needs random access to the rows, 
+	 * so the links are oriented by ascending degree instead, which bounds the
+	 * out-degree by the square root of twice the number of links.
+	 * 
+	 * The oriented rows are read again whenever they are needed, so apart 
+	 * from the counts this takes no memory beyond the graph.
+	 * 
+	 * @param graph
+	 * @param size The size of the cliques to count.
+	 */
+	public Cliques(CursorGraph graph, int size)
+	{
+		if(size < 1)
+			throw new IllegalArgumentException("Clique size ("+size+") should be positive.");
+		
+		this.size = size;
+		
+		offsets = null;
+		targets = null;
+		cursorGraph = graph;
+		
+		CursorGraph.Cursor cursor = graph.cursor();
+		int max = 0;
+		for (int v = 0; v < graph.size(); v++)
+			max = Math.max(max, outDegree(cursor, v));
+		
+		maxOutDegree = max;
+		counts = new AtomicLongArray(graph.size());
+	}
+	
+	/**
+	 * The number of out-neighbors of node v in a cursor graph.
+	 */
+	private int outDegree(CursorGraph.Cursor cursor, int v)
+	{
+		int out = 0;
+		cursor.start(v);
+		while(cursor.hasNext())
+			if(before(cursorGraph, v, cursor.next()))
+				out++;
+		
+		return out;
+	}
+	
+	/**
+	 * Whether node v comes before node w in the ascending degree order.
+	 */
+	private static boolean before(CursorGraph graph, int v, int w)
+	{
+		int dv = graph.degree(v), dw = graph.degree(w);
+		return dv < dw || (dv == dw && v < w);
+	}
+	
+	/**
+	 * An estimate of the cost of enumerating the cliques that start at node v.
+	 */
+	public long cost(int v)
+	{
+		long out = cursorGraph == null ? 
+				offsets[v + 1] - offsets[v] : outDegree(cursorGraph.cursor(), v);
+		return 1 + out * out;
+	}
+	
+	/**
+	 * The memory used for counting, in bytes: the oriented graph, the counts 
+	 * and the scratch state of one worker.
+	 */
+	public long memory()
+	{
+		long memory = 8L * counts.length() + 4L * size * maxOutDegree;
+		if(cursorGraph == null)
+			memory += 4L * (offsets.length + targets.length);
+		else
+			memory += 4L * maxOutDegree;
+		
+		return memory;
+	}
+	
+	/**
+	 * A new worker, with its own scratch state.
+	 */
+	public Worker worker()
+	{
+		return new Worker();
+	}
+	
+	/**
+	 * The counts, after all nodes have been processed by some worker.
+	 */
+	public long[] counts()
+	{
+		long[] result = new long[counts.length()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = counts.get(i);
+		
+		return result;
+	}
+	
+	final class Worker
+	{
+		// * The candidates at each depth of the recursion
+		private final int[][] candidates = new int[size][maxOutDegree];
+		private final int[] members = new int[size];
+		
+		// * For a cursor graph, the out-neighbors of a node, read from its row
+		private final CursorGraph.Cursor cursor = 
+				cursorGraph == null ? null : cursorGraph.cursor();
+		private final int[] row = cursorGraph == null ? null : new int[maxOutDegree];
+		
+		// * The out-neighbors of the last node loaded, at [from, to) of rowTargets
+		private int[] rowTargets;
+		private int from, to;
+		
+		/**
+		 * Enumerates the cliques of which v is the first node in the 
+		 * ordering.
+		 */
+		public void count(int v)
+		{
+			if(size == 1)
+			{
+				counts.incrementAndGet(v);
+				return;
+			}
+			
+			load(v);
+			int num = to - from;
+			System.arraycopy(rowTargets, from, candidates[0], 0, num);
+			
+			members[0] = v;
+			extend(1, candidates[0], num);
+		}
+		
+		/**
+		 * Extends the clique of the first depth members with the given 
+		 * candidates, which are out-neighbors of all members.
+		 */
+		private void extend(int depth, int[] cand, int num)
+		{
+			if(num < size - depth)
+				return;
+			
+			if(depth == size - 1)
+			{
+				for (int i = 0; i < num; i++)
+					counts.incrementAndGet(cand[i]);
+				for (int j = 0; j < depth; j++)
+					counts.addAndGet(members[j], num);
+				
+				return;
+			}
+			
+			int[] next = candidates[depth];
+			for (int i = 0; i < num; i++)
+			{
+				int c = cand[i];
+				
+				// * intersect the candidates with the out-neighbors of c
+				load(c);
+				
+				int k = 0;
+				int a = 0, e = from;
+				while(a < num && e < to)
+				{
+					int x = cand[a], y = rowTargets[e];
+					if(x < y)
+						a++;
+					else if(x > y)
+						e++;
+					else 
+					{
+						next[k++] = x;
+						a++; e++;
+					}
+				}
+				
+				members[depth] = c;
+				extend(depth + 1, next, k);
+			}
+		}
+		
+		/**
+		 * Points rowTargets, from and to at the out-neighbors of node v.
+		 */
+		private void load(int v)
+		{
+			if(cursorGraph == null)
+			{
+				rowTargets = targets;
+				from = offsets[v];
+				to = offsets[v + 1];
+				return;
+			}
+			
+			int k = 0;
+			cursor.start(v);
+			while(cursor.hasNext())
+			{
+				int w = cursor.next();
+				if(before(cursorGraph, v, w))
+					row[k++] = w;
+			}
+			
+			rowTargets = row;
+			from = 0;
+			to = k;
+		}
+	}
+	
+	/**
+	 * Computes a degeneracy ordering of the nodes, by repeatedly removing a 
+	 * node of minimal degree (Batagelj and Zaversnik). 
+	 * 
+	 * @return The position of each node in the ordering.
+	 */
+	static int[] degeneracyOrder(int[] offsets, int[] targets)
+	{
+		int n = offsets.length - 1;
+		
+		int[] degree = new int[n];
+		int maxDegree = 0;
+		for (int v = 0; v < n; v++)
+		{
+			degree[v] = offsets[v + 1] - offsets[v];
+			maxDegree = Math.max(maxDegree, degree[v]);
+		}
+		
+		// * sort the nodes by degree, with bin[d] the start of degree d
+		int[] bin = new int[maxDegree + 1];
+		for (int v = 0; v < n; v++)
+			bin[degree[v]]++;
+		
+		int start = 0;
+		for (int d = 0; d <= maxDegree; d++)
+		{
+			int num = bin[d];
+			bin[d] = start;
+			start += num;
+		}
+		
+		int[] vertices = new int[n];
+		int[] position = new int[n];
+		for (int v = 0; v < n; v++)
+		{
+			position[v] = bin[degree[v]]++;
+			vertices[position[v]] = v;
+		}
+		
+		for (int d = maxDegree; d > 0; d--)
+			bin[d] = bin[d - 1];
+		bin[0] = 0;
+		
+		// * remove the nodes in order, moving their neighbors down a bin
+		for (int i = 0; i < n; i++)
+		{
+			int v = vertices[i];
+			for (int e = offsets[v]; e < offsets[v + 1]; e++)
+			{
+				int u = targets[e];
+				if(degree[u] > degree[v])
+				{
+					int du = degree[u], pu = position[u];
+					int pw = bin[du], w = vertices[pw];
+					
+					if(u != w)
+					{
+						position[u] = pw; vertices[pu] = w;
+						position[w] = pu; vertices[pw] = u;
+					}
+					
+					bin[du]++;
+					degree[u]--;
+				}
+			}
+		}
+		
+		return position;
+	}
+}
@@ -0,0 +1,140 @@
+package orca;
+
+import java.util.Arrays;
+
+/**
+ * Stage 1 of the 5-node counting: for each pair of nodes, the number of 
+ * common neighbors x, and for each triple of nodes with at least two links
+ * among them, the number of nodes x adjacent to all three. 
+ * 
+ * The pairs and triples are counted from their smallest node a, by looking at
+ * the nodes after a in the neighbor rows of the neighbors x of a. Only the 
+ * triples with at least two links are enumerated: if b and c are both 
+ * neighbors of a, the pair {b, c} is taken from the neighbors shared by a and
+ * x. If only b is a neighbor of a, c must be a neighbor of b, and is found by
+ * intersecting the rows of x and b. The cost therefore depends on the number
+ * of triples counted, and not on the cube of the degree of x. 
+ * 
+ * An instance holds the scratch state for one worker, and is not 
+ * thread-safe.
+ * 
+ * @author Peter
+ *
+ */
+final class Common
+{
+	private final int[] offsets;
+	private final int[] targets;
+	private final int[] triangles;
+	
+	private final Adjacency adjacency;
+	
+	private final PairCounter common2;
+	private final TripleCounter common3;
+	
+	private final Marks aNeighbors;
+	
+	/**
+	 * The positions in the row of x of the neighbors of x after a that are 
+	 * also neighbors of a.
+	 */
+	private int[] shared = new int[16];
+	
+	/**
+	 * @param graph
+	 * @param triangles The number of triangles for each link, aligned with the
+	 * 	targets of the graph.
+	 * @param adjacency
+	 * @param common2 The counter for the pairs, or null to skip them.
+	 * @param common3 The counter for the triples, or null to skip them.
+	 */
+	public Common(OrcaGraph graph, int[] triangles, Adjacency adjacency, 
+			PairCounter common2, TripleCounter common3)
+	{
+		this.offsets = graph.offsets();
+		this.targets = graph.targets();
+		this.triangles = triangles;
+		this.adjacency = adjacency;
+		this.common2 = common2;
+		this.common3 = common3;
+		
+		aNeighbors = new Marks(graph.size());
+	}
+	
+	/**
+	 * Counts the pairs and triples of which a is the smallest node.
+	 */
+	public void count(int a)
+	{
+		aNeighbors.next();
+		for (int e = offsets[a]; e < offsets[a + 1]; e++)
+			aNeighbors.mark(targets[e], e - offsets[a]);
+		
+		for (int e = offsets[a]; e < offsets[a + 1]; e++)
+		{
+			int x = targets[e];
+			
+			// * the neighbors of x after a
+			int start = Arrays.binarySearch(targets, offsets[x], offsets[x + 1], a) + 1;
+			int end = offsets[x + 1];
+			
+			if(shared.length < end - start)
+				shared = new int[Integer.highestOneBit(end - start) * 2];
+			
+			int numShared = 0;
+			for (int bPos = start; bPos < end; bPos++) 
+			{
+				int b = targets[bPos];
+				
+				if(common2 != null)
+					common2.add(a, b);
+				
+				if(common3 != null && aNeighbors.contains(b))
+					shared[numShared++] = bPos;
+			}
+			
+			for (int i = 0; i < numShared; i++)
+			{
+				int b = targets[shared[i]];
+				
+				// * links ab and ac
+				for (int j = i + 1; j < numShared; j++)
+					common3.add(a, b, targets[shared[j]]);
+				
+				// * links ab and bc, but not ac. The triangle x-a-b is always 
+				//   one of the common neighbors of x and b.
+				if(triangles[shared[i]] > 1)
+					wedges(a, x, b, start, end);
+			}
+		}
+	}
+	
+	/**
+	 * Counts the triples {a, b, c} with c after a in the rows of both x and b, 
+	 * and c not a neighbor of a. This iterates over the shorter of the two 
+	 * rows, and checks the other with the adjacency structure.
+	 */
+	private void wedges(int a, int x, int b, int xFrom, int xTo)
+	{
+		int bFrom = Arrays.binarySearch(targets, offsets[b], offsets[b + 1], a) + 1;
+		int bTo = offsets[b + 1];
+		
+		if(bTo - bFrom < xTo - xFrom)
+		{
+			for (int cPos = bFrom; cPos < bTo; cPos++)
+			{
+				int c = targets[cPos];
+				if(! aNeighbors.contains(c) && adjacency.connected(x, c))
+					common3.add(a, b, c);
+			}
+		} else
+		{
+			for (int cPos = xFrom; cPos < xTo; cPos++)
+			{
+				int c = targets[cPos];
+				if(! aNeighbors.contains(c) && adjacency.connected(b, c))
+					common3.add(a, b, c);
+			}
+		}
+	}
+}
@@ -0,0 +1,496 @@
+package orca;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * A simple, undirected graph with compressed neighbor lists, for graphs that
+ * are too large for an {@link OrcaGraph}. 
+ * 
+ * Each sorted neighbor row is stored as a sequence of variable-length 
+ * integers (7 bits per byte): the first neighbor as the (zigzag encoded) 
+ * difference with the node itself, and every next neighbor as the gap with 
+ * the previous one, minus one. Optionally, the number of triangles on each 
+ * link follows its neighbor. With a good node ordering (see 
+ * {@link OrcaGraph#bfsOrder()}) most gaps take a single byte.
+ * 
+ * The bytes are stored in pages of at most 1 GB, so the graph is not limited
+ * by the maximum array size. Rows are read sequentially with a 
+ * {@link Cursor}, which does not allocate.
+ * 
+ * Instances are immutable.
+ * 
+ * @author Peter
+ *
+ */
+public final class CompressedGraph implements CursorGraph
+{
+	static final int PAGE_BITS = 30;
+	
+	private final int pageBits;
+	private final long pageMask;
+	
+	private final int[] degree;
+	private final long[] offsets;
+	private final byte[][] pages;
+	
+	private final boolean triangles;
+	private final long numLinks;
+	
+	private CompressedGraph(int[] degree, long[] offsets, byte[][] pages, 
+			boolean triangles, int pageBits)
+	{
+		this.degree = degree;
+		this.offsets = offsets;
+		this.pages = pages;
+		this.triangles = triangles;
+		this.pageBits = pageBits;
+		this.pageMask = (1L << pageBits) - 1;
+		
+		long sum = 0;
+		for(int d : degree)
+			sum += d;
+		this.numLinks = sum / 2;
+	}
+	
+	/**
+	 * Number of nodes
+	 */
+	@Override
+	public int size()
+	{
+		return degree.length;
+	}
+	
+	/**
+	 * Number of (undirected) links
+	 */
+	public long numLinks()
+	{
+		return numLinks;
+	}
+	
+	@Override
+	public int degree(int node)
+	{
+		return degree[node];
+	}
+	
+	/**
+	 * Whether the number of triangles on each link is stored.
+	 */
+	@Override
+	public boolean hasTriangles()
+	{
+		return triangles;
+	}
+	
+	/**
+	 * The memory used by this graph in bytes.
+	 */
+	public long memory()
+	{
+		long memory = 4L * degree.length + 8L * offsets.length;
+		for(byte[] page : pages)
+			memory += page.length;
+		
+		return memory;
+	}
+	
+	/**
+	 * A new cursor over the rows of this graph. Each thread should use its own.
+	 */
+	@Override
+	public Cursor cursor()
+	{
+		return new Cursor();
+	}
+	
+	/**
+	 * Reads the neighbors of a node in ascending order, together with the 
+	 * number of triangles on each link, if these are stored.
+	 */
+	public final class Cursor implements CursorGraph.Cursor
+	{
+		private long position;
+		private int remaining;
+		private int node;
+		private int previous;
+		private int count;
+		
+		private Cursor()
+		{
+		}
+		
+		/**
+		 * Moves the cursor to the start of the row of the given node. 
+		 */
+		@Override
+		public void start(int node)
+		{
+			this.node = node;
+			this.position = offsets[node];
+			this.remaining = degree[node];
+			this.previous = -1;
+		}
+		
+		/**
+		 * Moves the cursor to the same position as the given cursor, so that 
+		 * the rest of a row can be read twice.
+		 */
+		public void set(Cursor other)
+		{
+			this.node = other.node;
+			this.position = other.position;
+			this.remaining = other.remaining;
+			this.previous = other.previous;
+			this.count = other.count;
+		}
+		
+		@Override
+		public void set(CursorGraph.Cursor other)
+		{
+			set((Cursor) other);
+		}
+		
+		@Override
+		public boolean hasNext()
+		{
+			return remaining > 0;
+		}
+		
+		/**
+		 * The next neighbor.
+		 */
+		@Override
+		public int next()
+		{
+			long value = read();
+			
+			if(previous < 0)
+				previous = (int) (node + ((value >>> 1) ^ -(value & 1)));
+			else
+				previous += (int) value + 1;
+			
+			if(triangles)
+				count = (int) read();
+			
+			remaining--;
+			return previous;
+		}
+		
+		/**
+		 * The number of triangles on the link to the last neighbor returned 
+		 * by {@link #next()}.
+		 */
+		@Override
+		public int triangles()
+		{
+			return count;
+		}
+		
+		private long read()
+		{
+			long value = 0;
+			int shift = 0;
+			
+			while(true)
+			{
+				byte b = pages[(int) (position >>> pageBits)][(int) (position & pageMask)];
+				position++;
+				
+				value |= (long) (b & 0x7f) << shift;
+				if(b >= 0)
+					return value;
+				
+				shift += 7;
+			}
+		}
+	}
+	
+	/**
+	 * Compresses the given graph.
+	 */
+	public static CompressedGraph of(OrcaGraph graph)
+	{
+		Builder builder = new Builder(graph.size());
+		
+		int[] offsets = graph.offsets(), targets = graph.targets();
+		for(int i = 0; i < graph.size(); i++)
+			builder.add(Arrays.copyOfRange(targets, offsets[i], offsets[i + 1]));
+		
+		return builder.build();
+	}
+	
+	/**
+	 * A copy of this graph with the number of triangles on each link. The 
+	 * rows are processed in parallel.
+	 */
+	@Override
+	public CompressedGraph withTriangles()
+	{
+		int n = size();
+		
+		int numRanges = Math.max(1, Math.min(n, 
+				8 * Runtime.getRuntime().availableProcessors()));
+		
+		// * Divide the nodes into ranges with similar numbers of links
+		int[] bounds = new int[numRanges + 1];
+		long target = Math.max(1, 2 * numLinks / numRanges), sum = 0;
+		int r = 1;
+		for(int i = 0; i < n && r < numRanges; i++)
+		{
+			sum += degree[i];
+			if(sum >= target * r)
+				bounds[r++] = i + 1;
+		}
+		for(; r <= numRanges; r++)
+			bounds[r] = n;
+		
+		// * Encode each range separately
+		Sink[] sinks = new Sink[numRanges];
+		long[][] rangeOffsets = new long[numRanges][];
+		
+		IntStream.range(0, numRanges).parallel().forEach(range -> {
+			Cursor row = cursor(), other = cursor(), common = cursor();
+			Sink sink = new Sink(pageBits);
+			
+			int from = bounds[range], to = bounds[range + 1];
+			long[] positions = new long[to - from];
+			
+			for(int i = from; i < to; i++)
+			{
+				positions[i - from] = sink.position();
+				
+				int previous = -1;
+				row.start(i);
+				while(row.hasNext())
+				{
+					int j = row.next();
+					
+					// * count the common neighbors of i and j
+					common.start(i);
+					other.start(j);
+					int count = intersect(common, other);
+					
+					sink.write(previous < 0 ? zigzag(j - i) : j - previous - 1);
+					sink.write(count);
+					previous = j;
+				}
+			}
+			
+			sinks[range] = sink;
+			rangeOffsets[range] = positions;
+		});
+		
+		// * Concatenate
+		Sink sink = new Sink(pageBits);
+		long[] newOffsets = new long[n + 1];
+		for(int range = 0; range < numRanges; range++)
+		{
+			long base = sink.position();
+			for(int i = bounds[range]; i < bounds[range + 1]; i++)
+				newOffsets[i] = base + rangeOffsets[range][i - bounds[range]];
+			
+			sink.append(sinks[range]);
+			sinks[range] = null;
+		}
+		newOffsets[n] = sink.position();
+		
+		return new CompressedGraph(degree, newOffsets, sink.finish(), true, pageBits);
+	}
+	
+	/**
+	 * The number of elements two rows have in common. 
+	 */
+	private static int intersect(Cursor a, Cursor b)
+	{
+		if(! a.hasNext() || ! b.hasNext())
+			return 0;
+		
+		int count = 0;
+		int x = a.next(), y = b.next();
+		while(true)
+		{
+			if(x < y)
+			{
+				if(! a.hasNext()) 
+					return count;
+				x = a.next();
+			} else if(x > y)
+			{
+				if(! b.hasNext()) 
+					return count;
+				y = b.next();
+			} else
+			{
+				count++;
+				if(! a.hasNext() || ! b.hasNext())
+					return count;
+				x = a.next();
+				y = b.next();
+			}
+		}
+	}
+	
+	private static long zigzag(int value)
+	{
+		return ((long) value << 1) ^ ((long) value >> 63);
+	}
+	
+	/**
+	 * Builds a compressed graph from its neighbor rows, given in order of the
+	 * nodes. The rows should describe a simple, undirected graph: every link 
+	 * should be given in both directions. 
+	 */
+	public static class Builder
+	{
+		private final int[] degree;
+		private final long[] offsets;
+		private final Sink sink;
+		private final int pageBits;
+		
+		private int next = 0;
+		
+		/**
+		 * @param size The number of nodes.
+		 */
+		public Builder(int size)
+		{
+			this(size, PAGE_BITS);
+		}
+		
+		Builder(int size, int pageBits)
+		{
+			degree = new int[size];
+			offsets = new long[size + 1];
+			sink = new Sink(pageBits);
+			this.pageBits = pageBits;
+		}
+		
+		/**
+		 * Adds the row of the next node.
+		 * 
+		 * @param neighbors The neighbors of the node, in strictly ascending 
+		 * 	order, without the node itself.
+		 */
+		public Builder add(int[] neighbors)
+		{
+			return add(neighbors, neighbors.length);
+		}
+		
+		/**
+		 * Adds the row of the next node.
+		 * 
+		 * @param neighbors The neighbors of the node are the first length 
+		 * 	elements of this array, in strictly ascending order, without the 
+		 * 	node itself.
+		 */
+		public Builder add(int[] neighbors, int length)
+		{
+			if(next >= degree.length)
+				throw new IllegalStateException("All "+degree.length+" rows have been added.");
+			
+			int node = next++;
+			
+			offsets[node] = sink.position();
+			degree[node] = length;
+			
+			for(int k = 0; k < length; k++)
+			{
+				int j = neighbors[k];
+				if(j < 0 || j >= degree.length || j == node)
+					throw new IllegalArgumentException("Neighbor "+j+" of node "+node+" is out of range or a self-loop.");
+				if(k > 0 && j <= neighbors[k - 1])
+					throw new IllegalArgumentException("Row of node "+node+" is not strictly ascending.");
+				
+				sink.write(k == 0 ? zigzag(j - node) : j - neighbors[k - 1] - 1);
+			}
+			
+			return this;
+		}
+		
+		public CompressedGraph build()
+		{
+			if(next != degree.length)
+				throw new IllegalStateException("Only "+next+" of "+degree.length+" rows have been added.");
+			
+			offsets[degree.length] = sink.position();
+			
+			return new CompressedGraph(degree, offsets, sink.finish(), false, pageBits);
+		}
+	}
+	
+	/**
+	 * A growing sequence of bytes, stored in pages of 2^pageBits bytes.
+	 */
+	private static final class Sink
+	{
+		private final int pageSize;
+		
+		private final List<byte[]> full = new ArrayList<byte[]>();
+		private byte[] current = new byte[64];
+		private int fill = 0;
+		
+		public Sink(int pageBits)
+		{
+			pageSize = 1 << pageBits;
+			current = new byte[Math.min(64, pageSize)];
+		}
+		
+		public long position()
+		{
+			return (long) full.size() * pageSize + fill;
+		}
+		
+		public void write(long value)
+		{
+			while((value & ~0x7fL) != 0)
+			{
+				put((byte) ((value & 0x7f) | 0x80));
+				value >>>= 7;
+			}
+			
+			put((byte) value);
+		}
+		
+		private void put(byte b)
+		{
+			if(fill == current.length)
+			{
+				if(current.length < pageSize)
+					current = Arrays.copyOf(current, Math.min(2 * current.length, pageSize));
+				else 
+				{
+					full.add(current);
+					current = new byte[Math.min(64, pageSize)];
+					fill = 0;
+				}
+			}
+			
+			current[fill++] = b;
+		}
+		
+		/**
+		 * Appends the bytes of another sink.
+		 */
+		public void append(Sink other)
+		{
+			for(byte[] page : other.full)
+				for(byte b : page)
+					put(b);
+			for(int i = 0; i < other.fill; i++)
+				put(other.current[i]);
+		}
+		
+		public byte[][] finish()
+		{
+			byte[][] pages = full.toArray(new byte[full.size() + 1][]);
+			pages[full.size()] = Arrays.copyOf(current, fill);
+			
+			return pages;
+		}
+	}
+}
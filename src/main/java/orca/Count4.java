@@ -0,0 +1,173 @@
+package orca;
+
+/**
+ * The per-node stage of the 4-node orbit counting. For a node x, this counts
+ * the orbits of the graphlets with 2 and 3 nodes directly, and solves a 
+ * system of equations for the 4-node orbits. 
+ * 
+ * An instance holds the scratch state for one worker, and is not 
+ * thread-safe.
+ * 
+ * @author Peter
+ *
+ */
+final class Count4 implements NodeCounter
+{
+	private final int[] offsets;
+	private final int[] targets;
+	private final int[] triangles;
+	private final int[] degree;
+	
+	private final Adjacency adjacency;
+	
+	private final long[] c4;
+	
+	private final Scratch common;
+	
+	/**
+	 * @param graph
+	 * @param triangles The number of triangles for each link, aligned with the
+	 * 	targets of the graph.
+	 * @param degree
+	 * @param adjacency
+	 * @param c4 For each node, the number of 4-cliques it is part of. 
+	 */
+	public Count4(OrcaGraph graph, int[] triangles, int[] degree, 
+			Adjacency adjacency, long[] c4)
+	{
+		this.offsets = graph.offsets();
+		this.targets = graph.targets();
+		this.triangles = triangles;
+		this.degree = degree;
+		this.adjacency = adjacency;
+		this.c4 = c4;
+		
+		common = new Scratch(graph.size());
+	}
+	
+	/**
+	 * Counts all 15 orbits for node x.
+	 * 
+	 * @param x
+	 * @param orbit The array to write the orbit counts to, with length 15. It 
+	 * 	should be filled with zeroes.
+	 */
+	@Override
+	public void count(int x, long[] orbit)
+	{
+		long f_12_14 = 0, 	
+		     f_10_13 = 0,
+		     f_13_14 = 0, 	
+		     f_11_13 = 0,
+		     f_7_11 = 0, 	
+		     f_5_8 = 0,
+		     f_6_9 = 0, 	
+		     f_9_12 = 0, 	
+		     f_4_8 = 0, 	
+		     f_8_12 = 0,
+		     f_14 = c4[x];
+		
+		common.clear();
+				
+		// * Size 2 graphlets
+		orbit[0] = degree[x];
+		
+		// * Size 4 graphlets
+		// * Loop over all connected triples where x is the middle node
+		for (int yIndex = 0; yIndex < degree[x]; yIndex++) // loop over neighbors of x
+		{
+			int y = targets[offsets[x] + yIndex];
+			    
+			for (int zIndex = 0; zIndex < degree[y]; zIndex++)
+			{
+				int z = targets[offsets[y] + zIndex];
+				    
+				if (connected(x, z)) // triangle
+				{ 
+					if (z < y) 
+					{
+						f_12_14 += triangles[offsets[y] + zIndex] - 1;
+						f_10_13 += (degree[y] - 1 - triangles[offsets[y] + zIndex]) 
+							     + (degree[z] - 1 - triangles[offsets[y] + zIndex]);
+					}
+				} else {
+					common.increment(z);
+				}
+			}
+			
+			for (int zIndex = yIndex + 1; zIndex < degree[x]; zIndex ++) 
+			{
+				int z = targets[offsets[x] + zIndex];
+			
+				if (connected(y, z)) // triangle
+				{ 
+					orbit[3]++;
+					
+					f_13_14 += (triangles[offsets[x] + yIndex] - 1) + (triangles[offsets[x] + zIndex] - 1);
+					f_11_13 += (degree[x] - 1 - triangles[offsets[x] + yIndex]) + 
+							   (degree[x] - 1 - triangles[offsets[x] + zIndex]);
+				} else { // path
+					orbit[2]++;
+					
+					f_7_11 += (degree[x] - 1 - triangles[offsets[x] + yIndex] - 1) + (degree[x] - 1 - triangles[offsets[x] + zIndex] - 1);
+					f_5_8 += (degree[y] - 1 - triangles[offsets[x] + yIndex]) + (degree[z] - 1 - triangles[offsets[x] + zIndex]);
+				}
+			}
+		}
+		
+		// * Loop over all connected triples where x is the first node
+		for (int yIndex = 0; yIndex < degree[x]; yIndex ++) 
+		{
+			int y = targets[offsets[x] + yIndex];
+			
+			for (int zIndex = 0; zIndex < degree[y]; zIndex++) 
+			{
+				int z = targets[offsets[y] + zIndex];
+				
+				if (x == z) 
+					continue;
+					
+				if (! connected(x, z)) 
+				{ 	// path
+					orbit[1] ++;
+					
+					f_6_9  += degree[y] - 1 - triangles[offsets[x] + yIndex] - 1;
+					f_9_12 += triangles[offsets[y] + zIndex];
+					f_4_8  += degree[z] - 1 - triangles[offsets[y] + zIndex];
+					f_8_12 += common.get(z) - 1;
+   				}
+			}
+		}
+		
+		// * Solve system of equations
+		orbit[14] = f_14;
+		orbit[13] = (f_13_14 - 6 * f_14) / 2;
+		orbit[12] = f_12_14 - 3 * f_14;
+		orbit[11] = (f_11_13 - f_13_14 + 6 * f_14) / 2;
+		orbit[10] = f_10_13 - f_13_14 + 6 * f_14;
+		orbit[9] = (f_9_12-2 * f_12_14 + 6 * f_14) / 2;
+		orbit[8] = (f_8_12-2 * f_12_14 + 6 * f_14) / 2;
+		orbit[7] = (f_13_14 + f_7_11 - f_11_13 - 6 * f_14) / 6;
+		orbit[6] = (2 * f_12_14 + f_6_9 - f_9_12 - 6 * f_14) / 2;
+		orbit[5] = 2 * f_12_14 + f_5_8 - f_8_12 - 6 * f_14;
+		orbit[4] = 2 * f_12_14 + f_4_8 - f_8_12 - 6 * f_14;
+	}
+	
+	/**
+	 * An estimate of the cost of counting the orbits of node x. 
+	 */
+	@Override
+	public long cost(int x)
+	{
+		long cost = 1;
+		for (int yIndex = 0; yIndex < degree[x]; yIndex++)
+			cost += degree[targets[offsets[x] + yIndex]] + degree[x];
+		
+		return cost;
+	}
+	
+	private boolean connected(int a, int b)
+	{
+		return adjacency.connected(a, b);
+	}
+}
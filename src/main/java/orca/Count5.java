@@ -0,0 +1,804 @@
+package orca;
+
+import java.util.Arrays;
+
+/**
+ * The per-node stage of the 5-node orbit counting. For a node x, the kernels
+ * below count the 4-node orbits of x directly and accumulate the terms f_i of 
+ * a system of equations, which {@link #solve(int, long[])} then solves for the
+ * 5-node orbits. 
+ * 
+ * For every neighbor a of x, each wedge x-a-b and a-x-b is enumerated once. 
+ * The neighbors of x, a and b are marked while their rows are scanned, so the 
+ * wedge and its extensions are classified by array lookups instead of 
+ * adjacency queries, and then passed to all orbit families that need them. 
+ * 
+ * Every kernel stays well below HotSpot's HugeMethodLimit, so that it is 
+ * compiled by C2. 
+ * 
+ * If only some orbits are needed, the kernels only run the branches of the 
+ * graphlets that count them, or collect the terms of their equations (see
+ * {@link #closure(boolean[])}). Orbits 0 to 3 follow from the degrees and 
+ * triangle counts directly.
+ * 
+ * An instance holds the scratch state for one worker, and is not 
+ * thread-safe.
+ * 
+ * @author Peter
+ *
+ */
+final class Count5 implements HubCounter
+{
+	/**
+	 * For each orbit, the 4-node orbit in whose branch of the kernels it is 
+	 * counted, or its term f_i is collected. Orbit 72 (the 5-clique) is
+	 * counted separately.
+	 */
+	private static final int[] BRANCH = {
+		 0,  1,  2,  3,  4,  5,  6,  7,  8,  9, 10, 11, 12, 13, 14,  // 0 - 14
+		 4,  4,  5,  4,  6,  6,  7,  6,  7,  9, 10, 11,  4,  9, 10,  // 15 - 29
+		11,  9, 10, 11,  4,  4,  8,  8,  8,  9, 12, 13, 13, 10, 11,  // 30 - 44
+		 9, 12, 12, 13,  8,  8,  8, 10,  8, 12, 13,  9, 14, 14, 12,  // 45 - 59
+		13, 13,  8, 12, 13, 12, 14, 14, 13, 13, 14, 14, -1   // 60 - 72
+	};
+
+	
+	/**
+	 * For each orbit, the other orbits in its equation in 
+	 * {@link #solve(int, long[])}.
+	 */
+	private static final int[][] DEPENDS = {
+		{}, {}, {}, {}, {}, {}, {}, {}, {}, {}, {}, {}, {}, {}, {},   // 0 - 14
+		{27, 34, 35, 45, 51, 52, 59},   // 15
+		{29, 34, 36, 46, 51, 52, 59},   // 16
+		{30, 34, 37, 48, 51, 53, 60},   // 17
+		{24, 27, 36, 45, 46, 51, 59},   // 18
+		{31, 35, 37, 39, 40, 49, 54},   // 19
+		{32, 37, 40, 49, 54},   // 20
+		{33, 38, 42, 50, 55},   // 21
+		{31, 32, 39, 40, 54},   // 22
+		{33, 42, 55},   // 23
+		{39, 45, 51, 56, 59, 62, 65},   // 24
+		{40, 48, 52, 57, 59, 64, 66},   // 25
+		{42, 47, 53, 58, 61, 63, 67},   // 26
+		{45, 51, 59},   // 27
+		{43, 51, 59, 62, 65},   // 28
+		{43, 52, 53, 59, 60, 64, 66},   // 29
+		{44, 53, 61, 63, 67},   // 30
+		{39, 43, 56, 59, 65},   // 31
+		{40, 41, 43, 57, 59, 60, 66},   // 32
+		{42, 44, 58, 61, 67},   // 33
+		{51, 52, 59},   // 34
+		{45, 52, 59},   // 35
+		{50, 51, 62, 63, 68},   // 36
+		{49, 51, 53, 62, 63, 64, 68},   // 37
+		{50, 53, 63, 64, 68},   // 38
+		{56, 59, 65},   // 39
+		{54, 59, 60, 65, 66, 68, 70},   // 40
+		{55, 60, 67, 68, 71},   // 41
+		{55, 61, 67, 69, 71},   // 42
+		{59, 60, 66},   // 43
+		{61, 67},   // 44
+		{56, 62, 65},   // 45
+		{59, 63, 65, 68, 70},   // 46
+		{60, 63, 66, 68, 70},   // 47
+		{60, 61, 64, 67, 68, 69, 71},   // 48
+		{62, 64, 68},   // 49
+		{63, 68},   // 50
+		{62, 63, 68},   // 51
+		{59, 64, 66},   // 52
+		{63, 64, 68},   // 53
+		{65, 66, 70},   // 54
+		{67, 71},   // 55
+		{65},   // 56
+		{66, 67, 70, 71, 72},   // 57
+		{67, 71, 72},   // 58
+		{65, 68, 70},   // 59
+		{67, 68, 71},   // 60
+		{67, 69, 71},   // 61
+		{68},   // 62
+		{68, 70},   // 63
+		{68, 69, 71},   // 64
+		{70},   // 65
+		{70, 71, 72},   // 66
+		{71, 72},   // 67
+		{71},   // 68
+		{71},   // 69
+		{72},   // 70
+		{72},   // 71
+		{}   // 72
+	};
+	
+	/**
+	 * The terms that use the common neighbors of pairs, and of triples.
+	 */
+	private static final int[] PAIR_TERMS = {45, 51, 54, 59, 60, 64, 66};
+	private static final int[] TRIPLE_TERMS = {56, 62, 65, 68, 69, 70, 71};
+	
+	private final int[] offsets;
+	private final int[] targets;
+	private final int[] triangles;
+	private final int[] degree;
+	
+	private final PairCounter common2;
+	private final TripleCounter common3;
+	private final long[] c5;
+	
+	/**
+	 * The terms of the system of equations, indexed by the orbit they are 
+	 * named after.
+	 */
+	private final long[] f = new long[73];
+	
+	private final Scratch xCommon;
+	private final Scratch aCommon;
+	
+	/**
+	 * For each node c, the number of paths x-a-b-c that form orbit 4 
+	 */
+	private final Scratch paths;
+	
+	private final Marks xNeighbors;
+	private final Marks aNeighbors;
+	private final Marks bNeighbors;
+	
+	/**
+	 * For the orbits 4 to 14, whether their branches in the kernels are run.
+	 */
+	private final boolean[] branch = new boolean[15];
+	private final boolean kernels, outer, rows, triples;
+	
+	private final boolean pairCounts, tripleCounts;
+	
+	/**
+	 * @param graph
+	 * @param triangles The number of triangles for each link, aligned with the
+	 * 	targets of the graph.
+	 * @param degree
+	 * @param common2 For each pair of nodes, the number of nodes adjacent to
+	 * 	both.
+	 * @param common3 For each triple of nodes with at least two links among 
+	 * 	them, the number of nodes adjacent to all three. 
+	 * @param c5 For each node, the number of 5-cliques it is part of. 
+	 */
+	public Count5(OrcaGraph graph, int[] triangles, int[] degree,
+			PairCounter common2, TripleCounter common3, long[] c5)
+	{
+		this(graph, triangles, degree, common2, common3, c5, null);
+	}
+	
+	/**
+	 * @param graph
+	 * @param triangles The number of triangles for each link, aligned with the
+	 * 	targets of the graph.
+	 * @param degree
+	 * @param common2 For each pair of nodes, the number of nodes adjacent to
+	 * 	both, or null if {@link #pairs(boolean[])} is false.
+	 * @param common3 For each triple of nodes with at least two links among 
+	 * 	them, the number of nodes adjacent to all three, or null if 
+	 * 	{@link #triples(boolean[])} is false.
+	 * @param c5 For each node, the number of 5-cliques it is part of, or null
+	 * 	if orbit 72 is not needed.
+	 * @param needed The orbits that are needed, closed under 
+	 * 	{@link #closure(boolean[])}, or null for all orbits. The others are 
+	 * 	not computed correctly.
+	 */
+	public Count5(OrcaGraph graph, int[] triangles, int[] degree,
+			PairCounter common2, TripleCounter common3, long[] c5, boolean[] needed)
+	{
+		this.offsets = graph.offsets();
+		this.targets = graph.targets();
+		this.triangles = triangles;
+		this.degree = degree;
+		this.common2 = common2;
+		this.common3 = common3;
+		this.c5 = c5;
+		
+		for (int o = 4; o < 72; o++)
+			if (needed == null || needed[o])
+				branch[BRANCH[o]] = true;
+		
+		boolean any = false;
+		for (int o = 4; o < 15; o++)
+			any |= branch[o];
+		
+		kernels = any;
+		outer = branch[4] || branch[6] || branch[8] || branch[9] || branch[10];
+		triples = branch[7] || branch[11] || branch[13] || branch[14];
+		rows = triples || branch[5] || branch[8] || branch[10] || branch[12];
+		
+		// * the scratch state is only used by the kernels
+		int n = kernels ? graph.size() : 0;
+		xCommon = new Scratch(n);
+		aCommon = new Scratch(n);
+		paths = new Scratch(n);
+		
+		xNeighbors = new Marks(n);
+		aNeighbors = new Marks(n);
+		bNeighbors = new Marks(n);
+		
+		pairCounts = common2 != null;
+		tripleCounts = common3 != null;
+	}
+	
+	/**
+	 * The orbits needed to compute the requested orbits: these, and the 
+	 * orbits in their equations, recursively. 
+	 * 
+	 * @param requested For each of the 73 orbits, whether it is requested.
+	 */
+	public static boolean[] closure(boolean[] requested)
+	{
+		boolean[] needed = requested.clone();
+		
+		// * each equation only uses orbits with a higher index
+		for (int o = 15; o < 73; o++)
+			if (needed[o])
+				for (int other : DEPENDS[o])
+					needed[other] = true;
+		
+		return needed;
+	}
+	
+	/**
+	 * Whether the needed orbits use the common neighbors of pairs of nodes.
+	 * 
+	 * @param needed The needed orbits, or null for all.
+	 */
+	public static boolean pairs(boolean[] needed)
+	{
+		return any(needed, PAIR_TERMS);
+	}
+	
+	/**
+	 * Whether the needed orbits use the common neighbors of triples of nodes.
+	 * 
+	 * @param needed The needed orbits, or null for all.
+	 */
+	public static boolean triples(boolean[] needed)
+	{
+		return any(needed, TRIPLE_TERMS);
+	}
+	
+	private static boolean any(boolean[] needed, int[] orbits)
+	{
+		if (needed == null)
+			return true;
+		
+		for (int o : orbits)
+			if (needed[o])
+				return true;
+		
+		return false;
+	}
+	
+	/**
+	 * Counts all 73 orbits for node x.
+	 * 
+	 * @param x
+	 * @param orbit The array to write the orbit counts to, with length 73. It 
+	 * 	should be filled with zeroes.
+	 */
+	@Override
+	public void count(int x, long[] orbit)
+	{
+		Arrays.fill(f, 0);
+		
+		direct(x, orbit);
+		
+		if (kernels)
+		{
+			small(x);
+			neighbors(x, 0, degree[x], orbit);
+		}
+		
+		solve(x, orbit);
+	}
+	
+	@Override
+	public int numTerms()
+	{
+		return f.length;
+	}
+	
+	@Override
+	public void count(int x, int from, int to, long[] orbit, long[] terms)
+	{
+		Arrays.fill(f, 0);
+		
+		if(from == 0)
+			direct(x, orbit);
+		
+		if (kernels)
+		{
+			small(x);
+			neighbors(x, from, to, orbit);
+		}
+		
+		for (int i = 0; i < f.length; i++)
+			terms[i] += f[i];
+	}
+	
+	@Override
+	public void finish(int x, long[] orbit, long[] terms)
+	{
+		System.arraycopy(terms, 0, f, 0, f.length);
+		
+		solve(x, orbit);
+	}
+	
+	/**
+	 * The orbits of the graphlets with 2 and 3 nodes, from the degrees of x
+	 * and its neighbors, and the triangles on its links.
+	 */
+	private void direct(int x, long[] orbit)
+	{
+		long paths = 0, shared = 0;
+		for (int aIndex = 0; aIndex < degree[x]; aIndex ++)
+		{
+			paths += degree[targets[offsets[x] + aIndex]] - 1;
+			shared += triangles[offsets[x] + aIndex];
+		}
+		
+		// * every triangle is counted from both of its other nodes
+		long pairs = degree[x] * (long) (degree[x] - 1) / 2;
+		
+		orbit[0] = degree[x];
+		orbit[1] = paths - shared;
+		orbit[2] = pairs - shared / 2;
+		orbit[3] = shared / 2;
+	}
+	
+	/**
+	 * The wedges through the neighbors of x with index from (inclusive) to to
+	 * (exclusive). The neighbors of x should be marked by 
+	 * {@link #small(int)}.
+	 */
+	private void neighbors(int x, int from, int to, long[] orbit)
+	{
+		for (int aIndex = from; aIndex < to; aIndex ++) 
+		{
+			int a = targets[offsets[x] + aIndex];
+			
+			aNeighbors.next();
+			for (int bIndex = 0; bIndex < degree[a]; bIndex++)
+				aNeighbors.mark(targets[offsets[a] + bIndex], bIndex);
+			
+			if (outer)
+				outer(x, aIndex, orbit);
+			
+			if (! rows)
+				continue;
+			
+			for (int bIndex = 0; bIndex < degree[x]; bIndex++) 
+			{
+				if (bIndex == aIndex)
+					continue;
+				
+				boolean ab = aNeighbors.contains(targets[offsets[x] + bIndex]);
+				
+				innerRow(x, aIndex, bIndex, ab, orbit);
+				if (triples)
+					innerTriples(x, aIndex, bIndex, ab, orbit);
+			}
+		}
+	}
+	
+	/**
+	 * An estimate of the cost of counting the orbits of node x: the kernels 
+	 * scan, for every neighbor a, the rows of x and a once for every wedge 
+	 * through a. 
+	 */
+	@Override
+	public long cost(int x)
+	{
+		if (! kernels)
+			return 1 + degree[x];
+		
+		long cost = 1;
+		for (int aIndex = 0; aIndex < degree[x]; aIndex++)
+		{
+			long wedges = degree[targets[offsets[x] + aIndex]] + degree[x];
+			cost += wedges * wedges;
+		}
+		
+		return cost;
+	}
+	
+	/**
+	 * Marks the neighbors of x and counts, in xCommon, how many paths of 
+	 * length 2 connect x to each node not adjacent to x.
+	 */
+	private void small(int x)
+	{
+		xNeighbors.next();
+		for (int aIndex = 0; aIndex < degree[x]; aIndex ++)
+			xNeighbors.mark(targets[offsets[x] + aIndex], aIndex);
+		
+		xCommon.clear();
+		
+		for (int aIndex = 0; aIndex < degree[x]; aIndex ++) 
+		{
+			int a = targets[offsets[x] + aIndex];
+			
+			for (int bIndex = 0; bIndex < degree[a]; bIndex++) 
+			{
+				int b = targets[offsets[a] + bIndex];
+				
+				if (b != x && !xNeighbors.contains(b)) 
+					xCommon.increment(b);
+			}
+		}
+	}
+	
+	/**
+	 * The wedges x-a-b, with b a neighbor of a, and their extensions c. This 
+	 * counts, in aCommon, how many paths of length 2 connect a to each node 
+	 * not adjacent to it, and counts orbit 4 (path), 6 (claw) and 9 (paw). 
+	 */
+	private void outer(int x, int aIndex, long[] orbit)
+	{
+		int a = targets[offsets[x] + aIndex];
+		
+		long f_56 = 0, f_45 = 0, f_39 = 0, f_31 = 0, f_28 = 0, f_24 = 0;	// 9
+		long f_35 = 0, f_34 = 0, f_27 = 0, f_18 = 0, f_16 = 0, f_15 = 0;	// 4
+		long f_22 = 0, f_20 = 0, f_19 = 0;									// 6
+		
+		aCommon.clear();
+		paths.clear();
+		
+		for (int bIndex = 0; bIndex < degree[a]; bIndex++) 
+		{
+			int b = targets[offsets[a] + bIndex];
+			
+			// * whether x-a-b is an induced path
+			boolean path = b != x && ! xNeighbors.contains(b);
+			if (path)
+				bNeighbors.next();
+			
+			for (int cIndex = 0; cIndex < degree[b]; cIndex++) 
+			{ 
+				int c = targets[offsets[b] + cIndex];
+				
+				if (path)
+					bNeighbors.mark(c, cIndex);
+				
+				if (c == a || aNeighbors.contains(c)) 
+					continue;
+				
+				aCommon.increment(c);
+				
+				// x = orbit-4 (path)
+				if (path && branch[4] && ! xNeighbors.contains(c))
+				{
+					orbit[4]++;
+					paths.increment(c);
+					f_34 += xCommon.get(c);
+					f_27 += triangles[offsets[b] + cIndex];
+					f_18 += degree[b] - 2;
+					f_16 += degree[x] - 1;
+					f_15 += degree[c] - 1;
+				}
+			}
+			
+			if (! path || ! (branch[6] || branch[9]))
+				continue;
+			
+			for (int cIndex = bIndex + 1; cIndex < degree[a]; cIndex ++)
+			{
+				int c = targets[offsets[a] + cIndex];
+				
+				if (c == x || xNeighbors.contains(c)) 
+					continue;
+				
+				if (bNeighbors.contains(c))
+				{
+					if (! branch[9])
+						continue;
+					
+					// x = orbit-9 (paw)
+					orbit[9]++;
+					f_56 += (tripleCounts && triangles[offsets[a] + bIndex] > 1 && triangles[offsets[a] + cIndex] > 1) ? 
+							common3.frequency(a,b,c) : 0;
+					f_45 += pairCounts ? common2.frequency(b, c) - 1 : 0;
+					f_39 += triangles[offsets[a] + bIndex] - 1 + triangles[offsets[a] + cIndex] - 1;
+					f_31 += degree[a] - 3;
+					f_28 += degree[x] - 1;
+					f_24 += degree[b] - 2 + degree[c] - 2;
+				} else if (branch[6])
+				{
+					// x = orbit-6 (claw)
+					orbit[6]++;
+					f_22 += degree[a] - 3;
+					f_20 += degree[x] - 1;
+					f_19 += degree[b] - 1 + degree[c] - 1;
+				}
+			}
+		}
+		
+		// * orbit 4 adds aCommon[c] - 1 for every path x-a-b-c
+		for (int i = 0; i < paths.numTouched(); i++)
+		{
+			int c = paths.touched(i);
+			f_35 += paths.get(c) * (long) (aCommon.get(c) - 1);
+		}
+		
+		f[56] += f_56; f[45] += f_45; f[39] += f_39; f[31] += f_31; f[28] += f_28; f[24] += f_24;
+		f[35] += f_35; f[34] += f_34; f[27] += f_27; f[18] += f_18; f[16] += f_16; f[15] += f_15;
+		f[22] += f_22; f[20] += f_20; f[19] += f_19;
+	}
+	
+	/**
+	 * The wedge a-x-b, with b another neighbor of x, extended by the 
+	 * neighbors c of b. Counts orbit 5 (path), 8 (cycle), 10 (paw) and 12 
+	 * (diamond). Marks the neighbors of b.
+	 * 
+	 * @param ab Whether a and b are connected.
+	 */
+	private void innerRow(int x, int aIndex, int bIndex, boolean ab, long[] orbit)
+	{
+		int a = targets[offsets[x] + aIndex];
+		int b = targets[offsets[x] + bIndex];
+		
+		boolean later = bIndex > aIndex;
+		
+		long f_65 = 0, f_63 = 0, f_59 = 0, f_54 = 0, f_47 = 0, f_46 = 0, f_40 = 0; 					// 12
+		long f_62 = 0, f_53 = 0, f_51 = 0, f_50 = 0, f_49 = 0, f_38 = 0, f_37 = 0, f_36 = 0; 			// 8
+		long f_52 = 0, f_43 = 0, f_32 = 0, f_29 = 0, f_25 = 0; 										// 10
+		long f_17 = 0; 																				// 5
+		
+		bNeighbors.next();
+		
+		for (int cIndex = 0; cIndex < degree[b]; cIndex++)
+		{
+			int c = targets[offsets[b] + cIndex];
+			
+			bNeighbors.mark(c, cIndex);
+			
+			if (c == x || xNeighbors.contains(c))
+				continue;
+			
+			// * the index of c in the neighbors of a
+			int acIndex = aNeighbors.index(c);
+			
+			if (acIndex >= 0)
+			{
+				if (! later)
+					continue;
+				
+				if (ab)
+				{
+					if (! branch[12])
+						continue;
+					
+					// x = orbit-12 (diamond)
+					orbit[12]++;
+					f_65 += (tripleCounts && triangles[offsets[a] + acIndex] > 1) ? common3.frequency(a, b, c) : 0;
+					f_63 += xCommon.get(c) - 2; 
+					f_59 += pairCounts ? triangles[offsets[a] + acIndex] - 1 + common2.frequency(b, c) - 1 : 0;
+					f_54 += pairCounts ? common2.frequency(a, b)-2 : 0;
+					f_47 += degree[x] - 2;
+					f_46 += degree[c] - 2;
+					f_40 += degree[a] - 3 + degree[b] - 3;
+				} else if (branch[8])
+				{
+					// x = orbit-8 (cycle)
+					orbit[8]++;
+					f_62 += (tripleCounts && triangles[offsets[a] + acIndex] > 0) ? common3.frequency(a, b, c) : 0;
+					f_53 += triangles[offsets[x] + aIndex] + triangles[offsets[x] + bIndex];
+					f_51 += pairCounts ? triangles[offsets[a] + acIndex] + common2.frequency(c, b) : 0;
+					f_50 += xCommon.get(c) - 2;
+					f_49 += aCommon.get(b) - 2;
+					f_38 += degree[x] - 2;
+					f_37 += degree[a] - 2 + degree[b] - 2;
+					f_36 += degree[c] - 2;
+				}
+			} else if (c != a)
+			{
+				if (ab)
+				{
+					if (! branch[10])
+						continue;
+					
+					// x = orbit-10 (paw)
+					orbit[10]++;
+					f_52 += aCommon.get(c) - 1;
+					f_43 += triangles[offsets[b] + cIndex];
+					f_32 += degree[b] - 3;
+					f_29 += degree[c] - 1;
+					f_25 += degree[a] - 2;
+				} else if (branch[5])
+				{
+					// x = orbit-5 (path)
+					orbit[5]++;
+					f_17 += degree[a] - 1;
+				}
+			}
+		}
+		
+		f[65] += f_65; f[63] += f_63; f[59] += f_59; f[54] += f_54; f[47] += f_47; f[46] += f_46; f[40] += f_40;
+		f[62] += f_62; f[53] += f_53; f[51] += f_51; f[50] += f_50; f[49] += f_49; f[38] += f_38; f[37] += f_37; f[36] += f_36;
+		f[52] += f_52; f[43] += f_43; f[32] += f_32; f[29] += f_29; f[25] += f_25;
+		f[17] += f_17;
+	}
+	
+	/**
+	 * The wedge a-x-b, with b another neighbor of x, extended by a third 
+	 * neighbor c of x. Counts orbit 7 (claw), 11 (paw), 13 (diamond) and 14 
+	 * (tetrahedron). Requires the neighbors of b to be marked.
+	 * 
+	 * @param ab Whether a and b are connected.
+	 */
+	private void innerTriples(int x, int aIndex, int bIndex, boolean ab, long[] orbit)
+	{
+		boolean later = bIndex > aIndex;
+		
+		if (! ab && ! later)
+			return;
+		
+		int a = targets[offsets[x] + aIndex];
+		int b = targets[offsets[x] + bIndex];
+		
+		long f_71 = 0, f_70 = 0, f_67 = 0, f_66 = 0, f_58 = 0, f_57 = 0; 							// 14
+		long f_69 = 0, f_68 = 0, f_64 = 0, f_61 = 0, f_60 = 0, f_55 = 0, f_48 = 0, f_42 = 0, f_41 = 0;	// 13
+		long f_44 = 0, f_33 = 0, f_30 = 0, f_26 = 0; 												// 11
+		long f_23 = 0, f_21 = 0; 																	// 7
+		
+		// * orbit 11 needs all other neighbors of x, the others only those 
+		//   after b
+		int from = ab && later ? 0 : bIndex + 1;
+		
+		for (int cIndex = from; cIndex < degree[x]; cIndex++)
+		{
+			if (cIndex == aIndex || cIndex == bIndex)
+				continue;
+			
+			int c = targets[offsets[x] + cIndex];
+			
+			boolean ac = aNeighbors.contains(c), bc = bNeighbors.contains(c);
+			
+			if (ab)
+			{
+				if (ac)
+				{
+					if (cIndex < bIndex)
+						continue;
+					
+					if (bc)
+					{
+						if (! later)
+							continue;
+						
+						if (! branch[14])
+							continue;
+						
+						// x = orbit-14 (tetrahedron)
+						orbit[14]++;
+						if (tripleCounts)
+						{
+							f_70 += common3.frequency(a,b,c) - 1;
+							f_71 += (triangles[offsets[x] + aIndex] > 2 && triangles[offsets[x] + bIndex] > 2) ? (common3.frequency(x,a,b) - 1) : 0;
+							f_71 += (triangles[offsets[x] + aIndex] > 2 && triangles[offsets[x] + cIndex] > 2) ? (common3.frequency(x,a,c) - 1) : 0;
+							f_71 += (triangles[offsets[x] + bIndex] > 2 && triangles[offsets[x] + cIndex] > 2) ? (common3.frequency(x,b,c) - 1) : 0;
+						}
+						f_67 += triangles[offsets[x] + aIndex] - 2 + triangles[offsets[x] + bIndex] - 2 + triangles[offsets[x] + cIndex] - 2;
+						if (pairCounts)
+						{
+							f_66 += common2.frequency(a,b) - 2;
+							f_66 += common2.frequency(a,c) - 2;
+							f_66 += common2.frequency(b,c) - 2;
+						}
+						f_58 += degree[x] - 3;
+						f_57 += degree[a] - 3 + degree[b] - 3 + degree[c] - 3;
+					} else if (branch[13])
+					{
+						// x = orbit-13 (diamond)
+						orbit[13]++;
+						if (tripleCounts)
+						{
+							f_69 += (triangles[offsets[x] + bIndex] > 1 && triangles[offsets[x] + cIndex] > 1) ? 
+										(common3.frequency(x, b, c) - 1) : 0;
+							f_68 += common3.frequency(a, b, c) - 1;
+						}
+						if (pairCounts)
+						{
+							f_64 += common2.frequency(b, c) - 2;
+							f_60 += common2.frequency(a,b) - 1;
+							f_60 += common2.frequency(a,c) - 1;
+						}
+						f_61 += triangles[offsets[x] + bIndex] - 1 + triangles[offsets[x] + cIndex] - 1;
+						f_55 += triangles[offsets[x] + aIndex] - 2;
+						f_48 += degree[b] - 2 + degree[c] - 2;
+						f_42 += degree[x] - 3;
+						f_41 += degree[a] - 3;
+					}
+				} else if (later && ! bc && branch[11])
+				{
+					// x = orbit-11 (paw)
+					orbit[11]++;
+					f_44 += triangles[offsets[x] + cIndex];
+					f_33 += degree[x] - 3;
+					f_30 += degree[c] - 1;
+					f_26 += degree[a] - 2 + degree[b] - 2;
+				}
+			} else if (! ac && ! bc && branch[7])
+			{
+				// x = orbit-7 (claw)
+				orbit[7]++;
+				f_23 += degree[x] - 3;
+				f_21 += degree[a] - 1 + degree[b] - 1 + degree[c] - 1;
+			}
+		}
+		
+		f[71] += f_71; f[70] += f_70; f[67] += f_67; f[66] += f_66; f[58] += f_58; f[57] += f_57;
+		f[69] += f_69; f[68] += f_68; f[64] += f_64; f[61] += f_61; f[60] += f_60; f[55] += f_55; f[48] += f_48; f[42] += f_42; f[41] += f_41;
+		f[44] += f_44; f[33] += f_33; f[30] += f_30; f[26] += f_26;
+		f[23] += f_23; f[21] += f_21;
+	}
+	
+	/**
+	 * Solves the system of equations for the 5-node orbits, from the terms 
+	 * collected by the kernels. 
+	 */
+	private void solve(int x, long[] orbit)
+	{
+		orbit[72] = c5 == null ? 0 : c5[x];
+		orbit[71] = (f[71]-12*orbit[72])/2;
+		orbit[70] = (f[70]-4*orbit[72]);
+		orbit[69] = (f[69]-2*orbit[71])/4;
+		orbit[68] = (f[68]-2*orbit[71]);
+		orbit[67] = (f[67]-12*orbit[72]-4*orbit[71]);
+		orbit[66] = (f[66]-12*orbit[72]-2*orbit[71]-3*orbit[70]);
+		orbit[65] = (f[65]-3*orbit[70])/2;
+		orbit[64] = (f[64]-2*orbit[71]-4*orbit[69]-1*orbit[68]);
+		orbit[63] = (f[63]-3*orbit[70]-2*orbit[68]);
+		orbit[62] = (f[62]-1*orbit[68])/2;
+		orbit[61] = (f[61]-4*orbit[71]-8*orbit[69]-2*orbit[67])/2;
+		orbit[60] = (f[60]-4*orbit[71]-2*orbit[68]-2*orbit[67]);
+		orbit[59] = (f[59]-6*orbit[70]-2*orbit[68]-4*orbit[65]);
+		orbit[58] = (f[58]-4*orbit[72]-2*orbit[71]-1*orbit[67]);
+		orbit[57] = (f[57]-12*orbit[72]-4*orbit[71]-3*orbit[70]-1*orbit[67]-2*orbit[66]);
+		orbit[56] = (f[56]-2*orbit[65])/3;
+		orbit[55] = (f[55]-2*orbit[71]-2*orbit[67])/3;
+		orbit[54] = (f[54]-3*orbit[70]-1*orbit[66]-2*orbit[65])/2;
+		orbit[53] = (f[53]-2*orbit[68]-2*orbit[64]-2*orbit[63]);
+		orbit[52] = (f[52]-2*orbit[66]-2*orbit[64]-1*orbit[59])/2;
+		orbit[51] = (f[51]-2*orbit[68]-2*orbit[63]-4*orbit[62]);
+		orbit[50] = (f[50]-1*orbit[68]-2*orbit[63])/3;
+		orbit[49] = (f[49]-1*orbit[68]-1*orbit[64]-2*orbit[62])/2;
+		orbit[48] = (f[48]-4*orbit[71]-8*orbit[69]-2*orbit[68]-2*orbit[67]-2*orbit[64]-2*orbit[61]-1*orbit[60]);
+		orbit[47] = (f[47]-3*orbit[70]-2*orbit[68]-1*orbit[66]-1*orbit[63]-1*orbit[60]);
+		orbit[46] = (f[46]-3*orbit[70]-2*orbit[68]-2*orbit[65]-1*orbit[63]-1*orbit[59]);
+		orbit[45] = (f[45]-2*orbit[65]-2*orbit[62]-3*orbit[56]);
+		orbit[44] = (f[44]-1*orbit[67]-2*orbit[61])/4;
+		orbit[43] = (f[43]-2*orbit[66]-1*orbit[60]-1*orbit[59])/2;
+		orbit[42] = (f[42]-2*orbit[71]-4*orbit[69]-2*orbit[67]-2*orbit[61]-3*orbit[55]);
+		orbit[41] = (f[41]-2*orbit[71]-1*orbit[68]-2*orbit[67]-1*orbit[60]-3*orbit[55]);
+		orbit[40] = (f[40]-6*orbit[70]-2*orbit[68]-2*orbit[66]-4*orbit[65]-1*orbit[60]-1*orbit[59]-4*orbit[54]);
+		orbit[39] = (f[39]-4*orbit[65]-1*orbit[59]-6*orbit[56])/2;
+		orbit[38] = (f[38]-1*orbit[68]-1*orbit[64]-2*orbit[63]-1*orbit[53]-3*orbit[50]);
+		orbit[37] = (f[37]-2*orbit[68]-2*orbit[64]-2*orbit[63]-4*orbit[62]-1*orbit[53]-1*orbit[51]-4*orbit[49]);
+		orbit[36] = (f[36]-1*orbit[68]-2*orbit[63]-2*orbit[62]-1*orbit[51]-3*orbit[50]);
+		orbit[35] = (f[35]-1*orbit[59]-2*orbit[52]-2*orbit[45])/2;
+		orbit[34] = (f[34]-1*orbit[59]-2*orbit[52]-1*orbit[51])/2;
+		orbit[33] = (f[33]-1*orbit[67]-2*orbit[61]-3*orbit[58]-4*orbit[44]-2*orbit[42])/2;
+		orbit[32] = (f[32]-2*orbit[66]-1*orbit[60]-1*orbit[59]-2*orbit[57]-2*orbit[43]-2*orbit[41]-1*orbit[40])/2;
+		orbit[31] = (f[31]-2*orbit[65]-1*orbit[59]-3*orbit[56]-1*orbit[43]-2*orbit[39]);
+		orbit[30] = (f[30]-1*orbit[67]-1*orbit[63]-2*orbit[61]-1*orbit[53]-4*orbit[44]);
+		orbit[29] = (f[29]-2*orbit[66]-2*orbit[64]-1*orbit[60]-1*orbit[59]-1*orbit[53]-2*orbit[52]-2*orbit[43]);
+		orbit[28] = (f[28]-2*orbit[65]-2*orbit[62]-1*orbit[59]-1*orbit[51]-1*orbit[43]);
+		orbit[27] = (f[27]-1*orbit[59]-1*orbit[51]-2*orbit[45])/2;
+		orbit[26] = (f[26]-2*orbit[67]-2*orbit[63]-2*orbit[61]-6*orbit[58]-1*orbit[53]-2*orbit[47]-2*orbit[42]);
+		orbit[25] = (f[25]-2*orbit[66]-2*orbit[64]-1*orbit[59]-2*orbit[57]-2*orbit[52]-1*orbit[48]-1*orbit[40])/2;
+		orbit[24] = (f[24]-4*orbit[65]-4*orbit[62]-1*orbit[59]-6*orbit[56]-1*orbit[51]-2*orbit[45]-2*orbit[39]);
+		orbit[23] = (f[23]-1*orbit[55]-1*orbit[42]-2*orbit[33])/4;
+		orbit[22] = (f[22]-2*orbit[54]-1*orbit[40]-1*orbit[39]-1*orbit[32]-2*orbit[31])/3;
+		orbit[21] = (f[21]-3*orbit[55]-3*orbit[50]-2*orbit[42]-2*orbit[38]-2*orbit[33]);
+		orbit[20] = (f[20]-2*orbit[54]-2*orbit[49]-1*orbit[40]-1*orbit[37]-1*orbit[32]);
+		orbit[19] = (f[19]-4*orbit[54]-4*orbit[49]-1*orbit[40]-2*orbit[39]-1*orbit[37]-2*orbit[35]-2*orbit[31]);
+		orbit[18] = (f[18]-1*orbit[59]-1*orbit[51]-2*orbit[46]-2*orbit[45]-2*orbit[36]-2*orbit[27]-1*orbit[24])/2;
+		orbit[17] = (f[17]-1*orbit[60]-1*orbit[53]-1*orbit[51]-1*orbit[48]-1*orbit[37]-2*orbit[34]-2*orbit[30])/2;
+		orbit[16] = (f[16]-1*orbit[59]-2*orbit[52]-1*orbit[51]-2*orbit[46]-2*orbit[36]-2*orbit[34]-1*orbit[29]);
+		orbit[15] = (f[15]-1*orbit[59]-2*orbit[52]-1*orbit[51]-2*orbit[45]-2*orbit[35]-2*orbit[34]-2*orbit[27]);
+	}
+}
@@ -0,0 +1,196 @@
+package orca;
+
+/**
+ * The per-node stage of the 4-node orbit counting, over a 
+ * {@link CursorGraph} with triangle counts. This computes the same 
+ * quantities as {@link Count4}, but reads all neighbor rows sequentially 
+ * with cursors, and replaces the adjacency oracle by marking the neighbors of 
+ * x and of the current neighbor y.
+ * 
+ * An instance holds the scratch state for one worker, and is not 
+ * thread-safe.
+ * 
+ * @author Peter
+ *
+ */
+final class CursorCount4 implements NodeCounter
+{
+	private final CursorGraph graph;
+	private final long[] c4;
+	
+	private final CursorGraph.Cursor yCursor, zCursor;
+	
+	private final Marks xNeighbors, yNeighbors;
+	private final Scratch common;
+	
+	/**
+	 * @param graph A graph with triangle counts.
+	 * @param c4 For each node, the number of 4-cliques it is part of. 
+	 */
+	public CursorCount4(CursorGraph graph, long[] c4)
+	{
+		this.graph = graph;
+		this.c4 = c4;
+		
+		yCursor = graph.cursor();
+		zCursor = graph.cursor();
+		
+		xNeighbors = new Marks(graph.size());
+		yNeighbors = new Marks(graph.size());
+		common = new Scratch(graph.size());
+	}
+	
+	/**
+	 * Counts all 15 orbits for node x.
+	 * 
+	 * @param x
+	 * @param orbit The array to write the orbit counts to, with length 15. It 
+	 * 	should be filled with zeroes.
+	 */
+	@Override
+	public void count(int x, long[] orbit)
+	{
+		long f_12_14 = 0, 	
+		     f_10_13 = 0,
+		     f_13_14 = 0, 	
+		     f_11_13 = 0,
+		     f_7_11 = 0, 	
+		     f_5_8 = 0,
+		     f_6_9 = 0, 	
+		     f_9_12 = 0, 	
+		     f_4_8 = 0, 	
+		     f_8_12 = 0,
+		     f_14 = c4[x];
+		
+		int dx = graph.degree(x);
+		
+		common.clear();
+		
+		xNeighbors.next();
+		yCursor.start(x);
+		while(yCursor.hasNext())
+			xNeighbors.mark(yCursor.next(), 0);
+				
+		// * Size 2 graphlets
+		orbit[0] = dx;
+		
+		// * Size 4 graphlets
+		// * Loop over all connected triples where x is the middle node
+		yCursor.start(x);
+		while(yCursor.hasNext())
+		{
+			int y = yCursor.next();
+			int dy = graph.degree(y);
+			long xy = yCursor.triangles();
+			
+			yNeighbors.next();
+			zCursor.start(y);
+			while(zCursor.hasNext())
+			{
+				int z = zCursor.next();
+				long yz = zCursor.triangles();
+				
+				yNeighbors.mark(z, 0);
+				
+				if (xNeighbors.contains(z)) // triangle
+				{ 
+					if (z < y) 
+					{
+						f_12_14 += yz - 1;
+						f_10_13 += (dy - 1 - yz) + (graph.degree(z) - 1 - yz);
+					}
+				} else {
+					common.increment(z);
+				}
+			}
+			
+			// * the rest of the row of x
+			zCursor.set(yCursor);
+			while(zCursor.hasNext())
+			{
+				int z = zCursor.next();
+				long xz = zCursor.triangles();
+			
+				if (yNeighbors.contains(z)) // triangle
+				{ 
+					orbit[3]++;
+					
+					f_13_14 += (xy - 1) + (xz - 1);
+					f_11_13 += (dx - 1 - xy) + (dx - 1 - xz);
+				} else { // path
+					orbit[2]++;
+					
+					f_7_11 += (dx - 1 - xy - 1) + (dx - 1 - xz - 1);
+					f_5_8 += (dy - 1 - xy) + (graph.degree(z) - 1 - xz);
+				}
+			}
+		}
+		
+		// * Loop over all connected triples where x is the first node
+		yCursor.start(x);
+		while(yCursor.hasNext())
+		{
+			int y = yCursor.next();
+			int dy = graph.degree(y);
+			long xy = yCursor.triangles();
+			
+			zCursor.start(y);
+			while(zCursor.hasNext())
+			{
+				int z = zCursor.next();
+				long yz = zCursor.triangles();
+				
+				if (x == z) 
+					continue;
+					
+				if (! xNeighbors.contains(z)) 
+				{ 	// path
+					orbit[1] ++;
+					
+					f_6_9  += dy - 1 - xy - 1;
+					f_9_12 += yz;
+					f_4_8  += graph.degree(z) - 1 - yz;
+					f_8_12 += common.get(z) - 1;
+   				}
+			}
+		}
+		
+		// * Solve system of equations
+		orbit[14] = f_14;
+		orbit[13] = (f_13_14 - 6 * f_14) / 2;
+		orbit[12] = f_12_14 - 3 * f_14;
+		orbit[11] = (f_11_13 - f_13_14 + 6 * f_14) / 2;
+		orbit[10] = f_10_13 - f_13_14 + 6 * f_14;
+		orbit[9] = (f_9_12-2 * f_12_14 + 6 * f_14) / 2;
+		orbit[8] = (f_8_12-2 * f_12_14 + 6 * f_14) / 2;
+		orbit[7] = (f_13_14 + f_7_11 - f_11_13 - 6 * f_14) / 6;
+		orbit[6] = (2 * f_12_14 + f_6_9 - f_9_12 - 6 * f_14) / 2;
+		orbit[5] = 2 * f_12_14 + f_5_8 - f_8_12 - 6 * f_14;
+		orbit[4] = 2 * f_12_14 + f_4_8 - f_8_12 - 6 * f_14;
+	}
+	
+	/**
+	 * The memory used by the scratch state of this counter, in bytes.
+	 */
+	public long memory()
+	{
+		// * two Marks and a Scratch, each with two ints per node
+		return 3 * 8L * graph.size();
+	}
+	
+	/**
+	 * An estimate of the cost of counting the orbits of node x. 
+	 */
+	@Override
+	public long cost(int x)
+	{
+		int dx = graph.degree(x);
+		
+		long cost = 1;
+		yCursor.start(x);
+		while(yCursor.hasNext())
+			cost += graph.degree(yCursor.next()) + dx;
+		
+		return cost;
+	}
+}
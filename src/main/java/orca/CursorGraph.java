@@ -0,0 +1,65 @@
+package orca;
+
+/**
+ * A graph whose sorted rows are read sequentially with a {@link Cursor},
+ * together with the number of triangles on each link. This is what the
+ * 4-node counting needs when the graph is not an {@link OrcaGraph} on the
+ * heap: it is implemented by {@link CompressedGraph} and {@link MappedGraph}.
+ *
+ * @author Peter
+ *
+ */
+interface CursorGraph
+{
+	/**
+	 * Number of nodes
+	 */
+	public int size();
+	
+	public int degree(int node);
+	
+	/**
+	 * Whether the number of triangles on each link is stored.
+	 */
+	public boolean hasTriangles();
+	
+	/**
+	 * A graph with the same rows and the number of triangles on each link.
+	 */
+	public CursorGraph withTriangles();
+	
+	/**
+	 * A new cursor over the rows of this graph. Each thread should use its own.
+	 */
+	public Cursor cursor();
+	
+	/**
+	 * Reads the neighbors of a node in ascending order.
+	 */
+	interface Cursor
+	{
+		/**
+		 * Moves the cursor to the start of the row of the given node.
+		 */
+		public void start(int node);
+		
+		/**
+		 * Moves the cursor to the same position as the given cursor of the
+		 * same graph, so that the rest of a row can be read twice.
+		 */
+		public void set(Cursor other);
+		
+		public boolean hasNext();
+		
+		/**
+		 * The next neighbor.
+		 */
+		public int next();
+		
+		/**
+		 * The number of triangles on the link to the last neighbor returned
+		 * by {@link #next()}, if these are stored.
+		 */
+		public int triangles();
+	}
+}
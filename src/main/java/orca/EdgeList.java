@@ -0,0 +1,231 @@
+package orca;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads graphs from text files with one link per line. 
+ * 
+ * Each line starts with two non-negative node indices, separated by spaces or
+ * tabs. Anything after them on the line is ignored (for instance weights), 
+ * as are empty lines and lines starting with '#' or '%'. Both '\n' and 
+ * "\r\n" line endings are accepted. The number of nodes is one more than the
+ * largest index. Self-loops and duplicate links are removed.
+ * 
+ * The bytes are parsed directly from a buffer by a small state machine, 
+ * without creating strings. Gzipped files are recognized by their first two 
+ * bytes.
+ * 
+ * @author Peter
+ *
+ */
+public final class EdgeList
+{
+	private static final int BUFFER = 1 << 20;
+	
+	// * The states of the parser
+	private static final int LINE = 0, FIRST = 1, SEPARATOR = 2, SECOND = 3, SKIP = 4;
+	
+	// * Node indices saturate at this value while parsing
+	private static final long TOO_LARGE = Integer.MAX_VALUE + 1L;
+	
+	private int state = LINE;
+	private long a, b;
+	private long line = 1;
+	
+	private int[] from = new int[1024], to = new int[1024];
+	private int m = 0;
+	private int max = -1;
+	
+	private EdgeList()
+	{
+	}
+	
+	/**
+	 * Reads a graph from a (possibly gzipped) edge list file.
+	 */
+	public static OrcaGraph read(Path file)
+		throws IOException
+	{
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			ByteBuffer magic = ByteBuffer.allocate(2);
+			while(magic.hasRemaining() && channel.read(magic) >= 0);
+			channel.position(0);
+			
+			if(magic.position() == 2 && (magic.get(0) & 0xff) == 0x1f && (magic.get(1) & 0xff) == 0x8b)
+			{
+				InputStream in = new GZIPInputStream(Channels.newInputStream(channel), BUFFER);
+				return read(Channels.newChannel(in));
+			}
+			
+			return read(channel);
+		}
+	}
+	
+	/**
+	 * Reads a graph from an (uncompressed) edge list. The channel is not 
+	 * closed.
+	 */
+	public static OrcaGraph read(ReadableByteChannel channel)
+		throws IOException
+	{
+		EdgeList parser = new EdgeList();
+		
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER);
+		while(channel.read(buffer) >= 0)
+		{
+			parser.parse(buffer.array(), buffer.position());
+			buffer.clear();
+		}
+		
+		return parser.finish();
+	}
+	
+	/**
+	 * Parses the first length bytes of the given array, continuing from the 
+	 * state after the previous block. The digits of a number are consumed in
+	 * a tight loop, and the state only matters at the block boundaries.
+	 */
+	private void parse(byte[] bytes, int length)
+		throws IOException
+	{
+		int state = this.state;
+		long a = this.a, b = this.b;
+		
+		int i = 0;
+		while(i < length)
+		{
+			int c = bytes[i];
+			
+			switch(state)
+			{
+				case LINE:
+					i++;
+					if(c >= '0' && c <= '9')
+					{
+						a = c - '0';
+						state = FIRST;
+					} else if(c == '\n')
+						line++;
+					else if(c == '#' || c == '%')
+						state = SKIP;
+					else if(c != ' ' && c != '\t' && c != '\r')
+						throw new IOException("Expected a node index on line "+line+".");
+					break;
+					
+				case FIRST:
+					while(c >= '0' && c <= '9')
+					{
+						a = Math.min(a * 10 + (c - '0'), TOO_LARGE);
+						if(++i == length)
+							break;
+						c = bytes[i];
+					}
+					
+					if(a == TOO_LARGE)
+						throw new IOException("Node index too large on line "+line+".");
+					if(i == length)
+						break;
+					
+					if(c != ' ' && c != '\t')
+						throw new IOException("Expected a second node index on line "+line+".");
+					
+					i++;
+					state = SEPARATOR;
+					break;
+					
+				case SEPARATOR:
+					i++;
+					if(c >= '0' && c <= '9')
+					{
+						b = c - '0';
+						state = SECOND;
+					} else if(c != ' ' && c != '\t')
+						throw new IOException("Expected a second node index on line "+line+".");
+					break;
+					
+				case SECOND:
+					while(c >= '0' && c <= '9')
+					{
+						b = Math.min(b * 10 + (c - '0'), TOO_LARGE);
+						if(++i == length)
+							break;
+						c = bytes[i];
+					}
+					
+					if(b == TOO_LARGE)
+						throw new IOException("Node index too large on line "+line+".");
+					if(i == length)
+						break;
+					
+					add((int) a, (int) b);
+					
+					i++;
+					if(c == '\n')
+					{
+						line++;
+						state = LINE;
+					} else
+						state = SKIP;
+					break;
+					
+				default: // SKIP
+					i++;
+					if(c == '\n')
+					{
+						line++;
+						state = LINE;
+					}
+			}
+		}
+		
+		this.state = state;
+		this.a = a;
+		this.b = b;
+	}
+	
+	private void add(int a, int b)
+		throws IOException
+	{
+		if(m == from.length)
+		{
+			if(m == Integer.MAX_VALUE - 8)
+				throw new IOException("Too many links.");
+			
+			int length = (int) Math.min(2L * m, Integer.MAX_VALUE - 8);
+			from = Arrays.copyOf(from, length);
+			to = Arrays.copyOf(to, length);
+		}
+		
+		from[m] = a;
+		to[m] = b;
+		m++;
+		
+		max = Math.max(max, Math.max(a, b));
+	}
+	
+	private OrcaGraph finish()
+		throws IOException
+	{
+		if(state == SECOND)
+			add((int) a, (int) b);
+		else if(state == FIRST || state == SEPARATOR)
+			throw new IOException("Expected a second node index on line "+line+".");
+		
+		int[] from = this.from, to = this.to;
+		this.from = this.to = null;
+		
+		return OrcaGraph.fromEdges(max + 1, 
+				m == from.length ? from : Arrays.copyOf(from, m), 
+				m == to.length ? to : Arrays.copyOf(to, m));
+	}
+}
@@ -0,0 +1,285 @@
+package orca;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+/**
+ * A binary file format for {@link OrcaGraph}s, optionally with the number of 
+ * triangles on each link, so that large graphs can be loaded without 
+ * parsing.
+ * 
+ * The file is little-endian, and consists of a header:
+ * <pre>
+ *   int  magic ("ORCA")
+ *   int  version
+ *   int  flags (1: triangle counts included)
+ *   int  number of nodes n
+ *   long number of targets (twice the number of links)
+ * </pre>
+ * followed by the CSR offsets (n + 1 ints), the targets, and, if included, 
+ * one triangle count per target.
+ * 
+ * {@link #read(Path)} loads the graph onto the heap, at 8 bytes per link (16
+ * with the triangle counts): the file is mapped in chunks of at most 1 GB, 
+ * and each chunk is copied into the arrays in bulk. The 5-node orbits are 
+ * counted on the arrays. 
+ * 
+ * Without the copy, {@link MappedGraph#open(Path)} maps the file, and the 
+ * 4-node orbits are counted from the mapping with 
+ * {@link Orca#Orca(MappedGraph, Orca.Options)}. {@link OutOfCore} and 
+ * {@link NodeOrbits} count the 5-node orbits from the mapping, a chunk or a 
+ * few nodes at a time.
+ * 
+ * @author Peter
+ *
+ */
+public final class GraphFile
+{
+	static final int MAGIC = 0x4F524341;
+	static final int VERSION = 1;
+	
+	static final int FLAG_TRIANGLES = 1;
+	
+	static final int HEADER = 24;
+	
+	private static final int CHUNK = 1 << 30;
+	private static final int BUFFER = 1 << 20;
+	
+	private final OrcaGraph graph;
+	private final Triangles triangles;
+	
+	private GraphFile(OrcaGraph graph, Triangles triangles)
+	{
+		this.graph = graph;
+		this.triangles = triangles;
+	}
+	
+	public OrcaGraph graph()
+	{
+		return graph;
+	}
+	
+	/**
+	 * The triangle counts, or null if the file does not include them. These
+	 * can be passed to {@link Orca.Options#triangles(Triangles)}.
+	 */
+	public Triangles triangles()
+	{
+		return triangles;
+	}
+	
+	/**
+	 * Reads a graph file. The rows are checked to be in range, strictly 
+	 * ascending and symmetric, in one parallel pass.
+	 * 
+	 * @throws IOException If the file cannot be read, or is not a valid 
+	 * 	graph file.
+	 */
+	public static GraphFile read(Path file)
+		throws IOException
+	{
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, 
+					Math.min(HEADER, channel.size())).order(ByteOrder.LITTLE_ENDIAN);
+			
+			if(header.remaining() < HEADER || header.getInt() != MAGIC)
+				throw new IOException("File "+file+" is not a graph file.");
+			
+			int version = header.getInt();
+			if(version != VERSION)
+				throw new IOException("Unsupported graph file version "+version+" (expected "+VERSION+").");
+			
+			int flags = header.getInt();
+			int n = header.getInt();
+			long m = header.getLong();
+			
+			if(n < 0 || m < 0 || m > Integer.MAX_VALUE - 8)
+				throw new IOException("Invalid header: "+n+" nodes, "+m+" targets.");
+			
+			boolean hasTriangles = (flags & FLAG_TRIANGLES) != 0;
+			
+			long expected = HEADER + 4L * (n + 1 + m + (hasTriangles ? m : 0));
+			if(channel.size() != expected)
+				throw new IOException("File "+file+" has "+channel.size()+" bytes, expected "+expected+".");
+			
+			long position = HEADER;
+			
+			int[] offsets = new int[n + 1];
+			position = read(channel, position, offsets);
+			
+			int[] targets = new int[(int) m];
+			position = read(channel, position, targets);
+			
+			if(offsets[0] != 0 || offsets[n] != m)
+				throw new IOException("Offsets do not match the targets.");
+			for(int i = 0; i < n; i++)
+				if(offsets[i] > offsets[i + 1])
+					throw new IOException("Offsets should be non-decreasing (at node "+i+").");
+			
+			String problem = IntStream.range(0, n).parallel()
+					.mapToObj(i -> check(offsets, targets, i))
+					.filter(Objects::nonNull)
+					.findAny().orElse(null);
+			if(problem != null)
+				throw new IOException(problem);
+			
+			OrcaGraph graph = OrcaGraph.wrap(offsets, targets);
+			
+			Triangles triangles = null;
+			if(hasTriangles)
+			{
+				int[] counts = new int[(int) m];
+				read(channel, position, counts);
+				
+				triangles = new Triangles(graph, counts);
+			}
+			
+			return new GraphFile(graph, triangles);
+		}
+	}
+	
+	/**
+	 * Checks the row of node i.
+	 * 
+	 * @return A description of the problem, or null if the row is valid.
+	 */
+	private static String check(int[] offsets, int[] targets, int i)
+	{
+		int n = offsets.length - 1;
+		
+		for(int e = offsets[i]; e < offsets[i + 1]; e++)
+		{
+			int j = targets[e];
+			if(j < 0 || j >= n || j == i)
+				return "Neighbor "+j+" of node "+i+" is out of range or a self-loop.";
+			if(e > offsets[i] && j <= targets[e - 1])
+				return "Row of node "+i+" is not strictly ascending.";
+			
+			if(j > i && Arrays.binarySearch(targets, offsets[j], offsets[j + 1], i) < 0)
+				return "Link "+i+"-"+j+" is not stored in both directions.";
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Reads the given ints from the file, mapping it in chunks.
+	 * 
+	 * @return The position after the ints.
+	 */
+	private static long read(FileChannel channel, long position, int[] values)
+		throws IOException
+	{
+		int done = 0;
+		while(done < values.length)
+		{
+			int num = Math.min(values.length - done, CHUNK / 4);
+			
+			IntBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * num)
+					.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+			buffer.get(values, done, num);
+			
+			done += num;
+			position += 4L * num;
+		}
+		
+		return position;
+	}
+	
+	/**
+	 * Writes a graph to a file.
+	 * 
+	 * @param graph
+	 * @param triangles The triangle counts for the graph, or null to leave 
+	 * 	them out.
+	 * @param file
+	 */
+	public static void write(OrcaGraph graph, Triangles triangles, Path file)
+		throws IOException
+	{
+		if(triangles != null && ! triangles.matches(graph))
+			throw new IllegalArgumentException("The triangle counts were not computed for this graph.");
+		
+		int[] targets = graph.targets();
+		
+		try(FileChannel channel = FileChannel.open(file, 
+				StandardOpenOption.WRITE, StandardOpenOption.CREATE, 
+				StandardOpenOption.TRUNCATE_EXISTING))
+		{
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+			
+			buffer.putInt(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putInt(triangles != null ? FLAG_TRIANGLES : 0);
+			buffer.putInt(graph.size());
+			buffer.putLong(targets.length);
+			
+			write(channel, buffer, graph.offsets());
+			write(channel, buffer, targets);
+			if(triangles != null)
+				write(channel, buffer, triangles.counts());
+			
+			buffer.flip();
+			while(buffer.hasRemaining())
+				channel.write(buffer);
+		}
+	}
+	
+	private static void write(FileChannel channel, ByteBuffer buffer, int[] values)
+		throws IOException
+	{
+		int done = 0;
+		while(done < values.length)
+		{
+			if(buffer.remaining() < 4)
+			{
+				buffer.flip();
+				while(buffer.hasRemaining())
+					channel.write(buffer);
+				buffer.clear();
+			}
+			
+			int num = Math.min(values.length - done, buffer.remaining() / 4);
+			buffer.asIntBuffer().put(values, done, num);
+			buffer.position(buffer.position() + 4 * num);
+			
+			done += num;
+		}
+	}
+	
+	/**
+	 * Converts an edge list (see {@link EdgeList}) to a graph file.
+	 * 
+	 * @param edges
+	 * @param file
+	 * @param triangles Whether to count the triangles on each link, and 
+	 * 	include them in the file.
+	 * @return The graph.
+	 */
+	public static OrcaGraph convert(Path edges, Path file, boolean triangles)
+		throws IOException
+	{
+		OrcaGraph graph = EdgeList.read(edges);
+		
+		Triangles counts = null;
+		if(triangles)
+		{
+			Triangles t = new Triangles(graph);
+			IntStream.range(0, graph.size()).parallel().forEach(t::compute);
+			counts = t;
+		}
+		
+		write(graph, counts, file);
+		
+		return graph;
+	}
+}
@@ -0,0 +1,115 @@
+package orca;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing (linear probing) hash set of the links in a graph. Each
+ * link is stored once, as a long containing the smaller node index in the
+ * upper 32 bits and the larger in the lower 32 bits.
+ * 
+ * @author Peter
+ *
+ */
+final class HashAdjacency implements Adjacency
+{
+	private static final long EMPTY = -1L;
+	private static final double LOAD = 0.6;
+	
+	private final long[] keys;
+	private final int mask;
+	
+	public HashAdjacency(OrcaGraph graph)
+	{
+		int capacity = capacity(graph.numLinks());
+		
+		keys = new long[capacity];
+		Arrays.fill(keys, EMPTY);
+		mask = capacity - 1;
+		
+		int[] offsets = graph.offsets(), targets = graph.targets();
+		for(int a = 0; a < graph.size(); a++)
+			for(int e = offsets[a]; e < offsets[a + 1]; e++)
+			{
+				int b = targets[e];
+				if(a < b)
+					add(pack(a, b));
+			}
+	}
+	
+	private void add(long key)
+	{
+		int slot = slot(key);
+		while(keys[slot] != EMPTY)
+		{
+			if(keys[slot] == key)
+				return;
+			slot = (slot + 1) & mask;
+		}
+		
+		keys[slot] = key;
+	}
+	
+	@Override
+	public boolean connected(int a, int b)
+	{
+		long key = a < b ? pack(a, b) : pack(b, a);
+		
+		int slot = slot(key);
+		long current;
+		while((current = keys[slot]) != EMPTY)
+		{
+			if(current == key)
+				return true;
+			slot = (slot + 1) & mask;
+		}
+		
+		return false;
+	}
+	
+	@Override
+	public long memory()
+	{
+		return 8L * keys.length;
+	}
+	
+	private int slot(long key)
+	{
+		return (int) mix(key) & mask;
+	}
+	
+	static long pack(int a, int b)
+	{
+		return ((long) a << 32) | (b & 0xFFFFFFFFL);
+	}
+	
+	/**
+	 * The finalizer of MurmurHash3 (64 bit).
+	 */
+	static long mix(long key)
+	{
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return key;
+	}
+	
+	/**
+	 * The smallest power of two that holds the given number of keys at the 
+	 * target load factor. 
+	 */
+	static int capacity(long size)
+	{
+		long min = Math.max(2, (long) Math.ceil(size / LOAD));
+		if(min > (1 << 30))
+			throw new IllegalArgumentException("Too many elements ("+size+") for a hash table.");
+		
+		return Integer.highestOneBit((int) min - 1) << 1;
+	}
+	
+	static long memory(long links)
+	{
+		return 8L * Math.max(2, (long) Math.ceil(links / LOAD));
+	}
+}
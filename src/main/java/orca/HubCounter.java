@@ -0,0 +1,43 @@
+package orca;
+
+/**
+ * A node counter that can split the work for a single node over several 
+ * workers, by dividing up the neighbors of the node. This is used for nodes 
+ * with a very high degree, which would otherwise end up as one long task.
+ * 
+ * Each part is counted with {@link #count(int, int, int, long[], long[])}, 
+ * possibly by different instances. The results are summed, and passed to 
+ * {@link #finish(int, long[], long[])}.
+ * 
+ * @author Peter
+ *
+ */
+interface HubCounter extends NodeCounter
+{
+	/**
+	 * The number of terms of the system of equations.
+	 */
+	public int numTerms();
+	
+	/**
+	 * Counts the part of node x that derives from the neighbors with index 
+	 * from (inclusive) to to (exclusive) in the neighbor row of x.
+	 * 
+	 * @param x
+	 * @param from
+	 * @param to
+	 * @param orbit The array to add the directly counted orbits to. 
+	 * @param terms The array to add the terms of the system of equations to.
+	 */
+	public void count(int x, int from, int to, long[] orbit, long[] terms);
+	
+	/**
+	 * Solves the system of equations for node x, from the sums of the parts.
+	 * 
+	 * @param x
+	 * @param orbit The summed orbits of all parts. The remaining orbits are 
+	 * 	written to this array.
+	 * @param terms The summed terms of all parts.
+	 */
+	public void finish(int x, long[] orbit, long[] terms);
+}
@@ -0,0 +1,143 @@
+package orca;
+
+import java.util.Arrays;
+
+/**
+ * Counts the occurrences of long keys, in an open-addressing (linear probing)
+ * hash table of primitives. The key -1 is reserved. 
+ * 
+ * @author Peter
+ *
+ */
+final class LongCounter
+{
+	private static final long EMPTY = -1L;
+	private static final double LOAD = 0.6;
+	private static final int MAX_CAPACITY = 1 << 30;
+	
+	private long[] keys;
+	private int[] counts;
+	private int mask;
+	private int size = 0;
+	private int threshold;
+	
+	public LongCounter()
+	{
+		this(16);
+	}
+	
+	/**
+	 * @param expected The expected number of distinct keys.
+	 */
+	public LongCounter(long expected)
+	{
+		allocate(HashAdjacency.capacity(expected));
+	}
+	
+	private void allocate(int capacity)
+	{
+		keys = new long[capacity];
+		Arrays.fill(keys, EMPTY);
+		counts = new int[capacity];
+		mask = capacity - 1;
+		threshold = (int) Math.min(capacity * LOAD, capacity - 1);
+	}
+	
+	/**
+	 * Increments the count of the given key by one.
+	 */
+	public void add(long key)
+	{
+		add(key, 1);
+	}
+	
+	/**
+	 * Increments the count of the given key.
+	 * 
+	 * @return The new count.
+	 */
+	public int add(long key, int count)
+	{
+		int slot = slot(key);
+		long current;
+		while((current = keys[slot]) != EMPTY)
+		{
+			if(current == key)
+				return counts[slot] += count;
+			
+			slot = (slot + 1) & mask;
+		}
+		
+		keys[slot] = key;
+		counts[slot] = count;
+		
+		if(++size > threshold)
+			grow();
+		
+		return count;
+	}
+	
+	/**
+	 * The count of the given key, or 0 if it hasn't been added.
+	 */
+	public int get(long key)
+	{
+		int slot = slot(key);
+		long current;
+		while((current = keys[slot]) != EMPTY)
+		{
+			if(current == key)
+				return counts[slot];
+			
+			slot = (slot + 1) & mask;
+		}
+		
+		return 0;
+	}
+	
+	/**
+	 * The number of distinct keys.
+	 */
+	public int size()
+	{
+		return size;
+	}
+	
+	/**
+	 * The memory used by the table in bytes.
+	 */
+	public long memory()
+	{
+		return 12L * keys.length;
+	}
+	
+	private int slot(long key)
+	{
+		return (int) HashAdjacency.mix(key) & mask;
+	}
+	
+	private void grow()
+	{
+		if(keys.length >= MAX_CAPACITY)
+			throw new IllegalStateException("Too many distinct keys ("+size+") for a single table.");
+		
+		long[] oldKeys = keys;
+		int[] oldCounts = counts;
+		
+		allocate(keys.length * 2);
+		
+		for(int i = 0; i < oldKeys.length; i++)
+		{
+			long key = oldKeys[i];
+			if(key == EMPTY)
+				continue;
+			
+			int slot = slot(key);
+			while(keys[slot] != EMPTY)
+				slot = (slot + 1) & mask;
+			
+			keys[slot] = key;
+			counts[slot] = oldCounts[i];
+		}
+	}
+}
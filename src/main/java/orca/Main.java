@@ -0,0 +1,231 @@
+package orca;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Counts the orbits of a graph from the command line, and writes them as 
+ * text: one line per node, with the orbit counts separated by spaces.
+ * 
+ * <pre>
+ * java -jar orca-jar-with-dependencies.jar [options] input
+ * 
+ *   -4, -5            count the orbits of graphlets up to 4 (default) or 5 
+ *                     nodes
+ *   -t threads        the number of threads (default: all processors)
+ *   -r none|degree|bfs 
+ *                     renumber the nodes before counting (default: none)
+ *   -o output         the output file (default: standard out)
+ *   -c output         write the counts as they are computed to a binary 
+ *                     {@link OrbitColumns} file, instead of as text
+ *   -g                write how often each graphlet occurs in the graph, 
+ *                     one line per graphlet (see {@link Orca#graphlet(int)}),
+ *                     instead of the orbits of the nodes
+ * </pre>
+ * 
+ * The input is a {@link GraphFile}, or an edge list as read by 
+ * {@link EdgeList} (possibly gzipped). The 4-node orbits of a graph file are
+ * counted from the mapped file (see {@link MappedGraph}), unless the nodes 
+ * are renumbered.
+ * 
+ * @author Peter
+ *
+ */
+public final class Main
+{
+	private static final String USAGE = 
+			"Usage: java -jar orca.jar [-4|-5] [-t threads] [-r none|degree|bfs] [-g] [-o output|-c output] input";
+	
+	private Main()
+	{
+	}
+	
+	public static void main(String[] args)
+	{
+		System.exit(run(args));
+	}
+	
+	/**
+	 * Runs the command with the given arguments.
+	 * 
+	 * @return The exit code.
+	 */
+	static int run(String[] args)
+	{
+		boolean count5 = false, graphlets = false;
+		int threads = Runtime.getRuntime().availableProcessors();
+		Orca.Relabeling relabeling = Orca.Relabeling.NONE;
+		Path input = null, output = null, columns = null;
+		
+		try {
+			for(int i = 0; i < args.length; i++)
+			{
+				switch(args[i])
+				{
+					case "-4": count5 = false; break;
+					case "-5": count5 = true; break;
+					case "-t": threads = Integer.parseInt(value(args, ++i)); break;
+					case "-r": relabeling = Orca.Relabeling.valueOf(value(args, ++i).toUpperCase(Locale.ROOT)); break;
+					case "-o": output = Paths.get(value(args, ++i)); break;
+					case "-c": columns = Paths.get(value(args, ++i)); break;
+					case "-g": graphlets = true; break;
+					default:
+						if(args[i].startsWith("-") || input != null)
+							throw new IllegalArgumentException("Unexpected argument: "+args[i]);
+						input = Paths.get(args[i]);
+				}
+			}
+			
+			if(input == null)
+				throw new IllegalArgumentException("No input file.");
+			if(output != null && columns != null)
+				throw new IllegalArgumentException("Use either -o or -c.");
+			if(graphlets && columns != null)
+				throw new IllegalArgumentException("Use either -g or -c.");
+			
+			Orca.Options options = new Orca.Options().threads(threads).relabel(relabeling);
+			if(graphlets)
+				options.totalsOnly();
+			
+			long t0 = System.nanoTime();
+			
+			// * a graph file is counted from the mapping, if it needs no relabeling
+			OrcaGraph graph = null;
+			MappedGraph mapped = null;
+			if(isGraphFile(input))
+			{
+				if(! count5 && relabeling == Orca.Relabeling.NONE)
+					mapped = MappedGraph.open(input);
+				else
+				{
+					GraphFile file = GraphFile.read(input);
+					graph = file.graph();
+					if(file.triangles() != null)
+						options.triangles(file.triangles());
+				}
+			} else
+				graph = EdgeList.read(input);
+			
+			int size = mapped != null ? mapped.size() : graph.size();
+			long numLinks = mapped != null ? mapped.numLinks() : graph.numLinks();
+			
+			long t1 = System.nanoTime();
+			System.err.printf(Locale.ROOT, "Read %d nodes and %d links in %.2f s.%n", 
+					size, numLinks, (t1 - t0) * 1e-9);
+			
+			if(columns != null)
+			{
+				// * stream the rows to the file, without keeping the matrix
+				Orca orca;
+				try(OrbitColumns.Writer writer = new OrbitColumns.Writer(columns, count5 ? 73 : 15, size))
+				{
+					orca = count(graph, mapped, count5, options.sink(writer));
+				}
+				
+				long t2 = System.nanoTime();
+				System.err.printf(Locale.ROOT, "Counted %d orbits in %.2f s.%n", 
+						orca.numOrbits(), (t2 - t1) * 1e-9);
+				
+				return 0;
+			}
+			
+			Orca orca = count(graph, mapped, count5, options);
+			
+			long t2 = System.nanoTime();
+			System.err.printf(Locale.ROOT, "Counted %d orbits in %.2f s.%n", 
+					orca.numOrbits(), (t2 - t1) * 1e-9);
+			
+			Writer writer = new BufferedWriter(new OutputStreamWriter(
+					output == null ? System.out : Files.newOutputStream(output), 
+					StandardCharsets.US_ASCII), 1 << 16);
+			try {
+				if(graphlets)
+					for(long total : orca.graphlets())
+						writer.append(Long.toString(total)).append('\n');
+				else
+					write(orca, size, writer);
+			} finally
+			{
+				// * standard out stays open
+				if(output == null)
+					writer.flush();
+				else
+					writer.close();
+			}
+		} catch(IllegalArgumentException e)
+		{
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			return 1;
+		} catch(IOException e)
+		{
+			System.err.println(e.getMessage());
+			return 2;
+		} catch(UncheckedIOException e)
+		{
+			System.err.println(e.getCause().getMessage());
+			return 2;
+		}
+		
+		return 0;
+	}
+	
+	private static String value(String[] args, int i)
+	{
+		if(i >= args.length)
+			throw new IllegalArgumentException("Missing value for "+args[i - 1]+".");
+		
+		return args[i];
+	}
+	
+	private static Orca count(OrcaGraph graph, MappedGraph mapped, boolean count5, Orca.Options options)
+	{
+		return mapped != null ? new Orca(mapped, options) : new Orca(graph, count5, options);
+	}
+	
+	/**
+	 * Whether the file starts with the header of a {@link GraphFile}.
+	 */
+	private static boolean isGraphFile(Path file)
+		throws IOException
+	{
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+			while(magic.hasRemaining() && channel.read(magic) >= 0);
+			
+			return magic.position() == 4 && magic.getInt(0) == GraphFile.MAGIC;
+		}
+	}
+	
+	private static void write(Orca orca, int size, Writer writer)
+		throws IOException
+	{
+		StringBuilder line = new StringBuilder();
+		for(int node = 0; node < size; node++)
+		{
+			line.setLength(0);
+			for(int o = 0; o < orca.numOrbits(); o++)
+			{
+				if(o > 0)
+					line.append(' ');
+				line.append(orca.orbit(node, o));
+			}
+			line.append('\n');
+			
+			writer.append(line);
+		}
+	}
+}
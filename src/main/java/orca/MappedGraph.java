@@ -0,0 +1,251 @@
+package orca;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
+
+/**
+ * Read-only access to the rows of a {@link GraphFile}, without loading it 
+ * onto the heap. The file is mapped in slices of 1 GB, and the operating 
+ * system pages in the parts that are used.
+ * 
+ * The 4-node orbits can be counted from the mapping directly, with 
+ * {@link Orca#Orca(MappedGraph, Orca.Options)}. If the file does not include 
+ * the triangle counts, {@link #withTriangles()} computes them onto the heap 
+ * (4 bytes per target).
+ * 
+ * Safe for concurrent reads.
+ * 
+ * @author Peter
+ *
+ */
+public final class MappedGraph implements Neighborhood.Rows, CursorGraph
+{
+	private static final int SLICE_BITS = 30;
+	private static final long SLICE_MASK = (1L << SLICE_BITS) - 1;
+	
+	private final ByteBuffer[] slices;
+	
+	private final int size;
+	private final long numTargets;
+	
+	private final long targetsStart;
+	
+	// * The triangle counts, if they are in the file, or computed
+	private final boolean triangles;
+	private final long trianglesStart;
+	private final int[] counts;
+	
+	private MappedGraph(ByteBuffer[] slices, int size, long numTargets, 
+			boolean triangles, int[] counts)
+	{
+		this.slices = slices;
+		this.size = size;
+		this.numTargets = numTargets;
+		
+		this.targetsStart = GraphFile.HEADER + 4L * (size + 1);
+		this.triangles = triangles || counts != null;
+		this.trianglesStart = triangles ? targetsStart + 4L * numTargets : -1;
+		this.counts = counts;
+	}
+	
+	/**
+	 * Maps a graph file.
+	 */
+	public static MappedGraph open(Path file)
+		throws IOException
+	{
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			long length = channel.size();
+			
+			ByteBuffer[] slices = new ByteBuffer[(int) ((length + SLICE_MASK) >>> SLICE_BITS)];
+			for(int s = 0; s < slices.length; s++)
+			{
+				long from = (long) s << SLICE_BITS;
+				slices[s] = channel.map(FileChannel.MapMode.READ_ONLY, from, 
+						Math.min(length - from, 1L << SLICE_BITS))
+						.order(ByteOrder.LITTLE_ENDIAN);
+			}
+			
+			if(length < GraphFile.HEADER || slices[0].getInt(0) != GraphFile.MAGIC)
+				throw new IOException("File "+file+" is not a graph file.");
+			if(slices[0].getInt(4) != GraphFile.VERSION)
+				throw new IOException("Unsupported graph file version "+slices[0].getInt(4)+".");
+			
+			int size = slices[0].getInt(12);
+			long numTargets = slices[0].getLong(16);
+			
+			if(size < 0 || numTargets < 0 || numTargets > Integer.MAX_VALUE - 8)
+				throw new IOException("Invalid header: "+size+" nodes, "+numTargets+" targets.");
+			
+			boolean triangles = (slices[0].getInt(8) & GraphFile.FLAG_TRIANGLES) != 0;
+			long expected = GraphFile.HEADER + 4L * (size + 1 + numTargets + (triangles ? numTargets : 0));
+			if(length != expected)
+				throw new IOException("File "+file+" has "+length+" bytes, expected "+expected+".");
+			
+			return new MappedGraph(slices, size, numTargets, triangles, null);
+		}
+	}
+	
+	@Override
+	public int size()
+	{
+		return size;
+	}
+	
+	public long numLinks()
+	{
+		return numTargets / 2;
+	}
+	
+	/**
+	 * The position of the row of the given node among the targets. 
+	 */
+	@Override
+	public int offset(int node)
+	{
+		return get(GraphFile.HEADER + 4L * node);
+	}
+	
+	@Override
+	public int degree(int node)
+	{
+		return offset(node + 1) - offset(node);
+	}
+	
+	/**
+	 * Whether the number of triangles on each link is in the file, or has
+	 * been computed.
+	 */
+	@Override
+	public boolean hasTriangles()
+	{
+		return triangles;
+	}
+	
+	/**
+	 * This graph with the number of triangles on each link. If the file does
+	 * not include them, they are computed in parallel, and kept on the heap.
+	 */
+	@Override
+	public MappedGraph withTriangles()
+	{
+		if(triangles)
+			return this;
+		
+		int[] counts = new int[(int) numTargets];
+		IntStream.range(0, size).parallel().forEach(i -> {
+			Cursor row = cursor(), other = cursor();
+			
+			for(int e = offset(i); e < offset(i + 1); e++)
+			{
+				row.start(i);
+				other.start(target(e));
+				counts[e] = intersect(row, other);
+			}
+		});
+		
+		return new MappedGraph(slices, size, numTargets, false, counts);
+	}
+	
+	/**
+	 * The number of elements two rows have in common. 
+	 */
+	private static int intersect(Cursor a, Cursor b)
+	{
+		int count = 0;
+		while(a.position < a.end && b.position < b.end)
+		{
+			int x = a.peek(), y = b.peek();
+			if(x <= y)
+				a.position++;
+			if(y <= x)
+				b.position++;
+			if(x == y)
+				count++;
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * The target at the given position.
+	 */
+	@Override
+	public int target(int position)
+	{
+		return get(targetsStart + 4L * position);
+	}
+	
+	@Override
+	public Cursor cursor()
+	{
+		return new Cursor();
+	}
+	
+	/**
+	 * Reads the neighbors of a node from the mapping, together with the 
+	 * number of triangles on each link, if these are available.
+	 */
+	public final class Cursor implements CursorGraph.Cursor
+	{
+		private int position, end;
+		
+		private Cursor()
+		{
+		}
+		
+		@Override
+		public void start(int node)
+		{
+			position = offset(node);
+			end = offset(node + 1);
+		}
+		
+		@Override
+		public void set(CursorGraph.Cursor other)
+		{
+			Cursor cursor = (Cursor) other;
+			position = cursor.position;
+			end = cursor.end;
+		}
+		
+		@Override
+		public boolean hasNext()
+		{
+			return position < end;
+		}
+		
+		@Override
+		public int next()
+		{
+			return target(position++);
+		}
+		
+		@Override
+		public int triangles()
+		{
+			if(! triangles)
+				return 0;
+			if(counts != null)
+				return counts[position - 1];
+			
+			return get(trianglesStart + 4L * (position - 1));
+		}
+		
+		private int peek()
+		{
+			return target(position);
+		}
+	}
+	
+	private int get(long position)
+	{
+		return slices[(int) (position >>> SLICE_BITS)].getInt((int) (position & SLICE_MASK));
+	}
+}
@@ -0,0 +1,60 @@
+package orca;
+
+import java.util.Arrays;
+
+/**
+ * Marks a set of nodes (usually the neighbors of some node), together with 
+ * their position in the neighbor list. Starting a new set is O(1), by 
+ * incrementing a stamp.
+ * 
+ * Not thread-safe: each worker should have its own.
+ * 
+ * @author Peter
+ *
+ */
+final class Marks
+{
+	private final int[] stamps;
+	private final int[] indices;
+	private int stamp = 0;
+	
+	/**
+	 * @param size The number of nodes in the graph.
+	 */
+	public Marks(int size)
+	{
+		stamps = new int[size];
+		indices = new int[size];
+	}
+	
+	/**
+	 * Clears all marks.
+	 */
+	public void next()
+	{
+		if(++stamp == Integer.MAX_VALUE)
+		{
+			Arrays.fill(stamps, 0);
+			stamp = 1;
+		}
+	}
+	
+	public void mark(int node, int index)
+	{
+		stamps[node] = stamp;
+		indices[node] = index;
+	}
+	
+	public boolean contains(int node)
+	{
+		return stamps[node] == stamp;
+	}
+	
+	/**
+	 * The index the node was marked with, or -1 if it isn't marked.
+	 */
+	public int index(int node)
+	{
+		return stamps[node] == stamp ? indices[node] : -1;
+	}
+}
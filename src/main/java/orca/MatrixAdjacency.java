@@ -0,0 +1,61 @@
+package orca;
+
+/**
+ * A bit matrix with one bit for every ordered pair of nodes.
+ * 
+ * @author Peter
+ *
+ */
+final class MatrixAdjacency implements Adjacency
+{
+	private final long[] bits;
+	private final int stride;
+	
+	public MatrixAdjacency(OrcaGraph graph)
+	{
+		if(! supports(graph))
+			throw new IllegalArgumentException("Graph too large ("+graph.size()+" nodes) for an adjacency matrix.");
+		
+		int n = graph.size();
+		stride = words(n);
+		bits = new long[stride * n];
+		
+		int[] offsets = graph.offsets(), targets = graph.targets();
+		for(int a = 0; a < n; a++)
+			for(int e = offsets[a]; e < offsets[a + 1]; e++)
+			{
+				int b = targets[e];
+				bits[a * stride + (b >>> 6)] |= 1L << b;
+			}
+	}
+	
+	@Override
+	public boolean connected(int a, int b)
+	{
+		return (bits[a * stride + (b >>> 6)] & (1L << b)) != 0;
+	}
+	
+	@Override
+	public long memory()
+	{
+		return 8L * bits.length;
+	}
+	
+	private static int words(int n)
+	{
+		return (n + 63) >>> 6;
+	}
+	
+	/**
+	 * Whether the matrix for this graph fits in a single array.
+	 */
+	static boolean supports(OrcaGraph graph)
+	{
+		return (long) words(graph.size()) * graph.size() <= Integer.MAX_VALUE - 8;
+	}
+	
+	static long memory(long n)
+	{
+		return 8L * ((n + 63) >>> 6) * n;
+	}
+}
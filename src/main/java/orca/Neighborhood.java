@@ -0,0 +1,388 @@
+package orca;
+
+import java.util.Arrays;
+
+/**
+ * The neighborhood of a set of seed nodes: the subgraph induced by the nodes
+ * within some distance of the seeds, with their degrees in the whole graph.
+ * This is all that is needed to count the orbits of the seeds: the counts of
+ * a node x only depend on the rows of the nodes within distance 1 (4-node
+ * orbits) or 2 (5-node orbits) of x, and on the degrees of the nodes one
+ * step further.
+ *
+ * The local indices follow the order of the global ones, so the rows stay
+ * sorted.
+ *
+ * @author Peter
+ *
+ */
+final class Neighborhood
+{
+	/**
+	 * The rows of a graph, in memory or mapped from a file.
+	 */
+	interface Rows
+	{
+		public int size();
+		
+		/**
+		 * The position of the row of the given node among the targets.
+		 */
+		public int offset(int node);
+		
+		/**
+		 * The target at the given position.
+		 */
+		public int target(int position);
+		
+		public default int degree(int node)
+		{
+			return offset(node + 1) - offset(node);
+		}
+	}
+	
+	private final boolean count5;
+	
+	// * The nodes of the neighborhood, sorted
+	private final int[] nodes;
+	// * The nodes whose rows are complete
+	private final int[] inner;
+	
+	private final OrcaGraph local;
+	private final int[] degree;
+	
+	private final int numSeeds;
+	private final long wedges;
+	
+	/**
+	 * Copies the induced subgraph, with the local offsets that were counted 
+	 * by {@link #of(Rows, int[], boolean, long)}.
+	 */
+	private Neighborhood(Rows graph, int[] nodes, int[] inner, int[] offsets, 
+			int numSeeds, long wedges, boolean count5)
+	{
+		this.count5 = count5;
+		this.nodes = nodes;
+		this.inner = inner;
+		this.numSeeds = numSeeds;
+		this.wedges = wedges;
+		
+		int[] targets = new int[offsets[nodes.length]];
+		degree = new int[nodes.length];
+		
+		for(int i = 0; i < nodes.length; i++)
+		{
+			int v = nodes[i];
+			int start = graph.offset(v), end = graph.offset(v + 1);
+			degree[i] = end - start;
+			
+			int k = offsets[i];
+			for(int e = start; e < end; e++)
+			{
+				int j = Arrays.binarySearch(nodes, graph.target(e));
+				if(j >= 0)
+					targets[k++] = j;
+			}
+		}
+		
+		local = OrcaGraph.wrap(offsets, targets);
+	}
+	
+	/**
+	 * Reads the neighborhood of the given seeds, if it fits in the given 
+	 * budget. 
+	 * 
+	 * The budget is checked before anything is copied: before each step of 
+	 * the breadth-first search, the number of new nodes is bounded by the 
+	 * summed degrees of the last step, and before the rows are copied, the 
+	 * links of the subgraph are counted by reading them from the graph. 
+	 * 
+	 * @param graph
+	 * @param seeds The seed nodes, sorted and distinct.
+	 * @param count5 Whether the 5-node orbits are counted, which needs a
+	 * 	neighborhood one step larger.
+	 * @param budget The largest {@link #memory()} that is allowed, in bytes.
+	 * @return The neighborhood, or null if it would exceed the budget.
+	 */
+	public static Neighborhood of(Rows graph, int[] seeds, boolean count5, long budget)
+	{
+		int numSeeds = seeds.length;
+		int radius = count5 ? 3 : 2;
+		
+		int[] visited = seeds;
+		int[] frontier = visited, innerNodes = visited;
+		for(int level = 1; level <= radius; level++)
+		{
+			long total = 0;
+			for(int v : frontier)
+				total += graph.degree(v);
+			
+			long bound = visited.length + Math.min(total, graph.size() - visited.length);
+			if(memory(bound, 0, 0, count5, numSeeds) > budget)
+				return null;
+			
+			frontier = minus(neighbors(graph, frontier), visited);
+			visited = merge(visited, frontier);
+			
+			if(level == radius - 1)
+				innerNodes = visited;
+		}
+		
+		int[] nodes = visited;
+		
+		int[] inner = new int[innerNodes.length];
+		for(int i = 0; i < inner.length; i++)
+			inner[i] = Arrays.binarySearch(nodes, innerNodes[i]);
+		
+		// * count the links of the induced subgraph
+		int[] offsets = new int[nodes.length + 1];
+		long entries = 0;
+		for(int i = 0; i < nodes.length; i++)
+		{
+			int v = nodes[i];
+			for(int e = graph.offset(v); e < graph.offset(v + 1); e++)
+				if(Arrays.binarySearch(nodes, graph.target(e)) >= 0)
+					entries++;
+			
+			if(entries > Integer.MAX_VALUE - 8)
+			{
+				if(memory(nodes.length, entries, 0, count5, numSeeds) > budget)
+					return null;
+				throw new IllegalStateException("The neighborhood has more links than fit in an array.");
+			}
+			
+			offsets[i + 1] = (int) entries;
+		}
+		
+		// * an upper bound on the number of pairs counted in stage 1
+		long wedges = 0;
+		if(count5)
+			for(int a : inner)
+			{
+				int v = nodes[a];
+				for(int e = graph.offset(v); e < graph.offset(v + 1); e++)
+				{
+					int j = Arrays.binarySearch(nodes, graph.target(e));
+					if(j >= 0)
+						wedges += offsets[j + 1] - offsets[j];
+				}
+			}
+		
+		if(memory(nodes.length, entries, wedges, count5, numSeeds) > budget)
+			return null;
+		
+		return new Neighborhood(graph, nodes, inner, offsets, numSeeds, wedges, count5);
+	}
+	
+	/**
+	 * The rows of a graph in memory.
+	 */
+	public static Rows rows(OrcaGraph graph)
+	{
+		int[] offsets = graph.offsets(), targets = graph.targets();
+		
+		return new Rows() {
+			@Override
+			public int size()
+			{
+				return offsets.length - 1;
+			}
+			
+			@Override
+			public int offset(int node)
+			{
+				return offsets[node];
+			}
+			
+			@Override
+			public int target(int position)
+			{
+				return targets[position];
+			}
+		};
+	}
+	
+	/**
+	 * The number of nodes in the neighborhood.
+	 */
+	public int size()
+	{
+		return nodes.length;
+	}
+	
+	/**
+	 * The local index of a node.
+	 */
+	public int index(int node)
+	{
+		return Arrays.binarySearch(nodes, node);
+	}
+	
+	/**
+	 * An estimate of the memory needed to count the seeds, in bytes.
+	 */
+	public long memory()
+	{
+		return memory(nodes.length, local.targets().length, wedges, count5, numSeeds);
+	}
+	
+	private static long memory(long nodes, long entries, long wedges, boolean count5, int numSeeds)
+	{
+		// * the node lists, the local graph, the triangles and the oriented 
+		//   graph of the cliques
+		long memory = 16 * nodes + 10 * entries;
+		
+		memory += 
+				16 * nodes +                // * the breadth-first search
+				36 * nodes +                // * the degrees, the ordering and the clique counts
+				(count5 ? 56 : 8) * nodes + // * the scratch state of the counters
+				8L * (count5 ? 73 : 15) * numSeeds + 
+				4096;                       // * the fixed size of the objects
+		
+		if(count5) // * the pair and triple counters
+			memory += 48 * wedges;
+		
+		return memory;
+	}
+	
+	/**
+	 * Computes the triangles, cliques and, for 5-node orbits, the common
+	 * neighbors, and returns a counter for the seeds (by their local index).
+	 */
+	public NodeCounter counter()
+	{
+		Triangles triangles = new Triangles(local);
+		for(int i = 0; i < local.size(); i++)
+			triangles.compute(i);
+		
+		int[] counts = triangles.counts();
+		
+		Cliques cliques = new Cliques(local, count5 ? 5 : 4);
+		Cliques.Worker worker = cliques.worker();
+		for(int i = 0; i < local.size(); i++)
+			worker.count(i);
+		
+		Adjacency adjacency = Adjacency.sorted(local);
+		
+		if(! count5)
+			return new Count4(local, counts, degree, adjacency, cliques.counts());
+		
+		PairCounter common2 = new PairCounter();
+		TripleCounter common3 = new TripleCounter(local.size());
+		
+		Common common = new Common(local, counts, adjacency, common2, common3);
+		for(int a : inner)
+			common.count(a);
+		
+		return new Count5(local, counts, degree, common2, common3, cliques.counts());
+	}
+	
+	/**
+	 * The sorted, distinct neighbors of the given nodes, by merging their 
+	 * sorted rows with a heap. This only allocates the result and the heap,
+	 * however large the summed degree is.
+	 */
+	private static int[] neighbors(Rows graph, int[] nodes)
+	{
+		// * the heap holds the next position in each row that is not done
+		int[] position = new int[nodes.length], end = new int[nodes.length];
+		int size = 0;
+		for(int v : nodes)
+			if(graph.degree(v) > 0)
+			{
+				position[size] = graph.offset(v);
+				end[size] = graph.offset(v + 1);
+				size++;
+			}
+		
+		for(int i = size / 2 - 1; i >= 0; i--)
+			down(graph, position, end, size, i);
+		
+		int[] result = new int[Math.max(16, size)];
+		int k = 0;
+		while(size > 0)
+		{
+			int target = graph.target(position[0]);
+			if(k == 0 || result[k - 1] != target)
+			{
+				if(k == result.length)
+					result = Arrays.copyOf(result, (int) Math.min(Integer.MAX_VALUE - 8, 2L * k));
+				result[k++] = target;
+			}
+			
+			if(++position[0] == end[0])
+			{
+				size--;
+				position[0] = position[size];
+				end[0] = end[size];
+			}
+			
+			down(graph, position, end, size, 0);
+		}
+		
+		return Arrays.copyOf(result, k);
+	}
+	
+	/**
+	 * Moves the row at index i of the heap down to its place.
+	 */
+	private static void down(Rows graph, int[] position, int[] end, int size, int i)
+	{
+		if(i >= size)
+			return;
+		
+		int p = position[i], e = end[i], target = graph.target(p);
+		while(true)
+		{
+			int child = 2 * i + 1;
+			if(child >= size)
+				break;
+			if(child + 1 < size && graph.target(position[child + 1]) < graph.target(position[child]))
+				child++;
+			if(graph.target(position[child]) >= target)
+				break;
+			
+			position[i] = position[child];
+			end[i] = end[child];
+			i = child;
+		}
+		
+		position[i] = p;
+		end[i] = e;
+	}
+	
+	/**
+	 * The elements of sorted array a that are not in sorted array b.
+	 */
+	private static int[] minus(int[] a, int[] b)
+	{
+		int[] result = new int[a.length];
+		int k = 0, j = 0;
+		for(int i = 0; i < a.length; i++)
+		{
+			while(j < b.length && b[j] < a[i])
+				j++;
+			if(j == b.length || b[j] != a[i])
+				result[k++] = a[i];
+		}
+		
+		return Arrays.copyOf(result, k);
+	}
+	
+	/**
+	 * The union of two sorted, disjoint arrays.
+	 */
+	private static int[] merge(int[] a, int[] b)
+	{
+		int[] result = new int[a.length + b.length];
+		int i = 0, j = 0, k = 0;
+		while(i < a.length && j < b.length)
+			result[k++] = a[i] < b[j] ? a[i++] : b[j++];
+		while(i < a.length)
+			result[k++] = a[i++];
+		while(j < b.length)
+			result[k++] = b[j++];
+		
+		return result;
+	}
+}
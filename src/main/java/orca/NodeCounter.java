@@ -0,0 +1,26 @@
+package orca;
+
+/**
+ * The per-node stage of the orbit counting. Implementations hold the scratch 
+ * state of a single worker, so each thread should use its own instance.
+ * 
+ * @author Peter
+ *
+ */
+interface NodeCounter
+{
+	/**
+	 * Counts the orbits of node x.
+	 * 
+	 * @param x
+	 * @param orbit The array to write the orbit counts to. It should be filled 
+	 * 	with zeroes.
+	 */
+	public void count(int x, long[] orbit);
+	
+	/**
+	 * An estimate of the relative cost of {@link #count(int, long[])} for node 
+	 * x, used to divide the nodes into tasks of similar size. 
+	 */
+	public long cost(int x);
+}
@@ -0,0 +1,137 @@
+package orca;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * The orbit counts (graphlet degree vectors) of a few nodes of a graph,
+ * computed from their neighborhoods only.
+ *
+ * Only the rows of the nodes within 2 (4-node orbits) or 3 (5-node orbits)
+ * hops of the given nodes are read (see {@link Neighborhood}), and the
+ * triangles, cliques and common neighbors are computed on that subgraph
+ * alone. The time and memory depend on the size of these neighborhoods, not
+ * on the size of the graph, so this also works on a large {@link GraphFile}
+ * that is mapped rather than loaded.
+ *
+ * @author Peter
+ *
+ */
+public final class NodeOrbits
+{
+	private final boolean count5;
+	
+	// * The requested nodes, sorted, and their orbit counts
+	private final int[] nodes;
+	private final long[][] orbits;
+	
+	private final int neighborhood;
+	
+	private NodeOrbits(Neighborhood.Rows graph, boolean count5, int[] nodes)
+	{
+		this.count5 = count5;
+		
+		int[] sorted = nodes.clone();
+		Arrays.sort(sorted);
+		
+		int unique = 0;
+		for(int node : sorted)
+		{
+			if(node < 0 || node >= graph.size())
+				throw new IllegalArgumentException("Node "+node+" out of range [0, "+graph.size()+").");
+			
+			if(unique == 0 || node != sorted[unique - 1])
+				sorted[unique++] = node;
+		}
+		
+		this.nodes = Arrays.copyOf(sorted, unique);
+		
+		Neighborhood local = Neighborhood.of(graph, this.nodes, count5, Long.MAX_VALUE);
+		neighborhood = local.size();
+		
+		NodeCounter counter = local.counter();
+		
+		orbits = new long[this.nodes.length][numOrbits()];
+		for(int i = 0; i < this.nodes.length; i++)
+			counter.count(local.index(this.nodes[i]), orbits[i]);
+	}
+	
+	/**
+	 * Counts the orbits of the given nodes of a graph in memory.
+	 *
+	 * @param graph
+	 * @param count5 Whether to count the orbits of graphlets with 5 nodes
+	 * 	(73 orbits) or only those up to 4 nodes (15 orbits).
+	 * @param nodes The nodes to count. Duplicates are ignored.
+	 */
+	public static NodeOrbits of(OrcaGraph graph, boolean count5, int... nodes)
+	{
+		return new NodeOrbits(Neighborhood.rows(graph), count5, nodes);
+	}
+	
+	/**
+	 * Counts the orbits of the given nodes of a graph file, which is mapped
+	 * rather than loaded.
+	 *
+	 * @param graphFile A file written by {@link GraphFile}.
+	 * @param count5 Whether to count the orbits of graphlets with 5 nodes
+	 * 	(73 orbits) or only those up to 4 nodes (15 orbits).
+	 * @param nodes The nodes to count. Duplicates are ignored.
+	 */
+	public static NodeOrbits of(Path graphFile, boolean count5, int... nodes)
+		throws IOException
+	{
+		return new NodeOrbits(MappedGraph.open(graphFile), count5, nodes);
+	}
+	
+	public int numOrbits()
+	{
+		return count5 ? 73 : 15;
+	}
+	
+	/**
+	 * The nodes that were counted, sorted.
+	 */
+	public int[] nodes()
+	{
+		return nodes.clone();
+	}
+	
+	/**
+	 * How often the given node participates in the given orbit.
+	 *
+	 * @throws IllegalArgumentException If the node was not counted.
+	 */
+	public long orbit(int node, int orbit)
+	{
+		return orbits[row(node)][orbit];
+	}
+	
+	/**
+	 * All orbit counts of the given node.
+	 *
+	 * @throws IllegalArgumentException If the node was not counted.
+	 */
+	public long[] orbits(int node)
+	{
+		return orbits[row(node)].clone();
+	}
+	
+	/**
+	 * The number of nodes in the neighborhood that was read.
+	 */
+	public int neighborhoodSize()
+	{
+		return neighborhood;
+	}
+	
+	private int row(int node)
+	{
+		int row = Arrays.binarySearch(nodes, node);
+		if(row < 0)
+			throw new IllegalArgumentException("Node "+node+" was not counted.");
+		
+		return row;
+	}
+}
@@ -0,0 +1,495 @@
+package orca;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A compact, columnar file of orbit counts, and a reader that maps it. 
+ * 
+ * The rows are stored in groups of up to {@link #GROUP} nodes, in the order
+ * in which they were written, so that a {@link Writer} can be used as an 
+ * {@link OrbitSink}. Within a group, each column (the node indices, and the 
+ * counts of each orbit) is stored as its minimum plus, for every row, the 
+ * difference with that minimum in the smallest width of 0, 1, 2, 4 or 8 
+ * bytes. Columns that are constant, like most high orbits of sparse graphs, 
+ * take no space, and every value can be read directly. A group of 
+ * consecutive nodes does not store their indices.
+ * 
+ * The file is little-endian:
+ * <pre>
+ *   header: int magic ("ORBC"), int version, int graphlet size (4 or 5), 
+ *           int number of orbits, long number of nodes
+ *   groups: int rows, then per column: byte width, long minimum, data
+ *   footer: long offset of each group, int number of groups, 
+ *           long position of the footer
+ * </pre>
+ * 
+ * The index from nodes to rows is built when the file is opened, so the 
+ * reader is immutable and safe for concurrent reads.
+ * 
+ * @author Peter
+ *
+ */
+public final class OrbitColumns
+{
+	static final int MAGIC = 0x4F524243;
+	static final int VERSION = 1;
+	static final int HEADER = 24;
+	
+	/**
+	 * The maximum number of rows in a group.
+	 */
+	public static final int GROUP = 1 << 14;
+	
+	/**
+	 * The width of a node column with consecutive indices.
+	 */
+	private static final int SEQUENTIAL = 0xff;
+	
+	private final int graphletSize;
+	private final int numOrbits;
+	private final int size;
+	
+	private final ByteBuffer[] groups;
+	private final int[] rows;
+	
+	// * For each group and column, the position, width and minimum
+	private final int[][] positions;
+	private final int[][] widths;
+	private final long[][] minimums;
+	
+	// * Finding the row of a node: by the sequential groups sorted by first 
+	//   node, or, if some groups are not sequential, by an index per node
+	private final int[] byFirst;
+	private final int[] groupOf;
+	private final int[] rowOf;
+	
+	private OrbitColumns(int graphletSize, int numOrbits, int size, ByteBuffer[] groups)
+		throws IOException
+	{
+		this.graphletSize = graphletSize;
+		this.numOrbits = numOrbits;
+		this.size = size;
+		this.groups = groups;
+		
+		rows = new int[groups.length];
+		positions = new int[groups.length][numOrbits + 1];
+		widths = new int[groups.length][numOrbits + 1];
+		minimums = new long[groups.length][numOrbits + 1];
+		
+		for(int g = 0; g < groups.length; g++)
+		{
+			ByteBuffer group = groups[g];
+			rows[g] = group.getInt(0);
+			
+			int position = 4;
+			for(int c = 0; c <= numOrbits; c++)
+			{
+				widths[g][c] = group.get(position) & 0xff;
+				minimums[g][c] = group.getLong(position + 1);
+				positions[g][c] = position + 9;
+				
+				position += 9 + (widths[g][c] == SEQUENTIAL ? 0 : rows[g] * widths[g][c]);
+			}
+		}
+		
+		long total = 0;
+		for(int r : rows)
+			total += r;
+		if(total != size)
+			throw new IOException("The file has "+total+" rows, expected "+size+".");
+		
+		boolean sequential = true;
+		for(int g = 0; g < groups.length; g++)
+			sequential &= widths[g][0] == SEQUENTIAL;
+		
+		if(sequential)
+		{
+			Integer[] order = new Integer[groups.length];
+			for(int g = 0; g < order.length; g++)
+				order[g] = g;
+			Arrays.sort(order, (a, b) -> Long.compare(minimums[a][0], minimums[b][0]));
+			
+			byFirst = new int[order.length];
+			for(int i = 0; i < order.length; i++)
+				byFirst[i] = order[i];
+			
+			groupOf = null;
+			rowOf = null;
+		} else
+		{
+			byFirst = null;
+			groupOf = new int[size];
+			rowOf = new int[size];
+			for(int g = 0; g < groups.length; g++)
+				for(int r = 0; r < rows[g]; r++)
+				{
+					long node = value(g, 0, r);
+					if(node < 0 || node >= size)
+						throw new IOException("Node "+node+" out of range [0, "+size+").");
+					
+					groupOf[(int) node] = g;
+					rowOf[(int) node] = r;
+				}
+		}
+	}
+	
+	/**
+	 * Maps a file written by a {@link Writer}.
+	 */
+	public static OrbitColumns open(Path file)
+		throws IOException
+	{
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			long length = channel.size();
+			if(length < HEADER + 12)
+				throw new IOException("File "+file+" is not an orbit column file.");
+			
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			
+			if(header.getInt(0) != MAGIC)
+				throw new IOException("File "+file+" is not an orbit column file.");
+			if(header.getInt(4) != VERSION)
+				throw new IOException("Unsupported orbit column file version "+header.getInt(4)+".");
+			
+			int graphletSize = header.getInt(8), numOrbits = header.getInt(12);
+			long size = header.getLong(16);
+			
+			ByteBuffer end = channel.map(FileChannel.MapMode.READ_ONLY, length - 12, 12)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			int numGroups = end.getInt(0);
+			long footer = end.getLong(4);
+			
+			if(numOrbits < 1 || size < 0 || size > Integer.MAX_VALUE || numGroups < 0 || 
+					footer < HEADER || footer + 8L * numGroups + 12 != length)
+				throw new IOException("File "+file+" is corrupt.");
+			
+			ByteBuffer offsets = channel.map(FileChannel.MapMode.READ_ONLY, footer, 8L * numGroups)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			
+			ByteBuffer[] groups = new ByteBuffer[numGroups];
+			for(int g = 0; g < numGroups; g++)
+			{
+				long from = offsets.getLong(8 * g);
+				long to = g + 1 < numGroups ? offsets.getLong(8 * (g + 1)) : footer;
+				
+				groups[g] = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from)
+						.order(ByteOrder.LITTLE_ENDIAN);
+			}
+			
+			return new OrbitColumns(graphletSize, numOrbits, (int) size, groups);
+		}
+	}
+	
+	/**
+	 * The size of the largest graphlets that were counted: 4 (15 orbits) or 5
+	 * (73 orbits).
+	 */
+	public int graphletSize()
+	{
+		return graphletSize;
+	}
+	
+	public int numOrbits()
+	{
+		return numOrbits;
+	}
+	
+	/**
+	 * Number of nodes
+	 */
+	public int size()
+	{
+		return size;
+	}
+	
+	/**
+	 * The counts of one orbit for all nodes, in the order of the nodes.
+	 */
+	public long[] column(int orbit)
+	{
+		if(orbit < 0 || orbit >= numOrbits)
+			throw new IndexOutOfBoundsException("Orbit "+orbit+" out of range [0, "+numOrbits+").");
+		
+		long[] column = new long[size];
+		for(int g = 0; g < groups.length; g++)
+			for(int r = 0; r < rows[g]; r++)
+				column[(int) value(g, 0, r)] = value(g, orbit + 1, r);
+		
+		return column;
+	}
+	
+	/**
+	 * How often the given node participates in the given orbit.
+	 */
+	public long get(int node, int orbit)
+	{
+		if(orbit < 0 || orbit >= numOrbits)
+			throw new IndexOutOfBoundsException("Orbit "+orbit+" out of range [0, "+numOrbits+").");
+		
+		long location = locate(node);
+		return value((int) (location >>> 32), orbit + 1, (int) location);
+	}
+	
+	/**
+	 * Copies the counts of the given node into the given array.
+	 */
+	public void row(int node, long[] row)
+	{
+		long location = locate(node);
+		int g = (int) (location >>> 32), r = (int) location;
+		
+		for(int o = 0; o < numOrbits; o++)
+			row[o] = value(g, o + 1, r);
+	}
+	
+	/**
+	 * The value in the given group, column (0 for the node indices) and row.
+	 */
+	private long value(int g, int c, int r)
+	{
+		ByteBuffer group = groups[g];
+		int position = positions[g][c];
+		long min = minimums[g][c];
+		
+		switch(widths[g][c])
+		{
+			case 0: return min;
+			case 1: return min + (group.get(position + r) & 0xffL);
+			case 2: return min + (group.getShort(position + 2 * r) & 0xffffL);
+			case 4: return min + (group.getInt(position + 4 * r) & 0xffffffffL);
+			case 8: return min + group.getLong(position + 8 * r);
+			default: return min + r; // SEQUENTIAL
+		}
+	}
+	
+	/**
+	 * The group (upper 32 bits) and row (lower 32 bits) of a node.
+	 */
+	private long locate(int node)
+	{
+		if(node < 0 || node >= size)
+			throw new IndexOutOfBoundsException("Node "+node+" out of range [0, "+size+").");
+		
+		if(groupOf != null)
+			return ((long) groupOf[node] << 32) | rowOf[node];
+		
+		// * the last sequential group that starts at or before the node
+		int lo = 0, hi = byFirst.length - 1;
+		while(lo < hi)
+		{
+			int mid = (lo + hi + 1) >>> 1;
+			if(minimums[byFirst[mid]][0] <= node)
+				lo = mid;
+			else
+				hi = mid - 1;
+		}
+		
+		int g = byFirst[lo];
+		return ((long) g << 32) | (node - minimums[g][0]);
+	}
+	
+	/**
+	 * Writes the orbit counts of a graph to a column file. Rows can be 
+	 * written in any order, but each node should be written exactly once. 
+	 * The file is complete after {@link #close()}.
+	 * 
+	 * This can be passed to {@link Orca.Options#sink(OrbitSink)}, so that 
+	 * the counts are written as they are computed. Not thread-safe by 
+	 * itself (Orca calls its sink from one thread at a time).
+	 */
+	public static final class Writer implements OrbitSink, Closeable
+	{
+		private final FileChannel channel;
+		
+		private final int numOrbits;
+		private final int size;
+		
+		// * The buffered group, column by column
+		private final int[] nodes = new int[GROUP];
+		private final long[][] columns;
+		private int numRows = 0;
+		
+		private long[] offsets = new long[16];
+		private int numGroups = 0;
+		private long written = 0;
+		
+		private ByteBuffer buffer;
+		
+		/**
+		 * @param file The file to write to. An existing file is overwritten.
+		 * @param numOrbits 15 or 73.
+		 * @param size The number of nodes.
+		 */
+		public Writer(Path file, int numOrbits, int size)
+			throws IOException
+		{
+			if(numOrbits != 15 && numOrbits != 73)
+				throw new IllegalArgumentException("Number of orbits ("+numOrbits+") should be 15 or 73.");
+			if(size < 0)
+				throw new IllegalArgumentException("Number of nodes ("+size+") should not be negative.");
+			
+			this.numOrbits = numOrbits;
+			this.size = size;
+			
+			columns = new long[numOrbits][GROUP];
+			buffer = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+			
+			channel = FileChannel.open(file, StandardOpenOption.WRITE, 
+					StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+			
+			buffer.putInt(MAGIC).putInt(VERSION).putInt(numOrbits == 15 ? 4 : 5)
+				.putInt(numOrbits).putLong(size);
+			write(buffer);
+		}
+		
+		@Override
+		public void accept(int node, long[] counts)
+		{
+			if(node < 0 || node >= size)
+				throw new IndexOutOfBoundsException("Node "+node+" out of range [0, "+size+").");
+			
+			nodes[numRows] = node;
+			for(int o = 0; o < numOrbits; o++)
+				columns[o][numRows] = counts[o];
+			numRows++;
+			
+			if(numRows == GROUP)
+			{
+				try {
+					flush();
+				} catch(IOException e)
+				{
+					throw new UncheckedIOException(e);
+				}
+			}
+		}
+		
+		/**
+		 * Encodes and writes the buffered group.
+		 */
+		private void flush()
+			throws IOException
+		{
+			if(numRows == 0)
+				return;
+			
+			boolean sequential = true;
+			for(int r = 1; r < numRows; r++)
+				sequential &= nodes[r] == nodes[r - 1] + 1;
+			
+			// * the widths and minimums of the columns
+			int[] width = new int[numOrbits + 1];
+			long[] min = new long[numOrbits + 1];
+			
+			long bytes = 4;
+			for(int c = 0; c <= numOrbits; c++)
+			{
+				if(c == 0 && sequential)
+				{
+					width[0] = SEQUENTIAL;
+					min[0] = nodes[0];
+				} else
+				{
+					long lo = Long.MAX_VALUE, hi = Long.MIN_VALUE;
+					for(int r = 0; r < numRows; r++)
+					{
+						long value = c == 0 ? nodes[r] : columns[c - 1][r];
+						lo = Math.min(lo, value);
+						hi = Math.max(hi, value);
+					}
+					
+					long range = hi - lo;
+					width[c] = range == 0 ? 0 : range < 1L << 8 ? 1 : range < 1L << 16 ? 2 : range < 1L << 32 ? 4 : 8;
+					min[c] = lo;
+					
+					bytes += (long) numRows * width[c];
+				}
+				
+				bytes += 9;
+			}
+			
+			if(buffer.capacity() < bytes)
+				buffer = ByteBuffer.allocate((int) bytes).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.clear();
+			
+			buffer.putInt(numRows);
+			for(int c = 0; c <= numOrbits; c++)
+			{
+				buffer.put((byte) width[c]);
+				buffer.putLong(min[c]);
+				
+				if(width[c] == 0 || width[c] == SEQUENTIAL)
+					continue;
+				
+				for(int r = 0; r < numRows; r++)
+				{
+					long value = (c == 0 ? nodes[r] : columns[c - 1][r]) - min[c];
+					switch(width[c])
+					{
+						case 1: buffer.put((byte) value); break;
+						case 2: buffer.putShort((short) value); break;
+						case 4: buffer.putInt((int) value); break;
+						default: buffer.putLong(value);
+					}
+				}
+			}
+			
+			if(numGroups == offsets.length)
+				offsets = Arrays.copyOf(offsets, 2 * numGroups);
+			offsets[numGroups++] = channel.position();
+			
+			write(buffer);
+			
+			written += numRows;
+			numRows = 0;
+		}
+		
+		private void write(ByteBuffer buffer)
+			throws IOException
+		{
+			buffer.flip();
+			while(buffer.hasRemaining())
+				channel.write(buffer);
+			buffer.clear();
+		}
+		
+		/**
+		 * Writes the last group and the footer, and closes the file.
+		 * 
+		 * @throws IOException If not every node was written.
+		 */
+		@Override
+		public void close()
+			throws IOException
+		{
+			try {
+				flush();
+				
+				if(written != size)
+					throw new IOException("Only "+written+" of "+size+" rows were written.");
+				
+				long footer = channel.position();
+				
+				ByteBuffer end = ByteBuffer.allocate(8 * numGroups + 12).order(ByteOrder.LITTLE_ENDIAN);
+				for(int g = 0; g < numGroups; g++)
+					end.putLong(offsets[g]);
+				end.putInt(numGroups);
+				end.putLong(footer);
+				write(end);
+			} finally
+			{
+				channel.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,252 @@
+package orca;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The orbit counts of all nodes, stored off-heap: one row of longs per node, 
+ * in direct buffers of at most 1 GB that each hold a whole number of rows. 
+ * This avoids an array object per node, and keeps the counts out of the 
+ * garbage collector's way. Direct memory is limited by 
+ * -XX:MaxDirectMemorySize, which defaults to the maximum heap size.
+ * 
+ * A matrix can also be backed by a memory-mapped file, so that the counts 
+ * outlive the process. The file is little-endian, and starts with a header:
+ * <pre>
+ *   int magic ("ORBS")
+ *   int version
+ *   int number of nodes
+ *   int number of orbits
+ * </pre>
+ * followed by the rows.
+ * 
+ * Different rows can be written concurrently.
+ * 
+ * @author Peter
+ *
+ */
+public final class OrbitMatrix
+{
+	static final int MAGIC = 0x4F524253;
+	static final int VERSION = 1;
+	static final int HEADER = 16;
+	
+	private static final long SLICE = 1L << 30;
+	
+	private final int size;
+	private final int numOrbits;
+	
+	private final int rowsPerSlice;
+	private final LongBuffer[] slices;
+	private final MappedByteBuffer[] mapped;
+	
+	private OrbitMatrix(int size, int numOrbits, int rowsPerSlice, 
+			LongBuffer[] slices, MappedByteBuffer[] mapped)
+	{
+		this.size = size;
+		this.numOrbits = numOrbits;
+		this.rowsPerSlice = rowsPerSlice;
+		this.slices = slices;
+		this.mapped = mapped;
+	}
+	
+	/**
+	 * The number of whole rows that fit in a slice of the given number of 
+	 * bytes.
+	 */
+	private static int rowsPerSlice(int numOrbits, long slice)
+	{
+		return (int) Math.max(1, Math.min(Integer.MAX_VALUE / numOrbits, slice / (8L * numOrbits)));
+	}
+	
+	private static void check(int size, int numOrbits)
+	{
+		if(size < 0 || numOrbits < 1)
+			throw new IllegalArgumentException("Invalid dimensions: "+size+" nodes, "+numOrbits+" orbits.");
+	}
+	
+	/**
+	 * A matrix of zeroes in direct memory.
+	 */
+	public static OrbitMatrix allocate(int size, int numOrbits)
+	{
+		return allocate(size, numOrbits, SLICE);
+	}
+	
+	/**
+	 * A matrix of zeroes in direct memory, in slices of at most the given 
+	 * number of bytes (but at least one row).
+	 */
+	static OrbitMatrix allocate(int size, int numOrbits, long slice)
+	{
+		check(size, numOrbits);
+		
+		int rows = rowsPerSlice(numOrbits, slice);
+		LongBuffer[] slices = new LongBuffer[(int) (((long) size + rows - 1) / rows)];
+		for(int s = 0; s < slices.length; s++)
+		{
+			int num = (int) Math.min(rows, size - (long) s * rows);
+			slices[s] = ByteBuffer.allocateDirect(8 * num * numOrbits)
+					.order(ByteOrder.nativeOrder()).asLongBuffer();
+		}
+		
+		return new OrbitMatrix(size, numOrbits, rows, slices, null);
+	}
+	
+	/**
+	 * A matrix of zeroes backed by a new file. An existing file is 
+	 * overwritten.
+	 */
+	public static OrbitMatrix create(Path file, int size, int numOrbits)
+		throws IOException
+	{
+		check(size, numOrbits);
+		
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, 
+				StandardOpenOption.WRITE, StandardOpenOption.CREATE, 
+				StandardOpenOption.TRUNCATE_EXISTING))
+		{
+			ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(numOrbits).flip();
+			while(header.hasRemaining())
+				channel.write(header);
+			
+			return map(channel, size, numOrbits, FileChannel.MapMode.READ_WRITE);
+		}
+	}
+	
+	/**
+	 * Opens a matrix that was stored in a file by 
+	 * {@link #create(Path, int, int)}. 
+	 * 
+	 * @param writable Whether the counts can be changed.
+	 */
+	public static OrbitMatrix open(Path file, boolean writable)
+		throws IOException
+	{
+		StandardOpenOption[] options = writable ? 
+				new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE} : 
+				new StandardOpenOption[]{StandardOpenOption.READ};
+		
+		try(FileChannel channel = FileChannel.open(file, options))
+		{
+			ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+			while(header.hasRemaining() && channel.read(header) >= 0);
+			
+			if(header.position() < HEADER || header.getInt(0) != MAGIC)
+				throw new IOException("File "+file+" is not an orbit file.");
+			if(header.getInt(4) != VERSION)
+				throw new IOException("Unsupported orbit file version "+header.getInt(4)+".");
+			
+			int size = header.getInt(8), numOrbits = header.getInt(12);
+			if(size < 0 || numOrbits < 1)
+				throw new IOException("Invalid header: "+size+" nodes, "+numOrbits+" orbits.");
+			
+			long expected = HEADER + 8L * size * numOrbits;
+			if(channel.size() != expected)
+				throw new IOException("File "+file+" has "+channel.size()+" bytes, expected "+expected+".");
+			
+			return map(channel, size, numOrbits, 
+					writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY);
+		}
+	}
+	
+	private static OrbitMatrix map(FileChannel channel, int size, int numOrbits, FileChannel.MapMode mode)
+		throws IOException
+	{
+		int rows = rowsPerSlice(numOrbits, SLICE);
+		
+		LongBuffer[] slices = new LongBuffer[(int) (((long) size + rows - 1) / rows)];
+		MappedByteBuffer[] mapped = new MappedByteBuffer[slices.length];
+		for(int s = 0; s < slices.length; s++)
+		{
+			int num = (int) Math.min(rows, size - (long) s * rows);
+			
+			mapped[s] = channel.map(mode, HEADER + 8L * s * rows * numOrbits, 8L * num * numOrbits);
+			slices[s] = mapped[s].order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+		}
+		
+		return new OrbitMatrix(size, numOrbits, rows, slices, mapped);
+	}
+	
+	/**
+	 * Number of nodes
+	 */
+	public int size()
+	{
+		return size;
+	}
+	
+	public int numOrbits()
+	{
+		return numOrbits;
+	}
+	
+	/**
+	 * How often the given node participates in the given orbit.
+	 */
+	public long get(int node, int orbit)
+	{
+		return slices[node / rowsPerSlice].get(index(node, orbit));
+	}
+	
+	public void set(int node, int orbit, long count)
+	{
+		slices[node / rowsPerSlice].put(index(node, orbit), count);
+	}
+	
+	/**
+	 * Copies the counts of the given node into the given array.
+	 */
+	public void row(int node, long[] row)
+	{
+		LongBuffer slice = slices[node / rowsPerSlice];
+		int start = index(node, 0);
+		for(int o = 0; o < numOrbits; o++)
+			row[o] = slice.get(start + o);
+	}
+	
+	/**
+	 * Sets the counts of the given node.
+	 */
+	public void setRow(int node, long[] row)
+	{
+		LongBuffer slice = slices[node / rowsPerSlice];
+		int start = index(node, 0);
+		for(int o = 0; o < numOrbits; o++)
+			slice.put(start + o, row[o]);
+	}
+	
+	private int index(int node, int orbit)
+	{
+		if(orbit < 0 || orbit >= numOrbits)
+			throw new IndexOutOfBoundsException("Orbit "+orbit+" out of range [0, "+numOrbits+").");
+		
+		return (node % rowsPerSlice) * numOrbits + orbit;
+	}
+	
+	/**
+	 * Whether the matrix is backed by a file.
+	 */
+	public boolean mapped()
+	{
+		return mapped != null;
+	}
+	
+	/**
+	 * Writes any changes to a file-backed matrix to the storage device. 
+	 */
+	public void force()
+	{
+		if(mapped != null)
+			for(MappedByteBuffer buffer : mapped)
+				if(! buffer.isReadOnly())
+					buffer.force();
+	}
+}
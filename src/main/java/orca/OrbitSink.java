@@ -0,0 +1,28 @@
+package orca;
+
+/**
+ * Receives the orbit counts of each node as soon as they are computed, so 
+ * that they do not have to be stored (see 
+ * {@link Orca.Options#sink(OrbitSink)}).
+ * 
+ * Orca calls the sink from its worker threads, but never concurrently: a 
+ * worker waits until the sink is free and has returned. A slow sink 
+ * therefore slows down the counting, instead of letting rows pile up in 
+ * memory. 
+ * 
+ * @author Peter
+ *
+ */
+@FunctionalInterface
+public interface OrbitSink
+{
+	/**
+	 * Receives the counts of one node. Each node is passed exactly once, but
+	 * not necessarily in order.
+	 * 
+	 * @param node The index of the node in the graph as given.
+	 * @param counts The count for each orbit. The array is reused after this
+	 * 	method returns, so it should be copied if it is kept.
+	 */
+	public void accept(int node, long[] counts);
+}
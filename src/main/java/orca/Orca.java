@@ -3,44 +3,42 @@ package orca;
 import static java.lang.Math.max;
 import static java.lang.Math.min;
 import static nl.peterbloem.kit.BitString.parse;
-import static nl.peterbloem.kit.Functions.overlap;
 import static nl.peterbloem.kit.Series.series;
 import static org.nodes.Graphs.fromBits;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
 
 import org.nodes.Graphs;
-import org.nodes.Link;
-import org.nodes.MapUTGraph;
-import org.nodes.Node;
 import org.nodes.UGraph;
 import org.nodes.ULink;
 import org.nodes.UNode;
-import org.nodes.algorithms.Nauty;
 
-import kotlin.collections.MapAccessorsKt;
 import nl.peterbloem.kit.BitString;
-import nl.peterbloem.kit.FrequencyModel;
-import nl.peterbloem.kit.Functions;
-import nl.peterbloem.kit.Global;
-import nl.peterbloem.kit.Pair;
 import nl.peterbloem.kit.Series;
 
 /**
- * NOTE: Something goes wrong when a lightDgraph is passed. likely due to 
- * non-persistent links
+ * Counts, for every node in a graph, how often it occurs in each orbit of the
+ * graphlets of size 2 to 4 (15 orbits) or 2 to 5 (73 orbits).
+ * 
+ * The input is an {@link OrcaGraph}, a sorted CSR structure. Graphs from the 
+ * nodes library are converted with {@link OrcaGraph#fromUGraph(UGraph)}.
  * 
  * @author Peter
  *
- * @param <?>
  */
 public class Orca
 {
@@ -49,37 +47,469 @@ public class Orca
 	 * Largest orbit index for a size 4 graph
 	 */
 	private static final int  LARGEST_S4_ORBIT = 14;
-	private UGraph<?> graph;
+	private OrcaGraph graph;
+	
+	/**
+	 * The graph, if it was given in compressed or mapped form.
+	 */
+	private CursorGraph cursorGraph;
 	
-	private int[][] neighbors;
-	private int[][] triangles;
+	private int[] offsets;
+	private int[] targets;
+	private int[] triangles;
+	private Triangles triangleCounts;
 	private int[] degree;
 	
-	Set<Pair> connected = new HashSet<Pair>();
+	private Adjacency adjacency;
 	
 	/**
-	 * Canonical order of small graphs
+	 * If the graph was relabeled: the graph as given, and for each of its 
+	 * nodes the index in the relabeled graph. 
 	 */
-	private static List<UGraph<String>> graphs;
-	private static Map<UGraph<String>, Integer> graph2Index;
-	private static Map<Integer, Integer> orbit2Graph;
-	private static Map<Integer, Set<Integer>> graph2Orbits;
+	private OrcaGraph original;
+	private int[] newIndex;
 	
 	private boolean count5;
 	
-	private long[][] orbit;
+	/**
+	 * The orbit counts, by the original index of each node.
+	 */
+	private OrbitMatrix orbits;
+	private Path orbitFile;
+	
+	/**
+	 * If set, receives the counts instead of the orbit matrix.
+	 */
+	private OrbitSink sink;
+	
+	/**
+	 * The number of nodes.
+	 */
+	private int size;
+	
+	/**
+	 * If the graph was relabeled: for each node of the relabeled graph, its
+	 * index in the graph as given.
+	 */
+	private int[] oldIndex;
+	
+	/**
+	 * Which orbits were requested, or null for all of them.
+	 */
+	private boolean[] requested;
+	
+	/**
+	 * Whether only the orbit totals are kept.
+	 */
+	private boolean totalsOnly;
 	
 	/**
 	 * Frequency of each orbit, summed over all nodes
 	 */
-	private FrequencyModel<Integer> orbitSums = new FrequencyModel<Integer>();
+	private long[] orbitSums;
+	
+	/**
+	 * The number of chunks per thread that the nodes are divided into for the
+	 * per-node stage.
+	 */
+	private static final int CHUNKS_PER_THREAD = 8;
+	
+	/**
+	 * The default degree from which nodes are split over several tasks.
+	 */
+	public static final int HUB_DEGREE = 1024;
+	
+	private Executor executor;
+	private int parallelism;
+	private int hubDegree;
 	
 	public Orca(UGraph<?> graph, boolean count5)
 	{
-		this.graph = graph;
+		this(OrcaGraph.fromUGraph(graph), count5);
+	}
+	
+	public Orca(OrcaGraph graph, boolean count5)
+	{
+		this(graph, count5, new Options());
+	}
+	
+	/**
+	 * @param graph
+	 * @param count5 Whether to count the orbits of graphlets with 5 nodes 
+	 * 	(73 orbits) or only those up to 4 nodes (15 orbits).
+	 * @param adjacency The structure used to check whether two nodes are 
+	 * 	connected. This should be built for the same graph.
+	 */
+	public Orca(OrcaGraph graph, boolean count5, Adjacency adjacency)
+	{
+		this(graph, count5, new Options().adjacency(adjacency));
+	}
+	
+	/**
+	 * @param graph
+	 * @param count5 Whether to count the orbits of graphlets with 5 nodes 
+	 * 	(73 orbits) or only those up to 4 nodes (15 orbits).
+	 * @param options
+	 */
+	public Orca(OrcaGraph graph, boolean count5, Options options)
+	{
 		this.count5 = count5;
+		this.hubDegree = options.hubDegree;
+		
+		switch(options.relabeling)
+		{
+			case DEGREE: newIndex = graph.degreeOrder(); break;
+			case BFS:    newIndex = graph.bfsOrder(); break;
+			default:     newIndex = null;
+		}
+		
+		if(newIndex == null)
+		{
+			this.graph = graph;
+			this.adjacency = options.adjacency;
+		} else
+		{
+			this.original = graph;
+			this.graph = graph.relabel(newIndex);
+			this.adjacency = options.adjacency != null ? 
+					relabel(options.adjacency, newIndex) : null;
+		}
+		
+		if(newIndex != null)
+			oldIndex = invert(newIndex);
+		
+		if(options.triangles != null)
+		{
+			if(! options.triangles.matches(graph))
+				throw new IllegalArgumentException("The triangle counts were not computed for this graph.");
+			
+			triangleCounts = newIndex == null ? options.triangles :
+				Triangles.restore(options.triangles, this.graph, oldIndex);
+		}
+		
+		start(options);
+	}
+	
+	/**
+	 * Counts the 15 orbits of the graphlets up to 4 nodes on a compressed 
+	 * graph. The rows are read sequentially, without decompressing them, and
+	 * no adjacency structure is built. If the graph does not store triangle 
+	 * counts, a copy with triangle counts is made first.
+	 * 
+	 * The 73 orbits of 5-node graphlets are not supported: their 
+	 * precomputed common neighbors take more memory than the graph itself.
+	 * 
+	 * @param graph
+	 * @param options The relabeling and adjacency options are ignored. To 
+	 * 	relabel a graph, compress the relabeled {@link OrcaGraph}. 
+	 */
+	public Orca(CompressedGraph graph, Options options)
+	{
+		this.count5 = false;
+		this.hubDegree = options.hubDegree;
+		this.cursorGraph = graph;
+		
+		start(options);
+	}
+	
+	/**
+	 * Counts the 15 orbits of the graphlets up to 4 nodes on a mapped 
+	 * {@link GraphFile}, in the same way as on a compressed graph: the rows 
+	 * are read from the mapping, and are not copied onto the heap. If the file 
+	 * does not include the triangle counts, they are computed first (see 
+	 * {@link MappedGraph#withTriangles()}).
+	 * 
+	 * @param graph
+	 * @param options The relabeling and adjacency options are ignored. To 
+	 * 	relabel a graph, write the relabeled {@link OrcaGraph} to a file.
+	 */
+	public Orca(MappedGraph graph, Options options)
+	{
+		this.count5 = false;
+		this.hubDegree = options.hubDegree;
+		this.cursorGraph = graph;
+		
+		start(options);
+	}
+	
+	/**
+	 * Sets up the executor, and counts the orbits.
+	 */
+	private void start(Options options)
+	{
+		this.orbitFile = options.orbitFile;
+		this.sink = options.sink;
+		this.totalsOnly = options.totalsOnly;
+		this.size = cursorGraph != null ? cursorGraph.size() : graph.size();
+		
+		if(options.orbits != null)
+		{
+			if(! count5)
+				throw new IllegalArgumentException("A subset of the orbits can only be counted with 5-node graphlets.");
+			
+			requested = new boolean[numOrbits()];
+			for(int orbit : options.orbits)
+				requested[orbit] = true;
+		}
+		
+		ForkJoinPool pool = null;
+		if(options.executor != null)
+		{
+			executor = options.executor;
+			parallelism = executor instanceof ForkJoinPool ? 
+					((ForkJoinPool) executor).getParallelism() : 
+					Runtime.getRuntime().availableProcessors();
+		} else if(options.threads > 1)
+		{
+			executor = pool = new ForkJoinPool(options.threads);
+			parallelism = options.threads;
+		} else
+		{
+			executor = Runnable::run;
+			parallelism = 1;
+		}
+		
+		try {
+			if(cursorGraph != null)
+				goCursor();
+			else
+				go();
+			
+			if(orbits != null)
+				orbits.force();
+		} finally
+		{
+			if(pool != null)
+				pool.shutdown();
+			executor = null;
+		}
+	}
+	
+	/**
+	 * The adjacency structure, which is built on first use. The 5-node 
+	 * counting only needs it for the common neighbors, so orbits 0 to 3 are 
+	 * counted without it.
+	 */
+	private Adjacency adjacency()
+	{
+		if(adjacency == null)
+			adjacency = Adjacency.forGraph(graph);
+		
+		return adjacency;
+	}
+	
+	/**
+	 * Whether an adjacency structure was built or given.
+	 */
+	boolean hasAdjacency()
+	{
+		return adjacency != null;
+	}
+	
+	/**
+	 * An adjacency structure for the relabeled graph, which translates the 
+	 * nodes back and queries the given structure for the original graph.
+	 */
+	private static Adjacency relabel(Adjacency adjacency, int[] newIndex)
+	{
+		int[] oldIndex = invert(newIndex);
 		
-		go();
+		return new Adjacency()
+		{
+			@Override
+			public boolean connected(int a, int b)
+			{
+				return adjacency.connected(oldIndex[a], oldIndex[b]);
+			}
+			
+			@Override
+			public long memory()
+			{
+				return adjacency.memory() + 4L * oldIndex.length;
+			}
+		};
+	}
+	
+	/**
+	 * The inverse of a permutation.
+	 */
+	private static int[] invert(int[] newIndex)
+	{
+		int[] oldIndex = new int[newIndex.length];
+		for(int i : series(newIndex.length))
+			oldIndex[newIndex[i]] = i;
+		
+		return oldIndex;
+	}
+	
+	/**
+	 * How the nodes are renumbered before counting, to improve the locality 
+	 * of memory accesses. The results always use the original node indices.
+	 */
+	public static enum Relabeling
+	{
+		/**
+		 * Count on the graph as given.
+		 */
+		NONE, 
+		/**
+		 * Number the nodes by descending degree (see 
+		 * {@link OrcaGraph#degreeOrder()}).
+		 */
+		DEGREE, 
+		/**
+		 * Number the nodes in reverse Cuthill-McKee order (see 
+		 * {@link OrcaGraph#bfsOrder()}).
+		 */
+		BFS
+	}
+	
+	/**
+	 * Settings for the computation of the orbits. The defaults count on the 
+	 * calling thread, with the adjacency structure chosen by 
+	 * {@link Adjacency#forGraph(OrcaGraph)}.
+	 */
+	public static class Options
+	{
+		private Adjacency adjacency = null;
+		private Executor executor = null;
+		private int threads = 1;
+		private int hubDegree = HUB_DEGREE;
+		private Relabeling relabeling = Relabeling.NONE;
+		private Triangles triangles = null;
+		private Path orbitFile = null;
+		private OrbitSink sink = null;
+		private int[] orbits = null;
+		private boolean totalsOnly = false;
+		
+		/**
+		 * The structure used to check whether two nodes are connected. This 
+		 * should be built for the same graph.
+		 */
+		public Options adjacency(Adjacency adjacency)
+		{
+			this.adjacency = adjacency;
+			return this;
+		}
+		
+		/**
+		 * Count the nodes in parallel, on a pool of the given number of 
+		 * threads that is created for the computation and shut down afterwards.
+		 */
+		public Options threads(int threads)
+		{
+			if(threads < 1)
+				throw new IllegalArgumentException("Number of threads ("+threads+") should be positive.");
+			
+			this.threads = threads;
+			return this;
+		}
+		
+		/**
+		 * Count the nodes in parallel, on the given executor. If this is a 
+		 * {@link ForkJoinPool}, its parallelism is used to divide the work, 
+		 * otherwise the number of available processors. The executor is not 
+		 * shut down. This overrides {@link #threads(int)}.
+		 */
+		public Options executor(Executor executor)
+		{
+			this.executor = executor;
+			return this;
+		}
+		
+		/**
+		 * Renumber the nodes before counting (default 
+		 * {@link Relabeling#NONE}). An adjacency structure passed to
+		 * {@link #adjacency(Adjacency)} should still be built for the graph as
+		 * given.
+		 */
+		public Options relabel(Relabeling relabeling)
+		{
+			this.relabeling = relabeling;
+			return this;
+		}
+		
+		/**
+		 * Precomputed triangle counts (for instance from a {@link GraphFile}),
+		 * so that they are not counted again. These should be computed for 
+		 * the graph as given.
+		 */
+		public Options triangles(Triangles triangles)
+		{
+			this.triangles = triangles;
+			return this;
+		}
+		
+		/**
+		 * Store the orbit counts in the given file, which is overwritten, 
+		 * instead of in memory. The file can be read afterwards with 
+		 * {@link OrbitMatrix#open(Path, boolean)}.
+		 */
+		public Options orbitFile(Path orbitFile)
+		{
+			this.orbitFile = orbitFile;
+			return this;
+		}
+		
+		/**
+		 * Pass the orbit counts of each node to the given sink, instead of 
+		 * storing them. The counts can then not be queried from the Orca 
+		 * object, but {@link Orca#count(UGraph, boolean)} still works. This
+		 * overrides {@link #orbitFile(Path)}.
+		 */
+		public Options sink(OrbitSink sink)
+		{
+			this.sink = sink;
+			return this;
+		}
+		
+		/**
+		 * Count only the given orbits. The counts of the other orbits are 0. 
+		 * 
+		 * The 5-node counting then only runs the parts of its kernels, and 
+		 * only precomputes the common neighbors and the 5-cliques, that the 
+		 * equations for these orbits depend on. Orbits 0 to 3 only need the 
+		 * degrees and the triangles. The 4-node counting always counts all 
+		 * orbits, so there this option is rejected with an 
+		 * IllegalArgumentException.
+		 */
+		public Options orbits(int... orbits)
+		{
+			for(int orbit : orbits)
+				if(orbit < 0 || orbit >= 73)
+					throw new IllegalArgumentException("Orbit "+orbit+" does not exist.");
+			
+			this.orbits = orbits.clone();
+			return this;
+		}
+		
+		/**
+		 * Keep only the totals of the orbits over all nodes, from which 
+		 * {@link Orca#graphlets()} and {@link Orca#count(UGraph, boolean)} 
+		 * are computed, and not the counts of each node. No matrix or orbit 
+		 * file is allocated. A sink still receives the counts of the nodes.
+		 */
+		public Options totalsOnly()
+		{
+			this.totalsOnly = true;
+			return this;
+		}
+		
+		/**
+		 * The degree from which a node is split over several parallel tasks, 
+		 * each of which counts the graphlets through some of its neighbors. 
+		 * This is only done for 5-node counting, and only for nodes that are 
+		 * more expensive than a regular task. The default is 
+		 * {@link Orca#HUB_DEGREE}.
+		 */
+		public Options hubDegree(int hubDegree)
+		{
+			if(hubDegree < 1)
+				throw new IllegalArgumentException("Hub degree ("+hubDegree+") should be positive.");
+			
+			this.hubDegree = hubDegree;
+			return this;
+		}
 	}
 	
 	public int numOrbits()
@@ -93,51 +523,130 @@ public class Orca
 	 * How often does the given subgraph occur?
 	 * 
 	 * @param graph
-	 * @param canonical Is the given graph in canonical ordering? If not it is 
-	 * 	transform first.
-	 * @return
+	 * @param canonical Whether the given graph is in canonical ordering. This
+	 * 	is no longer needed: the graph is looked up in any ordering.
+	 * @return The same total as {@link #graphlets()} for this graph.
 	 */
-	public int count(UGraph<?> graph, boolean canonical)
+	public long count(UGraph<?> graph, boolean canonical)
 	{
-		if(graph.size() > 6)
+		if(graph.size() > 5)
 			throw new IllegalArgumentException("Input is too big. We can only count graphs of size 5 or less.");
 		
 		if(graph.size() == 5 && ! count5)
 			throw new IllegalArgumentException("Input is too big. Size 5 graphs were not counted.");
 
-		UGraph<String> copy = copy(graph);
-		if(! canonical)
-			copy = Graphs.reorder(copy, Nauty.order(copy, N));
-				
-		int graphIndex = Orca.graph2Index.get(copy);
-	//	System.out.println("graph index: " + graphIndex);
-	//	System.out.println("     orbits: " + graph2Orbits.get(graphIndex));
-
+		int graphIndex = graphletIndex(graph);
 		
-		int sum = 0;
-		for(int orbit : graph2Orbits.get(graphIndex))
-		{
-			//System.out.print((int)orbitSums.frequency(orbit) + " ");
-			sum += orbitSums.frequency(orbit);
-		}
-		//System.out.println();
+		if(requested != null)
+			for(int orbit : GRAPH_ORBITS[graphIndex])
+				if(! requested[orbit])
+					throw new IllegalStateException("Orbit "+orbit+" of this graph was not counted.");
+		
+		long sum = 0;
+		for(int orbit : GRAPH_ORBITS[graphIndex])
+			sum += orbitSums[orbit];
 		
 		return sum / graph.size();
 	}
 	
-	private UGraph<String> copy(UGraph<?> graph)
+	/**
+	 * How often each graphlet occurs in the graph. 
+	 * 
+	 * Every occurrence of a graphlet with k nodes puts k nodes in its 
+	 * orbits, so its total is the sum of the totals of its orbits, divided by 
+	 * k. This needs no counts per node (see {@link Options#totalsOnly()}).
+	 * 
+	 * @return The totals of the 9 graphlets up to 4 nodes, or the 30 up to 5 
+	 * 	nodes, in the order of {@link #graphlet(int)}.
+	 */
+	public long[] graphlets()
 	{
-		MapUTGraph<String, String> copy = new MapUTGraph<String, String>();
+		if(requested != null)
+			for(boolean counted : requested)
+				if(! counted)
+					throw new IllegalStateException("Not all orbits were counted.");
+		
+		long[] totals = new long[count5 ? 30 : 9];
+		for(int orbit = 0; orbit < numOrbits(); orbit++)
+			totals[ORBIT_GRAPH[orbit]] += orbitSums[orbit];
 		
-		for(UNode<?> node : graph.nodes())
-			copy.add("");
+		for(int g = 0; g < totals.length; g++)
+			totals[g] /= graphletSize(g);
 		
+		return totals;
+	}
+	
+	/**
+	 * The graphlet with the given index: 0 is the single link, 1 and 2 the 
+	 * graphlets with 3 nodes, 3 to 8 those with 4 nodes, and 9 to 29 those 
+	 * with 5 nodes.
+	 */
+	public static UGraph<String> graphlet(int index)
+	{
+		return fromBits(parse(GRAPHLETS[index]), "");
+	}
+	
+	/**
+	 * The index of the graphlet that the given graph is isomorphic to, in 
+	 * any ordering of its nodes. This is a lookup of its adjacency matrix.
+	 * 
+	 * @throws IllegalArgumentException If the graph has fewer than 2 or more 
+	 * 	than 5 nodes, or is not connected.
+	 */
+	public static int graphletIndex(UGraph<?> graph)
+	{
+		int n = graph.size();
+		if(n < 2 || n > 5)
+			throw new IllegalArgumentException("A graphlet has 2 to 5 nodes (graph has "+n+").");
+		
+		// * the bit of link i-j, with i < j, is j(j-1)/2 + i, as in fromBits
+		int mask = 0;
 		for(ULink<?> link : graph.links())
-			copy.get(link.first().index()).connect(copy.get(link.second().index()));
+		{
+			int i = link.first().index(), j = link.second().index();
+			if(i == j)
+				continue;
+			
+			mask |= 1 << (max(i, j) * (max(i, j) - 1) / 2 + min(i, j));
+		}
+		
+		int index = Character.digit(LOOKUP[n].charAt(mask), 32);
+		if(index < 0)
+			throw new IllegalArgumentException("The graph is not connected.");
 		
-		return copy;
+		return index;
 	}
-
+	
+	/**
+	 * The number of nodes of the graphlet with the given index.
+	 */
+	private static int graphletSize(int index)
+	{
+		return index < 1 ? 2 : index < 3 ? 3 : index < 9 ? 4 : 5;
+	}
+	
+	/**
+	 * The number of triangles on each link, and the local clustering 
+	 * coefficients, which are computed as part of the orbit counting.
+	 * 
+	 * If the graph was relabeled, the counts are mapped back to the original
+	 * node indices on the first call. This is synchronized, so concurrent 
+	 * callers all get the same, restored counts.
+	 * 
+	 * @return The triangles, or null if the orbits were counted on a 
+	 * 	{@link CompressedGraph}.
+	 */
+	public synchronized Triangles triangles()
+	{
+		if(newIndex != null && original != null)
+		{
+			triangleCounts = Triangles.restore(triangleCounts, original, newIndex);
+			original = null;
+		}
+		
+		return triangleCounts;
+	}
+	
 	/**
 	 * How often the given node participates in the given orbit
 	 * 
@@ -147,56 +656,62 @@ public class Orca
 	 */
 	public long orbit(int node, int orbit)
 	{
-		return this.orbit[node][orbit];
+		if(orbits == null)
+			throw new IllegalStateException("The orbit counts of the nodes were not stored.");
+		
+		return orbits.get(node, orbit);
+	}
+	
+	/**
+	 * The orbit counts of all nodes. These are stored off-heap, or in the 
+	 * file given by {@link Options#orbitFile(Path)}.
+	 * 
+	 * @return The counts, or null if they were passed to a sink, or only 
+	 * 	their totals were kept.
+	 */
+	public OrbitMatrix orbits()
+	{
+		return orbits;
 	}
 	
 	private void go()
 	{
-		if(graph.numLinks() > Integer.MAX_VALUE)
-			throw new IllegalArgumentException("Graphs with more than Integer.MAX_VALUE links are not supported.");
+		offsets = graph.offsets();
+		targets = graph.targets();
 		
-		// * init neighbor list, triangle count
-		neighbors = new int[graph.size()][];
-		triangles = new int[graph.size()][];
-
+		// * init degrees, triangle count
 		degree = new int[graph.size()];
-		
 		for(int i : series(graph.size()))
+			degree[i] = graph.degree(i);
+		
+		if(triangleCounts == null)
 		{
-			degree[i] = graph.get(i).degree();
-
-			neighbors[i] = new int[degree[i]];
-			triangles[i] = new int[degree[i]];
-
+			Triangles counts = new Triangles(graph);
+			
+			long[] cost = new long[graph.size()];
+			for(int i : series(graph.size()))
+				cost[i] = counts.cost(i);
 			
-			int j = 0;
-			boolean sorted = true;
+			int[] ranges = ranges(cost);
 			
-			for(Node<?> neighbor : graph.get(i).neighbors())
+			List<Runnable> tasks = new ArrayList<Runnable>();
+			List<Long> taskCosts = new ArrayList<Long>();
+			for(int r : series(ranges.length - 1))
 			{
-				neighbors[i][j] = neighbor.index();
-				
-				if(j > 0 && neighbors[i][j] < neighbors[i][j - 1])
-					sorted = false;
+				int from = ranges[r], to = ranges[r + 1];
 				
-				j++;
+				tasks.add(() -> {
+					for(int i = from; i < to; i++)
+						counts.compute(i);
+				});
+				taskCosts.add(sum(cost, from, to));
 			}
 			
-			if(! sorted)
-				Arrays.sort(neighbors[i]);
-			
+			run(tasks, taskCosts);
+			triangleCounts = counts;
 		}
 		
-		for(int i : series(graph.size()))
-			for(int jIndex : series(neighbors[i].length))
-			{
-				int j = neighbors[i][jIndex];
-				
-				triangles[i][jIndex] += overlap(neighbors[i], neighbors[j]);
-			}
-		
-		for(ULink<?> link : graph.links())
-			connected.add(new Pair(link.first().index(), link.second().index()));
+		triangles = triangleCounts.counts();
 		
 		if(count5)
 			count5();
@@ -204,465 +719,100 @@ public class Orca
 			count4();
 	}
 	
-	private void count5()
+	private void goCursor()
 	{
-		orbit = new long[graph.size()][73];
-
-		// precompute common nodes
-		// Global.log().info("stage 1 - precomputing common nodes\n");
+		if(! cursorGraph.hasTriangles())
+			cursorGraph = cursorGraph.withTriangles();
 		
-		FrequencyModel<Pair> common2 = new FrequencyModel<Pair>();
-		FrequencyModel<Triple> common3 = new FrequencyModel<Triple>();
-
-		for (int x = 0; x < graph.size(); x++) 
-		{
-			for (int aIndex = 0; aIndex < degree[x]; aIndex++) 
-			{
-				int a = neighbors[x][aIndex];
-				
-				for (int bIndex = aIndex + 1; bIndex < degree[x]; bIndex++) 
-				{
-					int b = neighbors[x][bIndex];
-					
-					common2.add(new Pair(a, b));
-					
-					for (int cIndex = bIndex + 1; cIndex < degree[x]; cIndex ++) 
-					{
-						int c = neighbors[x][cIndex];
-						
-						int con = 0; 
-						if(connected(a,b)) con++;
-						if(connected(a,c)) con++;
-						if(connected(b,c)) con++;
-						
-						if (con < 2) 
-							continue;
-						
-						common3.add(new Triple(a, b, c));
-					}
-				}
-			}
-		}
-
-		// Global.log().info("stage 2 - counting full graphlets\n");
-	
-		// * Stores how often the node at a given index is involved in a 
-		//   complete graphlet of 5 nodes
-		int[] c5 = new int[graph.size()];
-		for (int i : series(graph.size())) 
-			c5[i] = complete(i, 5, graph);
-
-		// set up a system of equations relating orbit counts
-		// Global.log().info("stage 3 - building systems of equations\n");
+		orbits = allocate(15);
 		
-		for (int x = 0; x < graph.size(); x++) 
-		{
-			// Functions.dot(x, graph.size());
-			
-			int[] xCommon = new int[graph.size()];
-			
-			// smaller graphlets
-			orbit[x][0] = degree[x];
-			
-			for (int aIndex = 0; aIndex < degree[x]; aIndex ++) 
-			{
-				int a = neighbors[x][aIndex];
-				
-				for (int bIndex = aIndex + 1; bIndex < degree[x]; bIndex++) 
-				{
-					int b = neighbors[x][bIndex];
-					
-					if (connected(a,b)) 
-						orbit[x][3]++;
-					
-					else orbit[x][2]++;
-				}
-				
-				for (int bIndex = 0; bIndex < degree[a]; bIndex++) 
-				{
-					int b = neighbors[a][bIndex];
-					
-					if (b != x && !connected(x, b)) 
-					{
-						orbit[x][1]++;
-						
-						xCommon[b]++;
-					}
-				}
-			}
-
-			long f_71=0, f_70=0, f_67=0, f_66=0, f_58=0, f_57=0; 							// 14
-			long f_69=0, f_68=0, f_64=0, f_61=0, f_60=0, f_55=0, f_48=0, f_42=0, f_41=0;	// 13
-			long f_65=0, f_63=0, f_59=0, f_54=0, f_47=0, f_46=0, f_40=0; 					// 12
-			long f_62=0, f_53=0, f_51=0, f_50=0, f_49=0, f_38=0, f_37=0, f_36=0; 			// 8
-			long f_44=0, f_33=0, f_30=0, f_26=0; 											// 11
-			long f_52=0, f_43=0, f_32=0, f_29=0, f_25=0; 									// 10
-			long f_56=0, f_45=0, f_39=0, f_31=0, f_28=0, f_24=0; 							// 9
-			long f_35=0, f_34=0, f_27=0, f_18=0, f_16=0, f_15=0; 							// 4
-			long f_17=0; 																	// 5
-			long f_22=0, f_20=0, f_19=0; 													// 6
-			long f_23=0, f_21=0; 															// 7
-
-			for (int aIndex = 0; aIndex < degree[x]; aIndex ++) 
-			{
-				int a = neighbors[x][aIndex];
-				
-				int[] aCommon = new int[graph.size()];
-
-				for (int bIndex = 0; bIndex< degree[a]; bIndex++) 
-				{
-					int b = neighbors[a][bIndex];
-					
-					for (int cIndex = 0; cIndex < degree[b]; cIndex++) 
-					{ 
-						int c = neighbors[b][cIndex];
-						
-						if (c==a || connected(a,c)) 
-							continue;
-						
-						aCommon[c]++;
-					}
-				}
-
-				// x = orbit-14 (tetrahedron)
-				for (int bIndex = aIndex + 1; bIndex < degree[x]; bIndex ++) 
-				{
-					int b = neighbors[x][bIndex];
-					
-					if (! connected(a,b)) 
-						continue;
-					
-					for (int cIndex = bIndex + 1; cIndex < degree[x]; cIndex ++) 
-					{
-						int c = neighbors[x][cIndex];
-						
-						if (! connected(a,c) || !connected(b,c)) 
-							continue;
-						
-						orbit[x][14]++;
-						f_70 += common3.frequency(new Triple(a,b,c)) - 1;
-						f_71 += (triangles[x][aIndex] > 2 && triangles[x][bIndex] > 2) ? (common3.frequency(new Triple(x,a,b)) - 1) : 0;
-						f_71 += (triangles[x][aIndex] > 2 && triangles[x][cIndex] > 2) ? (common3.frequency(new Triple(x,a,c)) - 1) : 0;
-						f_71 += (triangles[x][bIndex] > 2 && triangles[x][cIndex] > 2) ? (common3.frequency(new Triple(x,b,c)) - 1) : 0;
-						f_67 += triangles[x][aIndex] - 2 + triangles[x][bIndex] - 2 + triangles[x][cIndex] - 2;
-						f_66 += common2.frequency(new Pair(a,b)) - 2;
-						f_66 += common2.frequency(new Pair(a,c)) - 2;
-						f_66 += common2.frequency(new Pair(b,c)) - 2;
-						f_58 += degree[x] - 3;
-						f_57 += degree[a] - 3 + degree[b] - 3 + degree[c] - 3;
-					}
-				}
-
-				// x = orbit-13 (diamond)
-				
-				for (int bIndex = 0; bIndex < degree[x]; bIndex++) 
-				{
-					int b = neighbors[x][bIndex];
-							
-					if (! connected(a,b)) 
-						continue;
-					
-					for (int cIndex = bIndex + 1; cIndex < degree[x]; cIndex ++) 
-					{
-						int c = neighbors[x][cIndex];
-								
-						if (!connected(a,c) || connected(b,c)) 
-							continue;
-						
-						orbit[x][13]++;
-						f_69 += (triangles[x][bIndex] > 1 && triangles[x][cIndex] > 1) ? 
-									(common3.frequency(new Triple(x, b, c)) - 1) : 0;
-						f_68 += common3.frequency(new Triple(a, b, c)) - 1;
-						f_64 += common2.frequency(new Pair(b, c)) - 2;
-						f_61 += triangles[x][bIndex] - 1 + triangles[x][cIndex] - 1;
-						f_60 += common2.frequency(new Pair(a,b)) - 1;
-						f_60 += common2.frequency(new Pair(a,c)) - 1;
-						f_55 += triangles[x][aIndex] - 2;
-						f_48 += degree[b] - 2 + degree[c] - 2;
-						f_42 += degree[x] - 3;
-						f_41 += degree[a] - 3;
-					}
-				}
-
-				// x = orbit-12 (diamond)
-				for (int bIndex = aIndex + 1; bIndex < degree[x]; bIndex++) 
-				{
-					int b = neighbors[x][bIndex];
-					
-					if (!connected(a,b)) 
-						continue;
-					
-					for (int cIndex = 0; cIndex < degree[a]; cIndex++) 
-					{
-						int c = neighbors[a][cIndex];
-						
-						if (c==x || connected(x,c) || !connected(b,c)) 
-							continue;
-						
-						orbit[x][12]++;
-						f_65 += (triangles[a][cIndex] > 1) ? common3.frequency(new Triple(a, b, c)) : 0;
-						f_63 += xCommon[c] - 2; 
-						f_59 += triangles[a][cIndex] - 1 + common2.frequency(new Pair(b, c)) - 1;
-						f_54 += common2.frequency(new Pair(a, b))-2;
-						f_47 += degree[x] - 2;
-						f_46 += degree[c] - 2;
-						f_40 += degree[a] - 3 + degree[b] - 3;
-					}
-				}
-
-				// x = orbit-8 (cycle)
-				for (int bIndex = aIndex + 1; bIndex < degree[x]; bIndex++) 
-				{
-					int b = neighbors[x][bIndex];
-					
-					if (connected(a,b)) 
-						continue;
-					
-					for (int cIndex = 0; cIndex < degree[a]; cIndex++) 
-					{
-						int c = neighbors[a][cIndex];
-						
-						if (c==x || connected(x,c) || !connected(b,c)) 
-							continue;
-						
-						orbit[x][8]++;
-						f_62 += (triangles[a][cIndex] > 0) ? common3.frequency(new Triple(a, b, c)) : 0;
-						f_53 += triangles[x][aIndex] + triangles[x][bIndex];
-						f_51 += triangles[a][cIndex] + common2.frequency(new Pair(c, b));
-						f_50 += xCommon[c] - 2;
-						f_49 += aCommon[b] - 2;
-						f_38 += degree[x] - 2;
-						f_37 += degree[a] - 2 + degree[b] - 2;
-						f_36 += degree[c] - 2;
-					}
-				}
-
-				// x = orbit-11 (paw)
-				for (int bIndex = aIndex + 1; bIndex < degree[x]; bIndex++) 
-				{
-					int b = neighbors[x][bIndex];
-					
-					if (!connected(a,b)) 
-						continue;
-					
-					for (int cIndex = 0; cIndex < degree[x]; cIndex++) 
-					{
-						int c = neighbors[x][cIndex];
-						
-						if (c==a || c==b || connected(a,c) || connected(b,c)) 
-							continue;
-						
-						orbit[x][11]++;
-						f_44 += triangles[x][cIndex];
-						f_33 += degree[x] - 3;
-						f_30 += degree[c] - 1;
-						f_26 += degree[a] - 2 + degree[b] - 2;
-					}
-				}
+		long[] c4 = cliques(new Cliques(cursorGraph, 4));
+		
+		perNode(() -> new CursorCount4(cursorGraph, c4));
+	}
+	
+	private void count5()
+	{
+		orbits = allocate(73);
+		
+		// * the orbits that the requested ones depend on
+		boolean[] needed = requested == null ? null : Count5.closure(requested);
 
-				// x = orbit-10 (paw)
-				for (int bIndex = 0; bIndex < degree[x]; bIndex++) 
+		// precompute common nodes
+		// Global.log().info("stage 1 - precomputing common nodes\n");
+		
+		// * The pairs and triples are counted from their smallest node. The 
+		//   cost of a node a is estimated from the number of pairs in the rows
+		//   of its neighbors x, after a, and the triangles on the links a-x.
+		final PairCounter common2;
+		final TripleCounter common3;
+		
+		if(Count5.pairs(needed) || Count5.triples(needed))
+		{
+			long[] cost = new long[graph.size()];
+			for (int x : series(graph.size()))
+				for (int aIndex = 0; aIndex < degree[x]; aIndex++)
 				{
-					int b= neighbors[x][bIndex];
-					
-					if (!connected(a,b)) 
-						continue;
-					
-					for (int cIndex = 0; cIndex < degree[b]; cIndex++)
-					{
-						int c = neighbors[b][cIndex];
-						
-						if (c==x || c==a || connected(a,c) || connected(x,c)) 
-							continue;
-						
-						orbit[x][10]++;
-						f_52 += aCommon[c] - 1;
-						f_43 += triangles[b][cIndex];
-						f_32 += degree[b] - 3;
-						f_29 += degree[c] - 1;
-						f_25 += degree[a] - 2;
-					}
+					long after = degree[x] - 1 - aIndex, shared = triangles[offsets[x] + aIndex];
+					cost[targets[offsets[x] + aIndex]] += 1 + after + shared * shared;
 				}
-
-				// x = orbit-9 (paw)
-				for (int bIndex = 0; bIndex < degree[a]; bIndex++) 
-				{
-					int b = neighbors[a][bIndex];
-					
-					if (b == x || connected(x,b)) continue;
+			
+			int[] ranges = ranges(cost);
+			
+			int[] shardOf = new int[graph.size()];
+			for (int r : series(ranges.length - 1))
+				Arrays.fill(shardOf, ranges[r], ranges[r + 1], r);
+			
+			common2 = Count5.pairs(needed) ? 
+					new PairCounter(shardOf, ranges.length - 1) : null;
+			common3 = Count5.triples(needed) ? 
+					new TripleCounter(graph.size(), shardOf, ranges.length - 1) : null;
+			
+			Adjacency adjacency = adjacency();
+			Queue<Common> idle = new ConcurrentLinkedQueue<Common>();
+			
+			List<Runnable> tasks = new ArrayList<Runnable>();
+			List<Long> taskCosts = new ArrayList<Long>();
+			for (int r : series(ranges.length - 1))
+			{
+				int from = ranges[r], to = ranges[r + 1];
 				
-					for (int cIndex = bIndex + 1; cIndex < degree[a]; cIndex ++)
-					{
-						int c = neighbors[a][cIndex];
-						
-						if (c==x || ! connected(b,c) || connected(x,c)) 
-							continue;
-						
-						orbit[x][9]++;
-						f_56 += (triangles[a][bIndex] > 1 && triangles[a][cIndex] > 1) ? 
-								common3.frequency(new Triple(a,b,c)) : 0;
-						f_45 += common2.frequency(new Pair(b, c)) - 1;
-						f_39 += triangles[a][bIndex] - 1 + triangles[a][cIndex] - 1;
-						f_31 += degree[a] - 3;
-						f_28 += degree[x] - 1;
-						f_24 += degree[b] - 2 + degree[c] - 2;
-					}
-				}
-
-				// x = orbit-4 (path)
-				for (int bIndex = 0; bIndex < degree[a]; bIndex++) 
-				{
-					int b = neighbors[a][bIndex];
-					
-					if (b==x || connected(x,b)) 
-						continue;
-					
-					for (int cIndex = 0; cIndex < degree[b]; cIndex++) 
-					{
-						int c = neighbors[b][cIndex];
-						
-						if (c==a || connected(a,c) || connected(x,c)) 
-							continue;
-						
-						orbit[x][4]++;
-						f_35 += aCommon[c] - 1;
-						f_34 += xCommon[c];
-						f_27 += triangles[b][cIndex];
-						f_18 += degree[b] - 2;
-						f_16 += degree[x] - 1;
-						f_15 += degree[c] - 1;
-					}
-				}
-
-				// x = orbit-5 (path)
-				for (int bIndex = 0; bIndex < degree[x]; bIndex ++)
-				{
-					int b = neighbors[x][bIndex];
-							
-					if (b == a || connected(a,b)) 
-						continue;
-					
-					for (int cIndex = 0; cIndex < degree[b]; cIndex++) {
-						int c = neighbors[b][cIndex];
-						
-						if (c==x || connected(a,c) || connected(x,c)) 
-							continue;
-						
-						orbit[x][5]++;
-						f_17 += degree[a] - 1;
-					}
-				}
-
-				// x = orbit-6 (claw)
-				for (int bIndex = 0; bIndex < degree[a]; bIndex++) 
-				{
-					int b = neighbors[a][bIndex];
+				tasks.add(() -> {
+					Common counter = idle.poll();
+					if(counter == null)
+						counter = new Common(graph, triangles, adjacency, common2, common3);
 					
-					if (b==x || connected(x,b)) continue;
-					for (int cIndex = bIndex + 1; cIndex < degree[a]; cIndex ++) 
-					{
-						int c = neighbors[a][cIndex];
-						
-						if (c==x || connected(x,c) || connected(b,c)) continue;
-						
-						orbit[x][6]++;
-						f_22 += degree[a] - 3;
-						f_20 += degree[x] - 1;
-						f_19 += degree[b] - 1 + degree[c] - 1;
-					}
-				}
-
-				// x = orbit-7 (claw)
-				for (int bIndex = aIndex + 1; bIndex < degree[x]; bIndex++) 
-				{
-					int b = neighbors[x][bIndex];
-							
-					if (connected(a,b)) 
-						continue;
+					for (int a = from; a < to; a++)
+						counter.count(a);
 					
-					for (int cIndex = bIndex + 1; cIndex < degree[x]; cIndex++) 
-					{
-						int c = neighbors[x][cIndex];
-								
-						if (connected(a,c) || connected(b,c)) 
-							continue;
-						
-						orbit[x][7]++;
-						f_23 += degree[x] - 3;
-						f_21 += degree[a] - 1 + degree[b] - 1 + degree[c] - 1;
-					}
-				}
+					idle.add(counter);
+				});
+				taskCosts.add(sum(cost, from, to));
 			}
-
-			// solve equations
-			orbit[x][72] = c5[x];
-			orbit[x][71] = (f_71-12*orbit[x][72])/2;
-			orbit[x][70] = (f_70-4*orbit[x][72]);
-			orbit[x][69] = (f_69-2*orbit[x][71])/4;
-			orbit[x][68] = (f_68-2*orbit[x][71]);
-			orbit[x][67] = (f_67-12*orbit[x][72]-4*orbit[x][71]);
-			orbit[x][66] = (f_66-12*orbit[x][72]-2*orbit[x][71]-3*orbit[x][70]);
-			orbit[x][65] = (f_65-3*orbit[x][70])/2;
-			orbit[x][64] = (f_64-2*orbit[x][71]-4*orbit[x][69]-1*orbit[x][68]);
-			orbit[x][63] = (f_63-3*orbit[x][70]-2*orbit[x][68]);
-			orbit[x][62] = (f_62-1*orbit[x][68])/2;
-			orbit[x][61] = (f_61-4*orbit[x][71]-8*orbit[x][69]-2*orbit[x][67])/2;
-			orbit[x][60] = (f_60-4*orbit[x][71]-2*orbit[x][68]-2*orbit[x][67]);
-			orbit[x][59] = (f_59-6*orbit[x][70]-2*orbit[x][68]-4*orbit[x][65]);
-			orbit[x][58] = (f_58-4*orbit[x][72]-2*orbit[x][71]-1*orbit[x][67]);
-			orbit[x][57] = (f_57-12*orbit[x][72]-4*orbit[x][71]-3*orbit[x][70]-1*orbit[x][67]-2*orbit[x][66]);
-			orbit[x][56] = (f_56-2*orbit[x][65])/3;
-			orbit[x][55] = (f_55-2*orbit[x][71]-2*orbit[x][67])/3;
-			orbit[x][54] = (f_54-3*orbit[x][70]-1*orbit[x][66]-2*orbit[x][65])/2;
-			orbit[x][53] = (f_53-2*orbit[x][68]-2*orbit[x][64]-2*orbit[x][63]);
-			orbit[x][52] = (f_52-2*orbit[x][66]-2*orbit[x][64]-1*orbit[x][59])/2;
-			orbit[x][51] = (f_51-2*orbit[x][68]-2*orbit[x][63]-4*orbit[x][62]);
-			orbit[x][50] = (f_50-1*orbit[x][68]-2*orbit[x][63])/3;
-			orbit[x][49] = (f_49-1*orbit[x][68]-1*orbit[x][64]-2*orbit[x][62])/2;
-			orbit[x][48] = (f_48-4*orbit[x][71]-8*orbit[x][69]-2*orbit[x][68]-2*orbit[x][67]-2*orbit[x][64]-2*orbit[x][61]-1*orbit[x][60]);
-			orbit[x][47] = (f_47-3*orbit[x][70]-2*orbit[x][68]-1*orbit[x][66]-1*orbit[x][63]-1*orbit[x][60]);
-			orbit[x][46] = (f_46-3*orbit[x][70]-2*orbit[x][68]-2*orbit[x][65]-1*orbit[x][63]-1*orbit[x][59]);
-			orbit[x][45] = (f_45-2*orbit[x][65]-2*orbit[x][62]-3*orbit[x][56]);
-			orbit[x][44] = (f_44-1*orbit[x][67]-2*orbit[x][61])/4;
-			orbit[x][43] = (f_43-2*orbit[x][66]-1*orbit[x][60]-1*orbit[x][59])/2;
-			orbit[x][42] = (f_42-2*orbit[x][71]-4*orbit[x][69]-2*orbit[x][67]-2*orbit[x][61]-3*orbit[x][55]);
-			orbit[x][41] = (f_41-2*orbit[x][71]-1*orbit[x][68]-2*orbit[x][67]-1*orbit[x][60]-3*orbit[x][55]);
-			orbit[x][40] = (f_40-6*orbit[x][70]-2*orbit[x][68]-2*orbit[x][66]-4*orbit[x][65]-1*orbit[x][60]-1*orbit[x][59]-4*orbit[x][54]);
-			orbit[x][39] = (f_39-4*orbit[x][65]-1*orbit[x][59]-6*orbit[x][56])/2;
-			orbit[x][38] = (f_38-1*orbit[x][68]-1*orbit[x][64]-2*orbit[x][63]-1*orbit[x][53]-3*orbit[x][50]);
-			orbit[x][37] = (f_37-2*orbit[x][68]-2*orbit[x][64]-2*orbit[x][63]-4*orbit[x][62]-1*orbit[x][53]-1*orbit[x][51]-4*orbit[x][49]);
-			orbit[x][36] = (f_36-1*orbit[x][68]-2*orbit[x][63]-2*orbit[x][62]-1*orbit[x][51]-3*orbit[x][50]);
-			orbit[x][35] = (f_35-1*orbit[x][59]-2*orbit[x][52]-2*orbit[x][45])/2;
-			orbit[x][34] = (f_34-1*orbit[x][59]-2*orbit[x][52]-1*orbit[x][51])/2;
-			orbit[x][33] = (f_33-1*orbit[x][67]-2*orbit[x][61]-3*orbit[x][58]-4*orbit[x][44]-2*orbit[x][42])/2;
-			orbit[x][32] = (f_32-2*orbit[x][66]-1*orbit[x][60]-1*orbit[x][59]-2*orbit[x][57]-2*orbit[x][43]-2*orbit[x][41]-1*orbit[x][40])/2;
-			orbit[x][31] = (f_31-2*orbit[x][65]-1*orbit[x][59]-3*orbit[x][56]-1*orbit[x][43]-2*orbit[x][39]);
-			orbit[x][30] = (f_30-1*orbit[x][67]-1*orbit[x][63]-2*orbit[x][61]-1*orbit[x][53]-4*orbit[x][44]);
-			orbit[x][29] = (f_29-2*orbit[x][66]-2*orbit[x][64]-1*orbit[x][60]-1*orbit[x][59]-1*orbit[x][53]-2*orbit[x][52]-2*orbit[x][43]);
-			orbit[x][28] = (f_28-2*orbit[x][65]-2*orbit[x][62]-1*orbit[x][59]-1*orbit[x][51]-1*orbit[x][43]);
-			orbit[x][27] = (f_27-1*orbit[x][59]-1*orbit[x][51]-2*orbit[x][45])/2;
-			orbit[x][26] = (f_26-2*orbit[x][67]-2*orbit[x][63]-2*orbit[x][61]-6*orbit[x][58]-1*orbit[x][53]-2*orbit[x][47]-2*orbit[x][42]);
-			orbit[x][25] = (f_25-2*orbit[x][66]-2*orbit[x][64]-1*orbit[x][59]-2*orbit[x][57]-2*orbit[x][52]-1*orbit[x][48]-1*orbit[x][40])/2;
-			orbit[x][24] = (f_24-4*orbit[x][65]-4*orbit[x][62]-1*orbit[x][59]-6*orbit[x][56]-1*orbit[x][51]-2*orbit[x][45]-2*orbit[x][39]);
-			orbit[x][23] = (f_23-1*orbit[x][55]-1*orbit[x][42]-2*orbit[x][33])/4;
-			orbit[x][22] = (f_22-2*orbit[x][54]-1*orbit[x][40]-1*orbit[x][39]-1*orbit[x][32]-2*orbit[x][31])/3;
-			orbit[x][21] = (f_21-3*orbit[x][55]-3*orbit[x][50]-2*orbit[x][42]-2*orbit[x][38]-2*orbit[x][33]);
-			orbit[x][20] = (f_20-2*orbit[x][54]-2*orbit[x][49]-1*orbit[x][40]-1*orbit[x][37]-1*orbit[x][32]);
-			orbit[x][19] = (f_19-4*orbit[x][54]-4*orbit[x][49]-1*orbit[x][40]-2*orbit[x][39]-1*orbit[x][37]-2*orbit[x][35]-2*orbit[x][31]);
-			orbit[x][18] = (f_18-1*orbit[x][59]-1*orbit[x][51]-2*orbit[x][46]-2*orbit[x][45]-2*orbit[x][36]-2*orbit[x][27]-1*orbit[x][24])/2;
-			orbit[x][17] = (f_17-1*orbit[x][60]-1*orbit[x][53]-1*orbit[x][51]-1*orbit[x][48]-1*orbit[x][37]-2*orbit[x][34]-2*orbit[x][30])/2;
-			orbit[x][16] = (f_16-1*orbit[x][59]-2*orbit[x][52]-1*orbit[x][51]-2*orbit[x][46]-2*orbit[x][36]-2*orbit[x][34]-1*orbit[x][29]);
-			orbit[x][15] = (f_15-1*orbit[x][59]-2*orbit[x][52]-1*orbit[x][51]-2*orbit[x][45]-2*orbit[x][35]-2*orbit[x][34]-2*orbit[x][27]);
 			
-	  		for(int orb : series(orbit[x].length))
-    			orbitSums.add(orb, orbit[x][orb]);			
+			run(tasks, taskCosts);
+			idle.clear();
+		} else
+		{
+			common2 = null;
+			common3 = null;
 		}
+
+		// Global.log().info("stage 2 - counting full graphlets\n");
+	
+		// * Stores how often the node at a given index is involved in a 
+		//   complete graphlet of 5 nodes
+		long[] c5 = needed == null || needed[72] ? cliques(new Cliques(graph, 5)) : null;
+
+		// set up a system of equations relating orbit counts
+		// Global.log().info("stage 3 - building systems of equations\n");
 		
+		perNode(() -> new Count5(graph, triangles, degree, common2, common3, c5, needed));
 	}
 
 	private void count4() 
 	{		
-		orbit = new long[graph.size()][15];
+		orbits = allocate(15);
 		
 		// Global.log().info("stage 1 - precomputing common nodes");
 		
@@ -670,124 +820,301 @@ public class Orca
 		
 		// * Stores how often the node at a given index is involved in a 
 		//   complete graphlet of 4 nodes
-		int[] c4 = new int[graph.size()];
-		for (int i : series(graph.size())) 
-			c4[i] = complete(i, 4, graph);
+		long[] c4 = cliques(new Cliques(graph, 4));
 			
 		// Global.log().info("stage 3 - building systems of equations\n");	
 		
-		for(int x = 0; x < graph.size(); x++)
-		{			
-    		long f_12_14 = 0, 	
-    		     f_10_13 = 0,
-    		     f_13_14 = 0, 	
-    		     f_11_13 = 0,
-    		     f_7_11 = 0, 	
-    		     f_5_8 = 0,
-    		     f_6_9 = 0, 	
-    		     f_9_12 = 0, 	
-    		     f_4_8 = 0, 	
-    		     f_8_12 = 0,
-    		     f_14 = c4[x];
-    		
-    		int[] common = new int[graph.size()];
-    		    		
-    		// * Size 2 graphlets
-    		orbit[x][0] = degree[x];
-    		
-    		// * Size 4 graphlets
-    		// * Loop over all connected triples where x is the middle node
-    		for (int yIndex = 0; yIndex < degree[x]; yIndex++) // loop over neighbors of x
-    		{
-    			int y = neighbors[x][yIndex];
-    			    
-    			for (int zIndex = 0; zIndex < degree[y]; zIndex++)
-    			{
-    				int z = neighbors[y][zIndex];
-    				    
-    				if (connected(x, z)) // triangle
-    				{ 
-    					if (z < y) 
-    					{
-    						f_12_14 += triangles[y][zIndex] - 1;
-    						f_10_13 += (degree[y] - 1 - triangles[y][zIndex]) 
-    							     + (degree[z] - 1 - triangles[y][zIndex]);
-    					}
-    				} else {
-    					common[z] ++;
-    				}
-    			}
-    			
-    			for (int zIndex = yIndex + 1; zIndex < degree[x]; zIndex ++) 
-    			{
-    				int z = neighbors[x][zIndex];
-    			
-    				if (connected(y, z)) // triangle
-    				{ 
-    					orbit[x][3]++;
-    					
-    					f_13_14 += (triangles[x][yIndex] - 1) + (triangles[x][zIndex] - 1);
-    					f_11_13 += (degree[x] - 1 - triangles[x][yIndex]) + 
-    							   (degree[x] - 1 - triangles[x][zIndex]);
-    				} else { // path
-    					orbit[x][2]++;
-    					
-    					f_7_11 += (degree[x] - 1 - triangles[x][yIndex] - 1) + (degree[x] - 1 - triangles[x][zIndex] - 1);
-    					f_5_8 += (degree[y] - 1 - triangles[x][yIndex]) + (degree[z] - 1 - triangles[x][zIndex]);
-    				}
-    			}
-    		}
-    		
-    		// * Loop over all connected triples where x is the first node
-    		for (int yIndex = 0; yIndex < degree[x]; yIndex ++) 
-    		{
-    			int y = neighbors[x][yIndex];
-    			
-    			for (int zIndex = 0; zIndex < degree[y]; zIndex++) 
-    			{
-    				int z = neighbors[y][zIndex];
-    				
-    				if (x == z) 
-    					continue;
-    					
-    				if (! connected(x, z)) 
-    				{ 	// path
-    					orbit[x][1] ++;
-    					
-    					f_6_9  += degree[y] - 1 - triangles[x][yIndex] - 1;
-    					f_9_12 += triangles[y][zIndex];
-    					f_4_8  += degree[z] - 1 - triangles[y][zIndex];
-    					f_8_12 += common[z] - 1;
-       				}
-    			}
-    		}
-    		
-    		// * Solve system of equations
-    		orbit[x][14] = f_14;
-    		orbit[x][13] = (f_13_14 - 6 * f_14) / 2;
-    		orbit[x][12] = f_12_14 - 3 * f_14;
-    		orbit[x][11] = (f_11_13 - f_13_14 + 6 * f_14) / 2;
-    		orbit[x][10] = f_10_13 - f_13_14 + 6 * f_14;
-    		orbit[x][9] = (f_9_12-2 * f_12_14 + 6 * f_14) / 2;
-    		orbit[x][8] = (f_8_12-2 * f_12_14 + 6 * f_14) / 2;
-    		orbit[x][7] = (f_13_14 + f_7_11 - f_11_13 - 6 * f_14) / 6;
-    		orbit[x][6] = (2 * f_12_14 + f_6_9 - f_9_12 - 6 * f_14) / 2;
-    		orbit[x][5] = 2 * f_12_14 + f_5_8 - f_8_12 - 6 * f_14;
-    		orbit[x][4] = 2 * f_12_14 + f_4_8 - f_8_12 - 6 * f_14;
-    		
-    		for(int orb : series(orbit[x].length))
-    			orbitSums.add(orb, orbit[x][orb]);
+		Adjacency adjacency = adjacency();
+		perNode(() -> new Count4(graph, triangles, degree, adjacency, c4));
+	}
+	
+	/**
+	 * Runs the per-node stage for all nodes, and sums the orbits. 
+	 * 
+	 * The nodes are divided into contiguous chunks of roughly equal estimated
+	 * cost, which are submitted to the executor, most expensive first. Each 
+	 * running task uses its own counter, taken from a pool of idle ones. If
+	 * the counting is parallel, nodes with a degree of at least hubDegree 
+	 * that would not fit in a chunk are split over several tasks by their 
+	 * neighbors, if the counter supports it. 
+	 * 
+	 * The orbit sums of the chunks and the hubs are added up in a fixed 
+	 * order, so the result does not depend on the number of threads.
+	 * 
+	 * @param counters Creates a new counter, with its own scratch state.
+	 */
+	private void perNode(Supplier<NodeCounter> counters)
+	{
+		int n = size;
+		int numOrbits = numOrbits();
+		
+		Queue<NodeCounter> idle = new ConcurrentLinkedQueue<NodeCounter>();
+		NodeCounter first = counters.get();
+		idle.add(first);
+		
+		long[] cost = new long[n];
+		long total = 0;
+		for (int x : series(n))
+		{
+			cost[x] = first.cost(x);
+			total += cost[x];
+		}
+		
+		int numChunks = numChunks();
+		long target = max(1, total / numChunks);
+		
+		boolean split = parallelism > 1 && first instanceof HubCounter;
+		
+		List<Runnable> tasks = new ArrayList<Runnable>();
+		List<Long> taskCosts = new ArrayList<Long>();
+		
+		// * Split the hubs over their neighbors
+		List<Integer> hubs = new ArrayList<Integer>();
+		boolean[] hub = new boolean[n];
+		
+		List<long[][]> hubOrbits = new ArrayList<long[][]>();
+		List<long[][]> hubTerms = new ArrayList<long[][]>();
+		
+		for (int x : series(n))
+		{
+			if(! split || degree[x] < hubDegree || cost[x] <= target)
+				continue;
+			
+			int numTerms = ((HubCounter) first).numTerms();
+			int parts = (int) min(degree[x], min(numChunks, (cost[x] + target - 1) / target));
+			
+			long[][] orbits = new long[parts][numOrbits];
+			long[][] terms = new long[parts][numTerms];
+			
+			for (int part : series(parts))
+			{
+				int from = (int) ((long) degree[x] * part / parts);
+				int to = (int) ((long) degree[x] * (part + 1) / parts);
+				
+				tasks.add(() -> {
+					HubCounter counter = (HubCounter) take(idle, counters);
+					counter.count(x, from, to, orbits[part], terms[part]);
+					idle.add(counter);
+				});
+				taskCosts.add(cost[x] / parts);
+			}
+			
+			hubs.add(x);
+			hub[x] = true;
+			hubOrbits.add(orbits);
+			hubTerms.add(terms);
+			
+			cost[x] = 0;
+		}
+		
+		// * Divide the other nodes into chunks
+		int[] ranges = ranges(cost);
+		long[][] chunkSums = new long[ranges.length - 1][numOrbits];
+		
+		for (int r : series(ranges.length - 1))
+		{
+			int from = ranges[r], to = ranges[r + 1];
+			long[] sums = chunkSums[r];
+			
+			tasks.add(() -> {
+				NodeCounter counter = take(idle, counters);
+				long[] row = new long[numOrbits];
+				
+				for (int x = from; x < to; x++)
+				{
+					if(hub[x])
+						continue;
+					
+					Arrays.fill(row, 0);
+					counter.count(x, row);
+					mask(row);
+					store(x, row);
+					
+					for (int orb = 0; orb < numOrbits; orb++)
+						sums[orb] += row[orb];
+				}
+				
+				idle.add(counter);
+			});
+			taskCosts.add(sum(cost, from, to));
+		}
+		
+		run(tasks, taskCosts);
+		
+		orbitSums = new long[numOrbits];
+		for (long[] sums : chunkSums)
+			for (int orb = 0; orb < numOrbits; orb++)
+				orbitSums[orb] += sums[orb];
+		
+		// * Reduce the parts of the hubs, and solve
+		for (int h : series(hubs.size()))
+		{
+			int x = hubs.get(h);
+			long[][] partOrbits = hubOrbits.get(h), partTerms = hubTerms.get(h);
+			
+			long[] row = new long[numOrbits];
+			long[] terms = new long[partTerms[0].length];
+			for (int part : series(partOrbits.length))
+			{
+				for (int i = 0; i < numOrbits; i++)
+					row[i] += partOrbits[part][i];
+				for (int i = 0; i < terms.length; i++)
+					terms[i] += partTerms[part][i];
+			}
+			
+			((HubCounter) first).finish(x, row, terms);
+			mask(row);
+			store(x, row);
+			
+			for (int orb = 0; orb < numOrbits; orb++)
+				orbitSums[orb] += row[orb];
 		}
 	}
-
-	private boolean connected(int a, int b)
+	
+	/**
+	 * Sets the orbits that were not requested to 0.
+	 */
+	private void mask(long[] row)
 	{
-		return connected.contains(new Pair(a, b));
+		if(requested != null)
+			for (int orb = 0; orb < row.length; orb++)
+				if(! requested[orb])
+					row[orb] = 0;
 	}
-
+	
+	/**
+	 * A new matrix for the orbit counts, in memory or in the orbit file, or 
+	 * null if the counts go to a sink.
+	 */
+	private OrbitMatrix allocate(int numOrbits)
+	{
+		if(sink != null || totalsOnly)
+			return null;
+		
+		if(orbitFile == null)
+			return OrbitMatrix.allocate(size, numOrbits);
+		
+		try {
+			return OrbitMatrix.create(orbitFile, size, numOrbits);
+		} catch(IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	/**
+	 * Stores the counts of node x of the graph that is counted, or passes 
+	 * them to the sink.
+	 */
+	private void store(int x, long[] row)
+	{
+		if(orbits != null)
+			orbits.setRow(original(x), row);
+		
+		if(sink != null)
+			synchronized(sink)
+			{
+				sink.accept(original(x), row);
+			}
+	}
+	
+	/**
+	 * The index in the graph as given of a node of the graph that is counted.
+	 */
+	private int original(int x)
+	{
+		return oldIndex == null ? x : oldIndex[x];
+	}
+	
+	private static NodeCounter take(Queue<NodeCounter> idle, Supplier<NodeCounter> counters)
+	{
+		NodeCounter counter = idle.poll();
+		return counter != null ? counter : counters.get();
+	}
+	
+	/**
+	 * The number of tasks to divide a stage into. 
+	 */
+	private int numChunks()
+	{
+		return parallelism == 1 ? 1 : parallelism * CHUNKS_PER_THREAD;
+	}
+	
+	/**
+	 * Divides the nodes into contiguous ranges of roughly equal total cost. 
+	 * 
+	 * @param cost The estimated cost of each node.
+	 * @return The bounds of the ranges: range r contains the nodes from 
+	 * 	bounds[r] (inclusive) to bounds[r + 1] (exclusive).
+	 */
+	private int[] ranges(long[] cost)
+	{
+		int n = cost.length;
+		long target = max(1, sum(cost, 0, n) / numChunks());
+		
+		int[] bounds = new int[numChunks() + 2];
+		int r = 1;
+		
+		long sum = 0;
+		for (int x = 0; x < n - 1; x++)
+		{
+			sum += cost[x];
+			if(sum >= target && r < bounds.length - 1)
+			{
+				bounds[r++] = x + 1;
+				sum = 0;
+			}
+		}
+		
+		bounds[r++] = n;
+		
+		return Arrays.copyOf(bounds, r);
+	}
+	
+	private static long sum(long[] values, int from, int to)
+	{
+		long sum = 0;
+		for (int i = from; i < to; i++)
+			sum += values[i];
+		
+		return sum;
+	}
+	
+	/**
+	 * Runs the given tasks on the executor, most expensive first, and waits 
+	 * for all of them to finish. 
+	 * 
+	 * @param tasks
+	 * @param costs The estimated cost of each task.
+	 */
+	private void run(List<Runnable> tasks, List<Long> costs)
+	{
+		List<Integer> order = new ArrayList<Integer>(series(tasks.size()));
+		order.sort((a, b) -> Long.compare(costs.get(b), costs.get(a)));
+		
+		List<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>(tasks.size());
+		for (int task : order)
+			futures.add(CompletableFuture.runAsync(tasks.get(task), executor));
+		
+		try {
+			CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()])).join();
+		} catch(CompletionException e)
+		{
+			if(e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if(e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw e;
+		}
+	}
+	
 	/**
 	 * Count the the number of complete graphlets (of a given size) of which the
-	 * node with index 'i' is part.
+	 * node with index 'i' is part. 
+	 * 
+	 * This is a simple reference implementation. The orbit counting itself 
+	 * enumerates the cliques once for all nodes, over a degeneracy ordering.
+	 * 
 	 * @param i
 	 * @param graph
 	 * @return
@@ -842,152 +1169,102 @@ public class Orca
 		return sum;
 	}
 	
-	private static final Comparator<String> N = Functions.natural();
-
-	
-	static {		
-		graphs = new ArrayList<UGraph<String>>(30);
-		
-		for(int i : series(30))
-			graphs.add(null);
-		
-		graphs.set(0, fromBits(parse("1"), ""));
-		
-		graphs.set(1, fromBits(parse("110"), ""));
-		graphs.set(2, fromBits(parse("111"), ""));
-		
-		graphs.set(3, fromBits(parse("101100"), ""));
-		graphs.set(4, fromBits(parse("110100"), ""));
-		graphs.set(5, fromBits(parse("011110"), ""));
-		graphs.set(6, fromBits(parse("111100"), ""));
-		graphs.set(7, fromBits(parse("111110"), ""));
-		graphs.set(8, fromBits(parse("111111"), ""));
-		
-		graphs.set( 9, fromBits(parse("0110101000"), ""));
-		graphs.set(10, fromBits(parse("1011001000"), ""));
-		graphs.set(11, fromBits(parse("1101001000"), ""));
-		graphs.set(12, fromBits(parse("1110101000"), ""));
-		graphs.set(13, fromBits(parse("1010111000"), ""));
-		graphs.set(14, fromBits(parse("1111001000"), ""));
-		graphs.set(15, fromBits(parse("0011011100"), ""));
-		graphs.set(16, fromBits(parse("0111101000"), ""));
-		graphs.set(17, fromBits(parse("1111101000"), ""));
-		graphs.set(18, fromBits(parse("1101011100"), ""));
-		graphs.set(19, fromBits(parse("1110111000"), ""));
-		graphs.set(20, fromBits(parse("0111101100"), ""));
-		graphs.set(21, fromBits(parse("1011011100"), ""));
-		graphs.set(22, fromBits(parse("1111101100"), ""));
-		graphs.set(23, fromBits(parse("1111111000"), ""));
-		graphs.set(24, fromBits(parse("1111011100"), ""));
-		graphs.set(25, fromBits(parse("0111111100"), ""));
-		graphs.set(26, fromBits(parse("1111111100"), ""));
-		graphs.set(27, fromBits(parse("1101111110"), ""));
-		graphs.set(28, fromBits(parse("1111111110"), ""));
-		graphs.set(29, fromBits(parse("1111111111"), ""));
-
-		/**
-		 * Canonize the graphs
-		 */
-		for(int i : series(graphs.size()))
-		{
-			UGraph<String> g = graphs.get(i);
-			g = Graphs.reorder(g, Nauty.order(g, N));
-			
-			graphs.set(i, g);
-		}
-				
-		graph2Index = new HashMap<UGraph<String>, Integer>();
-		for(int i : series(graphs.size()))
-			graph2Index.put(graphs.get(i), i);
-		
-		orbit2Graph = new HashMap<Integer, Integer>();
-		orbit2Graph.put(0, 0);
-		orbit2Graph.put(1, 1);
-		orbit2Graph.put(2, 1);
-		orbit2Graph.put(3, 2);
-		orbit2Graph.put(4, 3);
-		orbit2Graph.put(5, 3);
-		orbit2Graph.put(6, 4);
-		orbit2Graph.put(7, 4);
-		orbit2Graph.put(8, 5);
-		orbit2Graph.put(9, 6);
-		orbit2Graph.put(10, 6);
-		orbit2Graph.put(11, 6);
-		orbit2Graph.put(12, 7);
-		orbit2Graph.put(13, 7);
-		orbit2Graph.put(14, 8);
-		orbit2Graph.put(15, 9);
-		orbit2Graph.put(16, 9);
-		orbit2Graph.put(17, 9);
-		orbit2Graph.put(18, 10);
-		orbit2Graph.put(19, 10);
-		orbit2Graph.put(20, 10);
-		orbit2Graph.put(21, 10);
-		orbit2Graph.put(22, 11);
-		orbit2Graph.put(23, 11);
-		orbit2Graph.put(24, 12);
-		orbit2Graph.put(25, 12);
-		orbit2Graph.put(26, 12);
-		orbit2Graph.put(27, 13);
-		orbit2Graph.put(28, 13);
-		orbit2Graph.put(29, 13);
-		orbit2Graph.put(30, 13);
-		orbit2Graph.put(31, 14);
-		orbit2Graph.put(32, 14);
-		orbit2Graph.put(33, 14);
-		orbit2Graph.put(34, 15);
-		orbit2Graph.put(35, 16);
-		orbit2Graph.put(36, 16);
-		orbit2Graph.put(37, 16);
-		orbit2Graph.put(38, 16);
-		orbit2Graph.put(39, 17);
-		orbit2Graph.put(40, 17);
-		orbit2Graph.put(41, 17);
-		orbit2Graph.put(42, 17);
-		orbit2Graph.put(43, 18);
-		orbit2Graph.put(44, 18);
-		orbit2Graph.put(45, 19);
-		orbit2Graph.put(46, 19);
-		orbit2Graph.put(47, 19);
-		orbit2Graph.put(48, 19);
-		orbit2Graph.put(49, 20);
-		orbit2Graph.put(50, 20);
-		orbit2Graph.put(51, 21);
-		orbit2Graph.put(52, 21);
-		orbit2Graph.put(53, 21);
-		orbit2Graph.put(54, 22);
-		orbit2Graph.put(55, 22);
-		orbit2Graph.put(56, 23);
-		orbit2Graph.put(57, 23);
-		orbit2Graph.put(58, 23);
-		orbit2Graph.put(59, 24);
-		orbit2Graph.put(60, 24);
-		orbit2Graph.put(61, 24);
-		orbit2Graph.put(62, 25);
-		orbit2Graph.put(63, 25);
-		orbit2Graph.put(64, 25);
-		orbit2Graph.put(65, 26);
-		orbit2Graph.put(66, 26);
-		orbit2Graph.put(67, 26);
-		orbit2Graph.put(68, 27);
-		orbit2Graph.put(69, 27);
-		orbit2Graph.put(70, 28);
-		orbit2Graph.put(71, 28);
-		orbit2Graph.put(72, 29);
-		
-		graph2Orbits = new HashMap<Integer, Set<Integer>>();
-		for(int orbit : orbit2Graph.keySet())
+	/**
+	 * Counts, for every node, the number of complete graphlets of the given 
+	 * size of which it is part. 
+	 */
+	private long[] cliques(Cliques cliques)
+	{
+		long[] cost = new long[size];
+		for (int v : series(size))
+			cost[v] = cliques.cost(v);
+		
+		int[] ranges = ranges(cost);
+		
+		List<Runnable> tasks = new ArrayList<Runnable>();
+		List<Long> taskCosts = new ArrayList<Long>();
+		for (int r : series(ranges.length - 1))
 		{
-			int graph = orbit2Graph.get(orbit);
+			int from = ranges[r], to = ranges[r + 1];
 			
-			if(! graph2Orbits.containsKey(graph))
-				graph2Orbits.put(graph, new LinkedHashSet<Integer>());
-			
-			graph2Orbits.get(graph).add(orbit);
+			tasks.add(() -> {
+				Cliques.Worker worker = cliques.worker();
+				for (int v = from; v < to; v++)
+					worker.count(v);
+			});
+			taskCosts.add(sum(cost, from, to));
 		}
+		
+		run(tasks, taskCosts);
+		
+		return cliques.counts();
 	}
 	
-
+	/**
+	 * The graphlets, by the bits of the upper triangle of their adjacency 
+	 * matrices, in the order of {@link Graphs#fromBits(BitString, Object)}. 
+	 */
+	private static final String[] GRAPHLETS = {
+		"1",
+		"110", "111",
+		"101100", "110100", "011110", "111100", "111110", "111111",
+		"0110101000", "1011001000", "1101001000", "1110101000", "1010111000", "1111001000", "0011011100",
+		"0111101000", "1111101000", "1101011100", "1110111000", "0111101100", "1011011100", "1111101100",
+		"1111111000", "1111011100", "0111111100", "1111111100", "1101111110", "1111111110", "1111111111"
+	};
+	
+	/**
+	 * For graphs of 2 to 5 nodes, the index of the graphlet for each 
+	 * adjacency mask (see {@link #graphletIndex(UGraph)}) as a digit in base 
+	 * 32, or '.' if the graph is not connected. Generated by comparing each
+	 * mask to the graphlets under all permutations of the nodes.
+	 */
+	private static final String[] LOOKUP = {
+		null, 
+		null, 
+		".0", 
+		"...1.112", 
+		"...........4.336...3.436..363657...3.346.3.63567.335.66746676778", 
+		"................................................................" + 
+		"...........B.AAE...A.A9C..AE9CGH...A.9AC.A.E9GCH.99G.DDJACCHDJJN" + 
+		"...........A.A9C...A.BAE..9CAEGH...9.AAC.9.D9GDJ.A9G.ECHACDJCHJN" + 
+		"..........AE9CGH..9CAEGH..GHGHKM..9D9DGJ9DDIFLLO9DFLDILOGJLOLOPQ" + 
+		"...........A.9AC...9.AAC..9D9DGJ...A.ABE.9.CAGEH.9AG.CEHADCJCJHN" + 
+		".........A.E9GCH.9.D9GDJ9DDIFLLO.9.CAGEH.G.HGKHM9FDLDLIOGLJOLPOQ" + 
+		".........99G.DDJ.A9G.ECH9DFLDILO.9AG.CEH9FDLDLIO.GGK.HHMGLLPJOOQ" + 
+		"........ACCHDJJNACDJCHJNGJLOLOPQADCJCJHNGLJOLPOQGLLPJOOQKPPRPRRS" + 
+		"...........A.99D...9.A9D..ACACGJ...9.9AD.A.CAGCJ.AAG.CCJBEEHEHHN" + 
+		"...A.99D...E.DDI..9G9GFL..CHDJLO.9.G9FGL.C.HDLJOAGGKDLLPEHHMIOOQ" + 
+		"...9.A9D..9G9GFL...D.EDI..DJCHLO.99F.GGLAGDLGKLP.CDL.HJOEHIOHMOQ" + 
+		"..ACACGJ..CHDJLO..DJCHLO..JNJNPQADGLGLKPCJJOLPPRCJLPJOPRHNOQOQRS" + 
+		"...9.9AD.9.G9FGL.99F.GGLADGLGLKP...D.DEI.D.JCLHO.DCL.JHOEIHOHOMQ" + 
+		".A.CAGCJ.C.HDLJOAGDLGKLPCJJOLPPR.D.JCLHO.J.NJPNQCLJPJPORHONQORQS" + 
+		".AAG.CCJAGGKDLLP.CDL.HJOCJLPJOPR.DCL.JHOCLJPJPOR.JJP.NNQHOORNQQS" + 
+		"BEEHEHHNEHHMIOOQEHIOHMOQHNOQOQRSEIHOHOMQHONQORQSHOORNQQSMQQSQSST"
+	};
+	
+	/**
+	 * For each orbit, the graphlet it belongs to.
+	 */
+	private static final int[] ORBIT_GRAPH = {
+		 0,  1,  1,  2,  3,  3,  4,  4,  5,  6,  6,  6,  7,  7,  8,
+		 9,  9,  9, 10, 10, 10, 10, 11, 11, 12, 12, 12, 13, 13, 13,
+		13, 14, 14, 14, 15, 16, 16, 16, 16, 17, 17, 17, 17, 18, 18,
+		19, 19, 19, 19, 20, 20, 21, 21, 21, 22, 22, 23, 23, 23, 24,
+		24, 24, 25, 25, 25, 26, 26, 26, 27, 27, 28, 28, 29
+	};
+	
+	/**
+	 * For each graphlet, its orbits.
+	 */
+	private static final int[][] GRAPH_ORBITS = {
+		{0}, {1, 2}, {3}, {4, 5}, {6, 7}, {8},
+		{9, 10, 11}, {12, 13}, {14}, {15, 16, 17}, {18, 19, 20, 21}, {22, 23},
+		{24, 25, 26}, {27, 28, 29, 30}, {31, 32, 33}, {34}, {35, 36, 37, 38}, {39, 40, 41, 42},
+		{43, 44}, {45, 46, 47, 48}, {49, 50}, {51, 52, 53}, {54, 55}, {56, 57, 58},
+		{59, 60, 61}, {62, 63, 64}, {65, 66, 67}, {68, 69}, {70, 71}, {72}
+	};
+	
 	/**
 	 * Computes the overlap (number of shared elements) between two sorted arrays
 	 * 
@@ -997,11 +1274,49 @@ public class Orca
 	 */
 	public static int overlap(int[] a, int[] b)
 	{
-		int i = 0, j = 0;
+		return overlap(a, 0, a.length, b, 0, b.length);
+	}
+	
+	/**
+	 * Computes the overlap between two sorted ranges of arrays. 
+	 * 
+	 * If one range is more than {@link #GALLOP_RATIO} times longer than the 
+	 * other, the elements of the short range are looked up in the long one by
+	 * galloping (exponential) search. Otherwise, the ranges are merged.
+	 * 
+	 * @param a
+	 * @param aFrom The first index of the range in a (inclusive)
+	 * @param aTo The last index of the range in a (exclusive)
+	 * @param b
+	 * @param bFrom The first index of the range in b (inclusive)
+	 * @param bTo The last index of the range in b (exclusive)
+	 * @return
+	 */
+	public static int overlap(int[] a, int aFrom, int aTo, int[] b, int bFrom, int bTo)
+	{
+		long aLength = aTo - aFrom, bLength = bTo - bFrom;
+		
+		if(aLength * GALLOP_RATIO < bLength)
+			return gallop(a, aFrom, aTo, b, bFrom, bTo);
+		if(bLength * GALLOP_RATIO < aLength)
+			return gallop(b, bFrom, bTo, a, aFrom, aTo);
+		
+		return merge(a, aFrom, aTo, b, bFrom, bTo);
+	}
+	
+	/**
+	 * The length ratio from which {@link #overlap(int[], int, int, int[], int, int)}
+	 * switches from merging to galloping.
+	 */
+	static final int GALLOP_RATIO = 16;
+	
+	private static int merge(int[] a, int aFrom, int aTo, int[] b, int bFrom, int bTo)
+	{
+		int i = aFrom, j = bFrom;
 		
 		int res = 0;
 
-		while(i < a.length && j < b.length)
+		while(i < aTo && j < bTo)
 		{
 			if(a[i] > b[j])
 				j ++;
@@ -1019,133 +1334,47 @@ public class Orca
 	}
 	
 	/**
-	 * Triple of sorted integers
-	 * @author Peter
-	 *
+	 * Looks up the elements of the short range in the long range. Each search
+	 * starts where the previous one ended, and doubles its step until it 
+	 * passes the element, followed by a binary search over the last step. 
 	 */
-	private static class Triple
+	private static int gallop(int[] s, int sFrom, int sTo, int[] l, int lFrom, int lTo)
 	{
-		int a, b, c;
-
-		public Triple(int x, int y, int z)
+		int res = 0;
+		int lo = lFrom;
+		
+		for(int i = sFrom; i < sTo && lo < lTo; i++)
 		{
-			if(x < y && x < z)
-			{
-				a = x;
-				if(y < z)
-				{
-					b = y;
-					c = z;
-				} else
-				{
-					b = z;
-					c = y;
-				}
-				
-			} else if(y < z)
+			int x = s[i];
+			
+			if(l[lo] > x)
+				continue;
+			if(l[lo] == x)
 			{
-				a = y;
-				if(x < z)
-				{
-					b = x;
-					c = z;
-				} else
-				{
-					b = z;
-					c = x;
-				}
-				
-			} else
+				res ++;
+				lo ++;
+				continue;
+			}
+			
+			// * l[lo] < x: find the step at which l passes x
+			int step = 1, hi = lo + 1;
+			while(hi < lTo && l[hi] < x)
 			{
-				a = z;
-				if(x < y)
-				{
-					b = x;
-					c = y;
-				} else
-				{
-					b = y;
-					c = x;
-				}
+				lo = hi;
+				step <<= 1;
+				hi = step < lTo - lo ? lo + step : lTo;
 			}
-		}
-
-		@Override
-		public int hashCode()
-		{
-			final int prime = 31;
-			int result = 1;
-			result = prime * result + a;
-			result = prime * result + b;
-			result = prime * result + c;
-			return result;
-		}
-
-		@Override
-		public boolean equals(Object obj)
-		{
-			if (this == obj)
-				return true;
-			if (obj == null)
-				return false;
-			if (getClass() != obj.getClass())
-				return false;
-			Triple other = (Triple) obj;
-			if (a != other.a)
-				return false;
-			if (b != other.b)
-				return false;
-			if (c != other.c)
-				return false;
-			return true;
-		}
-	}
-	
-	private static class Pair
-	{
-		int a, b;
-
-		public Pair(int x, int y)
-		{
-			if(x < y)
+			
+			int found = Arrays.binarySearch(l, lo + 1, min(hi + 1, lTo), x);
+			if(found >= 0)
 			{
-    			this.a = x;
-    			this.b = y;
+				res ++;
+				lo = found + 1;
 			} else
-			{
-				this.a = y;
-				this.b = x;
-			}
-		}
-
-		@Override
-		public int hashCode()
-		{
-			final int prime = 31;
-			int result = 1;
-			result = prime * result + a;
-			result = prime * result + b;
-			return result;
-		}
-
-		@Override
-		public boolean equals(Object obj)
-		{
-			if (this == obj)
-				return true;
-			if (obj == null)
-				return false;
-			if (getClass() != obj.getClass())
-				return false;
-			Pair other = (Pair) obj;
-			if (a != other.a)
-				return false;
-			if (b != other.b)
-				return false;
-			return true;
+				lo = - found - 1;
 		}
 		
-		
+		return res;
 	}
 
 }
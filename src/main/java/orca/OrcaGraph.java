@@ -0,0 +1,481 @@
+package orca;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+import org.nodes.Node;
+import org.nodes.UGraph;
+
+/**
+ * A simple, undirected graph in compressed sparse row (CSR) form. This is the
+ * input format that Orca counts on.
+ *
+ * The neighbors of node i are stored in targets[offsets[i]] up to (but not
+ * including) targets[offsets[i+1]], in ascending order. Every link is stored
+ * in both directions, and there are no self-loops or duplicate links.
+ *
+ * Instances are immutable.
+ *
+ * @author Peter
+ */
+public class OrcaGraph
+{
+	private final int[] offsets;
+	private final int[] targets;
+
+	private OrcaGraph(int[] offsets, int[] targets)
+	{
+		this.offsets = offsets;
+		this.targets = targets;
+	}
+
+	/**
+	 * Number of nodes
+	 */
+	public int size()
+	{
+		return offsets.length - 1;
+	}
+
+	/**
+	 * Number of (undirected) links
+	 */
+	public long numLinks()
+	{
+		return targets.length / 2;
+	}
+
+	public int degree(int node)
+	{
+		return offsets[node + 1] - offsets[node];
+	}
+
+	/**
+	 * The index-th neighbor of the given node, in ascending order.
+	 */
+	public int neighbor(int node, int index)
+	{
+		return targets[offsets[node] + index];
+	}
+
+	/**
+	 * A copy of the sorted neighbor list of the given node.
+	 */
+	public int[] neighbors(int node)
+	{
+		return Arrays.copyOfRange(targets, offsets[node], offsets[node + 1]);
+	}
+
+	/**
+	 * The row offsets of the CSR structure. The returned array is not a copy,
+	 * and should not be modified.
+	 */
+	int[] offsets()
+	{
+		return offsets;
+	}
+
+	/**
+	 * The concatenated neighbor lists of the CSR structure. The returned array
+	 * is not a copy, and should not be modified.
+	 */
+	int[] targets()
+	{
+		return targets;
+	}
+
+	/**
+	 * Wraps a CSR structure without any checks. Only for structures that are
+	 * known to describe a simple, undirected graph with sorted rows.
+	 */
+	static OrcaGraph wrap(int[] offsets, int[] targets)
+	{
+		return new OrcaGraph(offsets, targets);
+	}
+
+	/**
+	 * Creates a graph from a CSR structure. The rows are sorted in place (in
+	 * parallel) if required, so the arrays should not be used by the caller
+	 * afterwards.
+	 *
+	 * @param offsets An array of length n+1, with the neighbors of node i in
+	 * 	targets[offsets[i]] to targets[offsets[i+1]].
+	 * @param targets The concatenated neighbor lists. Each link should occur
+	 * 	in both directions.
+	 * @throws IllegalArgumentException If the structure does not describe a
+	 * 	simple, undirected graph.
+	 */
+	public static OrcaGraph fromCSR(int[] offsets, int[] targets)
+	{
+		if(offsets.length < 1 || offsets[0] != 0 || offsets[offsets.length - 1] != targets.length)
+			throw new IllegalArgumentException("Offsets do not match the targets array.");
+
+		final int n = offsets.length - 1;
+
+		for(int i = 0; i < n; i++)
+			if(offsets[i] > offsets[i + 1])
+				throw new IllegalArgumentException("Offsets should be non-decreasing (at node "+i+").");
+
+		IntStream.range(0, n).parallel().forEach(i -> {
+			for(int e = offsets[i]; e < offsets[i + 1]; e++)
+			{
+				int j = targets[e];
+				if(j < 0 || j >= n)
+					throw new IllegalArgumentException("Neighbor "+j+" of node "+i+" is out of range.");
+				if(j == i)
+					throw new IllegalArgumentException("Self-loop at node " + i + ".");
+			}
+
+			sortRow(targets, offsets[i], offsets[i + 1]);
+
+			for(int e = offsets[i] + 1; e < offsets[i + 1]; e++)
+				if(targets[e] == targets[e - 1])
+					throw new IllegalArgumentException("Duplicate link between nodes "+i+" and "+targets[e]+".");
+		});
+
+		// * Check that every link is stored in both directions
+		IntStream.range(0, n).parallel().forEach(i -> {
+			for(int e = offsets[i]; e < offsets[i + 1]; e++)
+			{
+				int j = targets[e];
+				if(Arrays.binarySearch(targets, offsets[j], offsets[j + 1], i) < 0)
+					throw new IllegalArgumentException("Link ("+i+", "+j+") is not stored in both directions.");
+			}
+		});
+
+		return new OrcaGraph(offsets, targets);
+	}
+
+	/**
+	 * Creates a graph from a list of links, given as two parallel arrays of
+	 * node indices. The direction of the links is ignored, as are self-loops
+	 * and duplicate links. The CSR structure is built in parallel.
+	 *
+	 * @param size The number of nodes.
+	 * @param from
+	 * @param to
+	 * @return
+	 */
+	public static OrcaGraph fromEdges(int size, int[] from, int[] to)
+	{
+		if(from.length != to.length)
+			throw new IllegalArgumentException("Arrays from ("+from.length+") and to ("+to.length+") should have the same length.");
+
+		final int m = from.length;
+
+		// * Count degrees
+		AtomicIntegerArray counts = new AtomicIntegerArray(size + 1);
+		IntStream.range(0, m).parallel().forEach(e -> {
+			int a = from[e], b = to[e];
+
+			if(a < 0 || a >= size || b < 0 || b >= size)
+				throw new IllegalArgumentException("Link ("+a+", "+b+") is out of range for a graph of size "+size+".");
+
+			if(a != b)
+			{
+				counts.incrementAndGet(a + 1);
+				counts.incrementAndGet(b + 1);
+			}
+		});
+
+		int[] raw = new int[size + 1];
+		long total = 0;
+		for(int i = 0; i < size; i++)
+		{
+			total += counts.get(i + 1);
+			if(total > Integer.MAX_VALUE - 8)
+				throw new IllegalArgumentException("Graphs with more than "+((Integer.MAX_VALUE - 8)/2)+" links are not supported.");
+
+			raw[i + 1] = (int) total;
+		}
+
+		// * Fill the rows, both directions
+		int[] rawTargets = new int[(int) total];
+		AtomicIntegerArray fill = new AtomicIntegerArray(raw);
+		IntStream.range(0, m).parallel().forEach(e -> {
+			int a = from[e], b = to[e];
+
+			if(a != b)
+			{
+				rawTargets[fill.getAndIncrement(a)] = b;
+				rawTargets[fill.getAndIncrement(b)] = a;
+			}
+		});
+
+		// * Sort the rows and remove duplicates
+		int[] degrees = new int[size];
+		IntStream.range(0, size).parallel().forEach(i ->
+			degrees[i] = unique(rawTargets, raw[i], raw[i + 1])
+		);
+
+		int[] offsets = new int[size + 1];
+		for(int i = 0; i < size; i++)
+			offsets[i + 1] = offsets[i] + degrees[i];
+
+		if(offsets[size] == rawTargets.length)
+			return new OrcaGraph(offsets, rawTargets);
+
+		int[] targets = new int[offsets[size]];
+		IntStream.range(0, size).parallel().forEach(i ->
+			System.arraycopy(rawTargets, raw[i], targets, offsets[i], degrees[i])
+		);
+
+		return new OrcaGraph(offsets, targets);
+	}
+
+	/**
+	 * Converts a graph from the nodes library. Only the neighbor lists of the
+	 * nodes are used, so the links of the graph do not need to be persistent.
+	 *
+	 * @param graph
+	 * @return
+	 */
+	public static OrcaGraph fromUGraph(UGraph<?> graph)
+	{
+		int n = graph.size();
+		int[][] rows = new int[n][];
+
+		long total = 0;
+		for(int i = 0; i < n; i++)
+		{
+			Collection<? extends Node<?>> neighbors = graph.get(i).neighbors();
+			int[] row = new int[neighbors.size()];
+
+			int j = 0;
+			for(Node<?> neighbor : neighbors)
+				row[j++] = neighbor.index();
+
+			rows[i] = row;
+			total += row.length;
+		}
+
+		if(total > Integer.MAX_VALUE - 8)
+			throw new IllegalArgumentException("Graphs with more than "+((Integer.MAX_VALUE - 8)/2)+" links are not supported.");
+
+		int[] degrees = new int[n];
+		IntStream.range(0, n).parallel().forEach(i ->
+			degrees[i] = unique(rows[i], 0, rows[i].length, i)
+		);
+
+		int[] offsets = new int[n + 1];
+		for(int i = 0; i < n; i++)
+			offsets[i + 1] = offsets[i] + degrees[i];
+
+		int[] targets = new int[offsets[n]];
+		IntStream.range(0, n).parallel().forEach(i -> {
+			System.arraycopy(rows[i], 0, targets, offsets[i], degrees[i]);
+			rows[i] = null;
+		});
+
+		return new OrcaGraph(offsets, targets);
+	}
+
+	/**
+	 * A copy of this graph in which node i is renamed to newIndex[i].
+	 * 
+	 * @param newIndex A permutation of the node indices.
+	 * @return
+	 */
+	public OrcaGraph relabel(int[] newIndex)
+	{
+		int n = size();
+		if(newIndex.length != n)
+			throw new IllegalArgumentException("Permutation has length "+newIndex.length+", should be "+n+".");
+		
+		int[] oldIndex = new int[n];
+		Arrays.fill(oldIndex, -1);
+		for(int i = 0; i < n; i++)
+		{
+			int j = newIndex[i];
+			if(j < 0 || j >= n || oldIndex[j] != -1)
+				throw new IllegalArgumentException("Input is not a permutation (at index "+i+").");
+			oldIndex[j] = i;
+		}
+		
+		int[] newOffsets = new int[n + 1];
+		for(int j = 0; j < n; j++)
+			newOffsets[j + 1] = newOffsets[j] + degree(oldIndex[j]);
+		
+		int[] newTargets = new int[targets.length];
+		IntStream.range(0, n).parallel().forEach(j -> {
+			int i = oldIndex[j];
+			int out = newOffsets[j];
+			for(int e = offsets[i]; e < offsets[i + 1]; e++)
+				newTargets[out++] = newIndex[targets[e]];
+			
+			Arrays.sort(newTargets, newOffsets[j], newOffsets[j + 1]);
+		});
+		
+		return new OrcaGraph(newOffsets, newTargets);
+	}
+	
+	/**
+	 * A relabeling that puts the nodes in order of descending degree, so that
+	 * the hubs, which occur in many neighbor lists, are close together in 
+	 * memory. Ties are broken by index.
+	 * 
+	 * @return For each node, its new index.
+	 */
+	public int[] degreeOrder()
+	{
+		int n = size();
+		
+		// * sort (-degree, index) pairs packed into longs
+		long[] keys = new long[n];
+		for(int i = 0; i < n; i++)
+			keys[i] = ((long) (Integer.MAX_VALUE - degree(i)) << 32) | i;
+		Arrays.parallelSort(keys);
+		
+		int[] newIndex = new int[n];
+		for(int j = 0; j < n; j++)
+			newIndex[(int) keys[j]] = j;
+		
+		return newIndex;
+	}
+	
+	/**
+	 * A relabeling in reverse Cuthill-McKee order: each connected component 
+	 * is traversed breadth-first from a node of minimal degree, visiting the
+	 * neighbors of a node in order of ascending degree, and the resulting 
+	 * order is reversed. Nodes that are close in the graph end up close in 
+	 * memory.
+	 * 
+	 * @return For each node, its new index.
+	 */
+	public int[] bfsOrder()
+	{
+		int n = size();
+		
+		// * the nodes by ascending degree, to pick the start nodes
+		long[] byDegree = new long[n];
+		for(int i = 0; i < n; i++)
+			byDegree[i] = ((long) degree(i) << 32) | i;
+		Arrays.parallelSort(byDegree);
+		
+		int[] order = new int[n];
+		boolean[] visited = new boolean[n];
+		int head = 0, tail = 0;
+		
+		int[] buffer = new int[16];
+		
+		for(long key : byDegree)
+		{
+			int start = (int) key;
+			if(visited[start])
+				continue;
+			
+			visited[start] = true;
+			order[tail++] = start;
+			
+			while(head < tail)
+			{
+				int node = order[head++];
+				
+				// * the unvisited neighbors, by ascending degree
+				int k = 0;
+				for(int e = offsets[node]; e < offsets[node + 1]; e++)
+				{
+					int neighbor = targets[e];
+					if(visited[neighbor])
+						continue;
+					
+					if(k == buffer.length)
+						buffer = Arrays.copyOf(buffer, 2 * k);
+					buffer[k++] = neighbor;
+					visited[neighbor] = true;
+				}
+				
+				sortByDegree(buffer, k);
+				System.arraycopy(buffer, 0, order, tail, k);
+				tail += k;
+			}
+		}
+		
+		int[] newIndex = new int[n];
+		for(int j = 0; j < n; j++)
+			newIndex[order[j]] = n - 1 - j;
+		
+		return newIndex;
+	}
+	
+	/**
+	 * Sorts the first k nodes of the array by degree (stable). 
+	 */
+	private void sortByDegree(int[] nodes, int k)
+	{
+		// * insertion sort for short lists, which is the common case
+		if(k <= 32)
+		{
+			for(int i = 1; i < k; i++)
+			{
+				int node = nodes[i], d = degree(node);
+				int j = i - 1;
+				while(j >= 0 && degree(nodes[j]) > d)
+				{
+					nodes[j + 1] = nodes[j];
+					j--;
+				}
+				nodes[j + 1] = node;
+			}
+			
+			return;
+		}
+		
+		long[] keys = new long[k];
+		for(int i = 0; i < k; i++)
+			keys[i] = ((long) degree(nodes[i]) << 32) | i;
+		Arrays.sort(keys);
+		
+		int[] copy = Arrays.copyOf(nodes, k);
+		for(int i = 0; i < k; i++)
+			nodes[i] = copy[(int) keys[i]];
+	}
+	
+	/**
+	 * Sorts the given range if it isn't sorted already.
+	 */
+	private static void sortRow(int[] array, int from, int to)
+	{
+		for(int e = from + 1; e < to; e++)
+			if(array[e] < array[e - 1])
+			{
+				Arrays.sort(array, from, to);
+				return;
+			}
+	}
+
+	/**
+	 * Sorts the given range and moves the unique elements to the front.
+	 *
+	 * @return The number of unique elements.
+	 */
+	private static int unique(int[] array, int from, int to)
+	{
+		return unique(array, from, to, -1);
+	}
+
+	/**
+	 * Sorts the given range and moves the unique elements, other than 'skip',
+	 * to the front.
+	 *
+	 * @return The number of elements retained.
+	 */
+	private static int unique(int[] array, int from, int to, int skip)
+	{
+		sortRow(array, from, to);
+
+		int out = from;
+		for(int e = from; e < to; e++)
+		{
+			int v = array[e];
+			if(v == skip || (out > from && array[out - 1] == v))
+				continue;
+
+			array[out++] = v;
+		}
+
+		return out - from;
+	}
+}
@@ -0,0 +1,167 @@
+package orca;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Counts the orbits of a graph that does not fit in memory, from a 
+ * {@link GraphFile} that is mapped rather than loaded.
+ * 
+ * The nodes are processed in contiguous chunks. For each chunk, only the 
+ * rows of the nodes within a few hops are read (see {@link Neighborhood}). 
+ * These rows are copied into a small local graph, on which the triangles, 
+ * cliques and common neighbors are computed, and the orbits of the chunk are
+ * counted. The orbit rows of each chunk are written to the output before 
+ * the next chunk is started.
+ * 
+ * The size of the chunks is adapted so that the estimated memory of a chunk 
+ * stays within the given budget: a chunk that is too large is halved before
+ * any of its rows are copied (see {@link Neighborhood#of}), and the next 
+ * chunk is doubled if the last one used less than a quarter of the budget. A single node whose neighborhood exceeds the budget is still 
+ * counted. Nodes near many chunks have their neighborhood read more than 
+ * once, so this is slower than counting in memory.
+ * 
+ * The output contains, for every node in order, its orbit counts as 
+ * little-endian longs.
+ * 
+ * @author Peter
+ *
+ */
+public final class OutOfCore
+{
+	private static final int FIRST_CHUNK = 1024;
+	private static final int BUFFER = 1 << 20;
+	
+	private final MappedGraph graph;
+	private final boolean count5;
+	private final long budget;
+	
+	private int numChunks = 0;
+	private long peak = 0;
+	
+	/**
+	 * @param graphFile A file written by {@link GraphFile}.
+	 * @param count5 Whether to count the orbits of graphlets with 5 nodes 
+	 * 	(73 orbits) or only those up to 4 nodes (15 orbits).
+	 * @param budget The (estimated) memory that a chunk may use, in bytes.
+	 */
+	public OutOfCore(Path graphFile, boolean count5, long budget)
+		throws IOException
+	{
+		if(budget < 1)
+			throw new IllegalArgumentException("Memory budget ("+budget+") should be positive.");
+		
+		this.graph = MappedGraph.open(graphFile);
+		this.count5 = count5;
+		this.budget = budget;
+	}
+	
+	public int numOrbits()
+	{
+		return count5 ? 73 : 15;
+	}
+	
+	/**
+	 * Counts the orbits of all nodes, and writes them to the given file.
+	 * 
+	 * @return The frequency of each orbit, summed over all nodes.
+	 */
+	public long[] count(Path output)
+		throws IOException
+	{
+		int n = graph.size();
+		int numOrbits = numOrbits();
+		
+		long[] sums = new long[numOrbits];
+		
+		try(FileChannel channel = FileChannel.open(output, 
+				StandardOpenOption.WRITE, StandardOpenOption.CREATE, 
+				StandardOpenOption.TRUNCATE_EXISTING))
+		{
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+			
+			int from = 0, size = FIRST_CHUNK;
+			while(from < n)
+			{
+				int to = (int) Math.min(n, (long) from + size);
+				
+				int[] chunk = new int[to - from];
+				for(int i = 0; i < chunk.length; i++)
+					chunk[i] = from + i;
+				
+				// * a single node is counted whatever its neighborhood
+				Neighborhood local = Neighborhood.of(graph, chunk, count5, 
+						to - from > 1 ? budget : Long.MAX_VALUE);
+				
+				if(local == null)
+				{
+					size = (to - from) / 2;
+					continue;
+				}
+				
+				long memory = local.memory();
+				
+				long[] orbit = new long[numOrbits];
+				NodeCounter counter = local.counter();
+				
+				for(int x = from; x < to; x++)
+				{
+					Arrays.fill(orbit, 0);
+					counter.count(local.index(x), orbit);
+					
+					for(int o = 0; o < numOrbits; o++)
+					{
+						if(buffer.remaining() < 8)
+							flush(channel, buffer);
+						
+						buffer.putLong(orbit[o]);
+						sums[o] += orbit[o];
+					}
+				}
+				
+				numChunks++;
+				peak = Math.max(peak, memory);
+				
+				if(memory < budget / 4)
+					size = (int) Math.min(Integer.MAX_VALUE, 2L * size);
+				
+				from = to;
+			}
+			
+			flush(channel, buffer);
+		}
+		
+		return sums;
+	}
+	
+	private static void flush(FileChannel channel, ByteBuffer buffer)
+		throws IOException
+	{
+		buffer.flip();
+		while(buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+	
+	/**
+	 * The number of chunks used by the last call to {@link #count(Path)}.
+	 */
+	public int numChunks()
+	{
+		return numChunks;
+	}
+	
+	/**
+	 * The largest estimated memory of a chunk in the last call to 
+	 * {@link #count(Path)}, in bytes.
+	 */
+	public long peakMemory()
+	{
+		return peak;
+	}
+}
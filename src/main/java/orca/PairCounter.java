@@ -0,0 +1,82 @@
+package orca;
+
+/**
+ * Counts unordered pairs of node indices. The pairs are packed into a single 
+ * long key, so adding and looking up a pair does not allocate.
+ * 
+ * The counter may be divided into shards, by the smallest node of the pair. 
+ * Pairs that go to different shards can be added concurrently.
+ * 
+ * @author Peter
+ *
+ */
+final class PairCounter
+{
+	private final LongCounter[] shards;
+	private final int[] shardOf;
+	
+	public PairCounter()
+	{
+		this(16);
+	}
+	
+	public PairCounter(long expected)
+	{
+		shards = new LongCounter[]{new LongCounter(expected)};
+		shardOf = null;
+	}
+	
+	/**
+	 * @param shardOf For each node, the shard of the pairs of which it is the 
+	 * 	smallest node.
+	 * @param numShards
+	 */
+	public PairCounter(int[] shardOf, int numShards)
+	{
+		shards = new LongCounter[numShards];
+		for(int i = 0; i < numShards; i++)
+			shards[i] = new LongCounter();
+		
+		this.shardOf = shardOf;
+	}
+	
+	public void add(int a, int b)
+	{
+		if(a > b) { int t = a; a = b; b = t; }
+		
+		shard(a).add(HashAdjacency.pack(a, b));
+	}
+	
+	/**
+	 * How often the pair {a, b} has been added (in either order).
+	 */
+	public int frequency(int a, int b)
+	{
+		if(a > b) { int t = a; a = b; b = t; }
+		
+		return shard(a).get(HashAdjacency.pack(a, b));
+	}
+	
+	public int size()
+	{
+		int size = 0;
+		for(LongCounter shard : shards)
+			size += shard.size();
+		
+		return size;
+	}
+	
+	public long memory()
+	{
+		long memory = shardOf == null ? 0 : 4L * shardOf.length;
+		for(LongCounter shard : shards)
+			memory += shard.memory();
+		
+		return memory;
+	}
+	
+	private LongCounter shard(int smallest)
+	{
+		return shardOf == null ? shards[0] : shards[shardOf[smallest]];
+	}
+}
@@ -0,0 +1,67 @@
+package orca;
+
+/**
+ * A reusable array of counters, one per node, that is reset by clearing only 
+ * the entries that were touched since the last reset. This makes the cost of
+ * a reset proportional to the size of the local neighborhood that was 
+ * counted, rather than to the size of the graph.
+ * 
+ * Not thread-safe: each worker should have its own.
+ * 
+ * @author Peter
+ *
+ */
+final class Scratch
+{
+	private final int[] counts;
+	private final int[] touched;
+	private int numTouched = 0;
+	
+	/**
+	 * @param size The number of nodes in the graph.
+	 */
+	public Scratch(int size)
+	{
+		counts = new int[size];
+		touched = new int[size];
+	}
+	
+	public void increment(int node)
+	{
+		if(counts[node]++ == 0)
+			touched[numTouched++] = node;
+	}
+	
+	public int get(int node)
+	{
+		return counts[node];
+	}
+	
+	/**
+	 * The number of nodes with a nonzero count.
+	 */
+	public int numTouched()
+	{
+		return numTouched;
+	}
+	
+	/**
+	 * The i-th node with a nonzero count, in the order they were first 
+	 * incremented.
+	 */
+	public int touched(int i)
+	{
+		return touched[i];
+	}
+	
+	/**
+	 * Sets all counts back to zero.
+	 */
+	public void clear()
+	{
+		for(int i = 0; i < numTouched; i++)
+			counts[touched[i]] = 0;
+		
+		numTouched = 0;
+	}
+}
@@ -0,0 +1,53 @@
+package orca;
+
+/**
+ * Answers adjacency queries by binary search over the shorter of the two 
+ * sorted neighbor lists. 
+ * 
+ * @author Peter
+ *
+ */
+final class SortedAdjacency implements Adjacency
+{
+	private final int[] offsets;
+	private final int[] targets;
+	
+	public SortedAdjacency(OrcaGraph graph)
+	{
+		this.offsets = graph.offsets();
+		this.targets = graph.targets();
+	}
+	
+	@Override
+	public boolean connected(int a, int b)
+	{
+		if(offsets[a + 1] - offsets[a] > offsets[b + 1] - offsets[b])
+		{
+			int t = a;
+			a = b;
+			b = t;
+		}
+		
+		int lo = offsets[a], hi = offsets[a + 1] - 1;
+		while(lo <= hi)
+		{
+			int mid = (lo + hi) >>> 1;
+			int value = targets[mid];
+			
+			if(value < b)
+				lo = mid + 1;
+			else if(value > b)
+				hi = mid - 1;
+			else
+				return true;
+		}
+		
+		return false;
+	}
+	
+	@Override
+	public long memory()
+	{
+		return 0;
+	}
+}
@@ -0,0 +1,189 @@
+package orca;
+
+import java.util.Arrays;
+
+/**
+ * The number of triangles on each link of a graph, stored in a flat array 
+ * aligned with the CSR structure of the graph: the count of the link from 
+ * node i to its index-th neighbor is at offsets[i] + index. 
+ * 
+ * Each undirected link is intersected once, by the endpoint with the smaller
+ * degree (ties broken by index), and the result is written to both 
+ * directions. 
+ * 
+ * @author Peter
+ *
+ */
+public final class Triangles
+{
+	private final int[] offsets;
+	private final int[] targets;
+	
+	private final int[] counts;
+	
+	Triangles(OrcaGraph graph)
+	{
+		this.offsets = graph.offsets();
+		this.targets = graph.targets();
+		
+		counts = new int[targets.length];
+	}
+	
+	/**
+	 * Wraps precomputed counts, aligned with the targets of the graph.
+	 */
+	Triangles(OrcaGraph graph, int[] counts)
+	{
+		this.offsets = graph.offsets();
+		this.targets = graph.targets();
+		
+		if(counts.length != targets.length)
+			throw new IllegalArgumentException("Number of counts ("+counts.length+") does not match the number of targets ("+targets.length+").");
+		
+		this.counts = counts;
+	}
+	
+	/**
+	 * Whether these counts belong to the given graph.
+	 */
+	boolean matches(OrcaGraph graph)
+	{
+		if(offsets == graph.offsets() && targets == graph.targets())
+			return true;
+		
+		return Arrays.equals(offsets, graph.offsets()) && Arrays.equals(targets, graph.targets());
+	}
+	
+	/**
+	 * Counts the triangles on all links of the given graph.
+	 */
+	public static Triangles of(OrcaGraph graph)
+	{
+		Triangles triangles = new Triangles(graph);
+		for (int u = 0; u < graph.size(); u++)
+			triangles.compute(u);
+		
+		return triangles;
+	}
+	
+	/**
+	 * Maps triangle counts computed on a relabeled graph back to the original
+	 * graph.
+	 * 
+	 * @param relabeled The counts for the relabeled graph.
+	 * @param original
+	 * @param newIndex For each node of the original graph, its index in the 
+	 * 	relabeled graph.
+	 */
+	static Triangles restore(Triangles relabeled, OrcaGraph original, int[] newIndex)
+	{
+		Triangles triangles = new Triangles(original);
+		
+		for (int i = 0; i < original.size(); i++)
+		{
+			int ri = newIndex[i];
+			for (int e = triangles.offsets[i]; e < triangles.offsets[i + 1]; e++)
+			{
+				int re = Arrays.binarySearch(relabeled.targets, 
+						relabeled.offsets[ri], relabeled.offsets[ri + 1], 
+						newIndex[triangles.targets[e]]);
+				triangles.counts[e] = relabeled.counts[re];
+			}
+		}
+		
+		return triangles;
+	}
+	
+	/**
+	 * The number of triangles on the link between the given node and its 
+	 * index-th neighbor.
+	 */
+	public int count(int node, int index)
+	{
+		return counts[offsets[node] + index];
+	}
+	
+	/**
+	 * The number of triangles that the given node is part of.
+	 */
+	public long count(int node)
+	{
+		long sum = 0;
+		for (int e = offsets[node]; e < offsets[node + 1]; e++)
+			sum += counts[e];
+		
+		return sum / 2;
+	}
+	
+	/**
+	 * The local clustering coefficient of the given node: the fraction of the
+	 * pairs of its neighbors that are connected. This is 0 for nodes with 
+	 * fewer than two neighbors.
+	 */
+	public double clustering(int node)
+	{
+		long degree = offsets[node + 1] - offsets[node];
+		if(degree < 2)
+			return 0.0;
+		
+		return count(node) / (degree * (degree - 1) / 2.0);
+	}
+	
+	/**
+	 * The counts of all links, aligned with the targets of the graph. The 
+	 * returned array is not a copy, and should not be modified.
+	 */
+	int[] counts()
+	{
+		return counts;
+	}
+	
+	/**
+	 * An estimate of the cost of {@link #compute(int)} for node u.
+	 */
+	long cost(int u)
+	{
+		long cost = 1;
+		for (int e = offsets[u]; e < offsets[u + 1]; e++)
+			if(owns(u, targets[e]))
+				cost += degree(u) + degree(targets[e]);
+		
+		return cost;
+	}
+	
+	/**
+	 * Counts the triangles on the links that node u owns. Different nodes 
+	 * can be counted concurrently.
+	 */
+	void compute(int u)
+	{
+		for (int e = offsets[u]; e < offsets[u + 1]; e++)
+		{
+			int v = targets[e];
+			if(! owns(u, v))
+				continue;
+			
+			int count = Orca.overlap(
+					targets, offsets[u], offsets[u + 1], 
+					targets, offsets[v], offsets[v + 1]);
+			
+			counts[e] = count;
+			counts[Arrays.binarySearch(targets, offsets[v], offsets[v + 1], u)] = count;
+		}
+	}
+	
+	/**
+	 * Whether the link between u and v is counted by u: u has the smaller 
+	 * degree, or the smaller index if the degrees are equal.
+	 */
+	private boolean owns(int u, int v)
+	{
+		int du = degree(u), dv = degree(v);
+		return du < dv || (du == dv && u < v);
+	}
+	
+	private int degree(int node)
+	{
+		return offsets[node + 1] - offsets[node];
+	}
+}
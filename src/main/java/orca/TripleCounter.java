@@ -0,0 +1,143 @@
+package orca;
+
+/**
+ * Counts unordered triples of node indices, without allocating per triple.
+ * 
+ * If all node indices fit in 21 bits, the sorted triple is packed into a 
+ * single long key. For larger graphs, a two-level key is used: the first two 
+ * nodes of the sorted triple are mapped to an integer id, which is packed 
+ * together with the third node. 
+ * 
+ * The counter may be divided into shards, by the smallest node of the triple.
+ * Triples that go to different shards can be added concurrently.
+ * 
+ * @author Peter
+ *
+ */
+final class TripleCounter
+{
+	private static final int BITS = 21;
+	private static final long MASK = (1L << BITS) - 1;
+	
+	/**
+	 * The largest graph size for which the triples are packed into one long. 
+	 */
+	static final int NARROW_SIZE = 1 << BITS;
+	
+	private final boolean narrow;
+	
+	private final LongCounter[] counters;
+	private final int[] shardOf;
+	
+	// * First level of the two-level keys: id of the first two nodes
+	private final LongCounter[] prefixes;
+	private final int[] nextPrefix;
+	
+	/**
+	 * @param size The number of nodes in the graph.
+	 */
+	public TripleCounter(int size)
+	{
+		this(size, 16);
+	}
+	
+	/**
+	 * @param size The number of nodes in the graph.
+	 * @param expected The expected number of distinct triples.
+	 */
+	public TripleCounter(int size, long expected)
+	{
+		this(size, null, 1, expected);
+	}
+	
+	/**
+	 * @param size The number of nodes in the graph.
+	 * @param shardOf For each node, the shard of the triples of which it is 
+	 * 	the smallest node.
+	 * @param numShards
+	 */
+	public TripleCounter(int size, int[] shardOf, int numShards)
+	{
+		this(size, shardOf, numShards, 16);
+	}
+	
+	private TripleCounter(int size, int[] shardOf, int numShards, long expected)
+	{
+		narrow = size <= NARROW_SIZE;
+		this.shardOf = shardOf;
+		
+		counters = new LongCounter[numShards];
+		prefixes = narrow ? null : new LongCounter[numShards];
+		nextPrefix = new int[numShards];
+		
+		for(int i = 0; i < numShards; i++)
+		{
+			counters[i] = new LongCounter(expected);
+			if(! narrow)
+				prefixes[i] = new LongCounter();
+			nextPrefix[i] = 1;
+		}
+	}
+	
+	public void add(int a, int b, int c)
+	{
+		// * sort the triple
+		if(a > b) { int t = a; a = b; b = t; }
+		if(b > c) { int t = b; b = c; c = t; }
+		if(a > b) { int t = a; a = b; b = t; }
+		
+		int shard = shardOf == null ? 0 : shardOf[a];
+		
+		if(narrow)
+		{
+			counters[shard].add(((long) a << (2 * BITS)) | ((long) b << BITS) | c);
+			return;
+		}
+		
+		long prefixKey = HashAdjacency.pack(a, b);
+		int prefix = prefixes[shard].get(prefixKey);
+		if(prefix == 0)
+			prefixes[shard].add(prefixKey, prefix = nextPrefix[shard]++);
+		
+		counters[shard].add(HashAdjacency.pack(prefix, c));
+	}
+	
+	/**
+	 * How often the triple {a, b, c} has been added (in any order).
+	 */
+	public int frequency(int a, int b, int c)
+	{
+		if(a > b) { int t = a; a = b; b = t; }
+		if(b > c) { int t = b; b = c; c = t; }
+		if(a > b) { int t = a; a = b; b = t; }
+		
+		int shard = shardOf == null ? 0 : shardOf[a];
+		
+		if(narrow)
+			return counters[shard].get(((long) a << (2 * BITS)) | ((long) b << BITS) | c);
+		
+		int prefix = prefixes[shard].get(HashAdjacency.pack(a, b));
+		if(prefix == 0)
+			return 0;
+		
+		return counters[shard].get(HashAdjacency.pack(prefix, c));
+	}
+	
+	public int size()
+	{
+		int size = 0;
+		for(LongCounter counter : counters)
+			size += counter.size();
+		
+		return size;
+	}
+	
+	public long memory()
+	{
+		long memory = shardOf == null ? 0 : 4L * shardOf.length;
+		for(int i = 0; i < counters.length; i++)
+			memory += counters[i].memory() + (narrow ? 0 : prefixes[i].memory());
+		
+		return memory;
+	}
+}
@@ -0,0 +1,87 @@
+package orca;
+
+import static nl.peterbloem.kit.Series.series;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.nodes.UGraph;
+import org.nodes.random.RandomGraphs;
+
+public class AdjacencyTest
+{
+	@Test
+	public void testImplementations()
+	{
+		for(int i : series(10))
+		{
+    		UGraph<String> ugraph = RandomGraphs.randomFast(100, 400);
+    		OrcaGraph graph = OrcaGraph.fromUGraph(ugraph);
+    		
+    		List<Adjacency> adjacencies = Arrays.asList(
+    				Adjacency.hashed(graph), 
+    				Adjacency.matrix(graph), 
+    				Adjacency.sorted(graph));
+    		
+    		for(Adjacency adjacency : adjacencies)
+    			for(int a : series(graph.size()))
+    				for(int b : series(graph.size()))
+    					assertEquals(
+    							Arrays.binarySearch(graph.neighbors(a), b) >= 0, 
+    							adjacency.connected(a, b));
+		}
+	}
+	
+	@Test
+	public void testChoice()
+	{
+		// * small graphs get a matrix
+		OrcaGraph small = OrcaGraph.fromUGraph(RandomGraphs.randomFast(100, 400));
+		assertTrue(Adjacency.forGraph(small) instanceof MatrixAdjacency);
+		
+		// * large, very sparse graphs get binary search
+		int n = 100000;
+		int[] from = new int[n - 1], to = new int[n - 1];
+		for(int i : series(n - 1))
+		{
+			from[i] = i;
+			to[i] = i + 1;
+		}
+		OrcaGraph path = OrcaGraph.fromEdges(n, from, to);
+		assertTrue(Adjacency.forGraph(path) instanceof SortedAdjacency);
+		
+		// * large graphs with higher degree get a hash set
+		from = new int[4 * n];
+		to = new int[4 * n];
+		for(int i : series(4 * n))
+		{
+			from[i] = i % n;
+			to[i] = (i % n + 1 + i / n) % n;
+		}
+		OrcaGraph ring = OrcaGraph.fromEdges(n, from, to);
+		Adjacency adjacency = Adjacency.forGraph(ring);
+		assertTrue(adjacency instanceof HashAdjacency);
+		
+		// * at most 24 bytes per link, including the empty slots
+		assertTrue(adjacency.memory() <= 24 * ring.numLinks());
+	}
+	
+	@Test
+	public void testSameOrbits()
+	{
+		OrcaGraph graph = OrcaGraph.fromUGraph(RandomGraphs.randomFast(40, 200));
+		
+		Orca expected = new Orca(graph, true, Adjacency.hashed(graph));
+		
+		for(Adjacency adjacency : Arrays.asList(Adjacency.matrix(graph), Adjacency.sorted(graph)))
+		{
+			Orca actual = new Orca(graph, true, adjacency);
+			
+			for(int node : series(graph.size()))
+				for(int orbit : series(expected.numOrbits()))
+					assertEquals(expected.orbit(node, orbit), actual.orbit(node, orbit));
+		}
+	}
+}
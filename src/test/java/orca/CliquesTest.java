@@ -0,0 +1,95 @@
+package orca;
+
+import static nl.peterbloem.kit.Series.series;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.nodes.Graphs;
+import org.nodes.UGraph;
+import org.nodes.random.RandomGraphs;
+
+public class CliquesTest
+{
+	@Test
+	public void testCounts()
+	{
+		UGraph<String> ugraph = RandomGraphs.randomFast(60, 600);
+		OrcaGraph graph = OrcaGraph.fromUGraph(ugraph);
+		
+		for(int size : series(1, 6))
+		{
+			Cliques cliques = new Cliques(graph, size);
+			Cliques.Worker worker = cliques.worker();
+			for(int v : series(graph.size()))
+				worker.count(v);
+			
+			long[] counts = cliques.counts();
+			for(int v : series(graph.size()))
+				assertEquals(Orca.complete(v, size, ugraph), counts[v]);
+		}
+	}
+	
+	@Test
+	public void testClique()
+	{
+		// * every node of K_10 is in 9 choose 4 5-cliques
+		OrcaGraph graph = OrcaGraph.fromUGraph(Graphs.k(10, ""));
+		
+		Cliques cliques = new Cliques(graph, 5);
+		Cliques.Worker worker = cliques.worker();
+		for(int v : series(graph.size()))
+			worker.count(v);
+		
+		long[] expected = new long[10];
+		Arrays.fill(expected, 126);
+		assertArrayEquals(expected, cliques.counts());
+	}
+	
+	@Test
+	public void testDegeneracyOrder()
+	{
+		UGraph<String> ugraph = RandomGraphs.randomFast(200, 1000);
+		OrcaGraph graph = OrcaGraph.fromUGraph(ugraph);
+		
+		int[] rank = Cliques.degeneracyOrder(graph.offsets(), graph.targets());
+		
+		// * a permutation
+		int[] sorted = rank.clone();
+		Arrays.sort(sorted);
+		for(int i : series(sorted.length))
+			assertEquals(i, sorted[i]);
+		
+		// * the largest number of later neighbors of any node is the 
+		//   degeneracy, which we compute by repeatedly removing a node of 
+		//   minimal degree
+		int n = graph.size();
+		int[] later = new int[n];
+		for(int v : series(n))
+			for(int u : graph.neighbors(v))
+				if(rank[u] > rank[v])
+					later[v]++;
+		
+		boolean[] removed = new boolean[n];
+		int[] remaining = new int[n];
+		for(int v : series(n))
+			remaining[v] = graph.degree(v);
+		
+		int degeneracy = 0;
+		for(int i : series(n))
+		{
+			int min = -1;
+			for(int v : series(n))
+				if(! removed[v] && (min < 0 || remaining[v] < remaining[min]))
+					min = v;
+			
+			degeneracy = Math.max(degeneracy, remaining[min]);
+			removed[min] = true;
+			for(int u : graph.neighbors(min))
+				remaining[u]--;
+		}
+		
+		assertEquals(degeneracy, Arrays.stream(later).max().getAsInt());
+	}
+}
@@ -0,0 +1,83 @@
+package orca;
+
+import static nl.peterbloem.kit.Series.series;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.nodes.UGraph;
+import org.nodes.random.RandomGraphs;
+
+public class CommonTest
+{
+	/**
+	 * Compares the counts to those of the triple loop over the neighbors of 
+	 * each node. 
+	 */
+	@Test
+	public void testCounts()
+	{
+		// * a random graph with two hubs, so that there are many wedges
+		UGraph<String> ugraph = RandomGraphs.randomFast(150, 900);
+		for(int i : series(1, 100))
+			ugraph.get(0).connect(ugraph.get(i));
+		for(int i : series(50, 150))
+			ugraph.get(149).connect(ugraph.get(i));
+		
+		OrcaGraph graph = OrcaGraph.fromUGraph(ugraph);
+		Adjacency adjacency = Adjacency.forGraph(graph);
+		int n = graph.size();
+		
+		int[] triangles = Triangles.of(graph).counts();
+		
+		PairCounter common2 = new PairCounter();
+		TripleCounter common3 = new TripleCounter(n);
+		
+		Common counter = new Common(graph, triangles, adjacency, common2, common3);
+		for(int a : series(n))
+			counter.count(a);
+		
+		Map<List<Integer>, Integer> pairs = new HashMap<List<Integer>, Integer>();
+		Map<List<Integer>, Integer> triples = new HashMap<List<Integer>, Integer>();
+		
+		for(int x : series(n))
+		{
+			int[] row = graph.neighbors(x);
+			for(int i : series(row.length))
+				for(int j : series(i + 1, row.length))
+				{
+					pairs.merge(Arrays.asList(row[i], row[j]), 1, Integer::sum);
+					
+					for(int k : series(j + 1, row.length))
+					{
+						int links = 0;
+						if(adjacency.connected(row[i], row[j])) links++;
+						if(adjacency.connected(row[i], row[k])) links++;
+						if(adjacency.connected(row[j], row[k])) links++;
+						
+						if(links >= 2)
+							triples.merge(Arrays.asList(row[i], row[j], row[k]), 1, Integer::sum);
+					}
+				}
+		}
+		
+		assertEquals(pairs.size(), common2.size());
+		assertEquals(triples.size(), common3.size());
+		
+		for(Map.Entry<List<Integer>, Integer> entry : pairs.entrySet())
+		{
+			List<Integer> p = entry.getKey();
+			assertEquals((int) entry.getValue(), common2.frequency(p.get(1), p.get(0)));
+		}
+		
+		for(Map.Entry<List<Integer>, Integer> entry : triples.entrySet())
+		{
+			List<Integer> t = entry.getKey();
+			assertEquals((int) entry.getValue(), common3.frequency(t.get(2), t.get(0), t.get(1)));
+		}
+	}
+}
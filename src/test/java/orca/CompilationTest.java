@@ -0,0 +1,120 @@
+package orca;
+
+import static org.junit.Assert.*;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Checks that the kernels of the 5-node counting are small enough to be
+ * compiled by the JIT: HotSpot does not compile methods with more than
+ * 8000 bytes of bytecode (-XX:HugeMethodLimit). The sizes are read from the
+ * class file, so the check does not depend on JIT timing.
+ */
+public class CompilationTest
+{
+	private static final int HUGE_METHOD_LIMIT = 8000;
+	
+	private static final List<String> KERNELS = Arrays.asList(
+			"small", "outer", "innerRow", "innerTriples", "solve");
+	
+	@Test
+	public void testKernelSizes() throws IOException
+	{
+		Map<String, Integer> sizes = codeSizes(Count5.class);
+		
+		for(String kernel : KERNELS)
+			assertTrue("Kernel " + kernel + " not found.", sizes.containsKey(kernel));
+		
+		for(Map.Entry<String, Integer> method : sizes.entrySet())
+			assertTrue("Method " + method.getKey() + " has " + method.getValue() + " bytes of bytecode.",
+					method.getValue() <= HUGE_METHOD_LIMIT);
+	}
+	
+	/**
+	 * The bytecode size of each method of a class (the largest, for
+	 * overloaded methods), from its class file.
+	 */
+	private static Map<String, Integer> codeSizes(Class<?> type) throws IOException
+	{
+		Map<String, Integer> sizes = new LinkedHashMap<String, Integer>();
+		
+		try(DataInputStream in = new DataInputStream(
+				type.getResourceAsStream(type.getSimpleName() + ".class")))
+		{
+			in.readInt(); // magic
+			in.readInt(); // version
+			
+			// * the constant pool, keeping only the strings
+			int poolSize = in.readUnsignedShort();
+			String[] strings = new String[poolSize];
+			for(int i = 1; i < poolSize; i++)
+			{
+				int tag = in.readUnsignedByte();
+				switch(tag)
+				{
+					case 1: strings[i] = in.readUTF(); break;
+					case 7: case 8: case 16: case 19: case 20: in.skipBytes(2); break;
+					case 15: in.skipBytes(3); break;
+					case 3: case 4: case 9: case 10: case 11: case 12: case 17: case 18: in.skipBytes(4); break;
+					case 5: case 6: in.skipBytes(8); i++; break;
+					default: throw new IOException("Unknown constant pool tag " + tag + ".");
+				}
+			}
+			
+			in.skipBytes(6); // access, this, super
+			in.skipBytes(2 * in.readUnsignedShort()); // interfaces
+			
+			int numFields = in.readUnsignedShort();
+			for(int i = 0; i < numFields; i++)
+			{
+				in.skipBytes(6);
+				skipAttributes(in);
+			}
+			
+			int numMethods = in.readUnsignedShort();
+			for(int i = 0; i < numMethods; i++)
+			{
+				in.skipBytes(2);
+				String name = strings[in.readUnsignedShort()];
+				in.skipBytes(2);
+				
+				int numAttributes = in.readUnsignedShort();
+				for(int a = 0; a < numAttributes; a++)
+				{
+					String attribute = strings[in.readUnsignedShort()];
+					int length = in.readInt();
+					
+					if(attribute.equals("Code"))
+					{
+						in.skipBytes(4); // max stack, max locals
+						int size = in.readInt();
+						in.skipBytes(length - 8);
+						
+						Integer other = sizes.get(name);
+						sizes.put(name, other == null ? size : Math.max(size, other));
+					} else
+						in.skipBytes(length);
+				}
+			}
+		}
+		
+		return sizes;
+	}
+	
+	private static void skipAttributes(DataInputStream in) throws IOException
+	{
+		int numAttributes = in.readUnsignedShort();
+		for(int a = 0; a < numAttributes; a++)
+		{
+			in.skipBytes(2);
+			in.skipBytes(in.readInt());
+		}
+	}
+}
@@ -0,0 +1,177 @@
+package orca;
+
+import static nl.peterbloem.kit.Series.series;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.nodes.Graphs;
+import org.nodes.UGraph;
+import org.nodes.random.RandomGraphs;
+
+public class CompressedGraphTest
+{
+	@Test
+	public void testRows()
+	{
+		UGraph<String> ugraph = RandomGraphs.randomFast(200, 1500);
+		for(int i : series(1, 150))
+			ugraph.get(0).connect(ugraph.get(i));
+		
+		OrcaGraph graph = OrcaGraph.fromUGraph(ugraph);
+		
+		// * small pages, so that rows and varints cross page boundaries
+		CompressedGraph.Builder builder = new CompressedGraph.Builder(graph.size(), 4);
+		for(int i : series(graph.size()))
+			builder.add(graph.neighbors(i));
+		
+		for(CompressedGraph compressed : new CompressedGraph[]{
+				CompressedGraph.of(graph), builder.build()})
+		{
+			assertEquals(graph.size(), compressed.size());
+			assertEquals(graph.numLinks(), compressed.numLinks());
+			
+			for(CompressedGraph g : new CompressedGraph[]{compressed, compressed.withTriangles()})
+			{
+				Triangles triangles = Triangles.of(graph);
+				CompressedGraph.Cursor cursor = g.cursor();
+				
+				for(int i : series(graph.size()))
+				{
+					assertEquals(graph.degree(i), g.degree(i));
+					
+					cursor.start(i);
+					for(int index : series(graph.degree(i)))
+					{
+						assertTrue(cursor.hasNext());
+						assertEquals(graph.neighbor(i, index), cursor.next());
+						
+						if(g.hasTriangles())
+							assertEquals(triangles.count(i, index), cursor.triangles());
+					}
+					assertFalse(cursor.hasNext());
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testCopyCursor()
+	{
+		CompressedGraph graph = CompressedGraph.of(OrcaGraph.fromUGraph(Graphs.k(6, "")));
+		
+		CompressedGraph.Cursor a = graph.cursor(), b = graph.cursor();
+		a.start(2);
+		assertEquals(0, a.next());
+		
+		b.set(a);
+		assertEquals(1, b.next());
+		assertEquals(3, b.next());
+		assertEquals(1, a.next());
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testUnsorted()
+	{
+		new CompressedGraph.Builder(3).add(new int[]{2, 1});
+	}
+	
+	@Test(expected=IllegalStateException.class)
+	public void testMissingRows()
+	{
+		new CompressedGraph.Builder(3).add(new int[]{1}).build();
+	}
+	
+	@Test
+	public void testOrbits()
+	{
+		OrcaGraph graph = OrcaGraph.fromUGraph(RandomGraphs.randomFast(150, 900));
+		
+		Orca expected = new Orca(graph, false);
+		
+		for(int threads : new int[]{1, 3})
+		{
+			Orca actual = new Orca(CompressedGraph.of(graph), new Orca.Options().threads(threads));
+			
+			for(int node : series(graph.size()))
+				for(int orbit : series(expected.numOrbits()))
+					assertEquals(expected.orbit(node, orbit), actual.orbit(node, orbit));
+		}
+	}
+	
+	@Test
+	public void testMemory()
+	{
+		// * A grid with diagonals, numbered row by row, so that neighbors are 
+		//   close together
+		int side = 100;
+		int[] from = new int[4 * side * side], to = new int[4 * side * side];
+		int e = 0;
+		for(int i : series(side))
+			for(int j : series(side))
+			{
+				int v = i * side + j;
+				if(i + 1 < side)
+				{
+					from[e] = v; to[e++] = v + side;
+					if(j + 1 < side) 
+					{
+						from[e] = v; to[e++] = v + side + 1;
+					}
+					if(j > 0)
+					{
+						from[e] = v; to[e++] = v + side - 1;
+					}
+				}
+				if(j + 1 < side)
+				{
+					from[e] = v; to[e++] = v + 1;
+				}
+			}
+		
+		OrcaGraph graph = OrcaGraph.fromEdges(side * side, 
+				Arrays.copyOf(from, e), Arrays.copyOf(to, e));
+		
+		CompressedGraph compressed = CompressedGraph.of(graph).withTriangles();
+		
+		assertTrue(compressed.memory() < 8 * compressed.numLinks());
+	}
+	
+	@Test
+	public void testCountingMemory()
+	{
+		// * A band: every node is linked to the next 20
+		int n = 5000, band = 20;
+		int[] from = new int[n * band], to = new int[n * band];
+		int e = 0;
+		for(int i : series(n))
+			for(int j : series(1, band + 1))
+				if(i + j < n)
+				{
+					from[e] = i; to[e++] = i + j;
+				}
+		
+		OrcaGraph graph = OrcaGraph.fromEdges(n, 
+				Arrays.copyOf(from, e), Arrays.copyOf(to, e));
+		
+		CompressedGraph compressed = CompressedGraph.of(graph).withTriangles();
+		
+		// * the graph, the clique counting and the scratch state of one worker
+		Cliques cliques = new Cliques(compressed, 4);
+		long memory = compressed.memory() + cliques.memory() + 
+				new CursorCount4(compressed, new long[n]).memory();
+		
+		assertTrue(memory < 8 * compressed.numLinks());
+		
+		Cliques expected = new Cliques(graph, 4);
+		Cliques.Worker expectedWorker = expected.worker(), worker = cliques.worker();
+		for(int i : series(n))
+		{
+			expectedWorker.count(i);
+			worker.count(i);
+		}
+		
+		assertArrayEquals(expected.counts(), cliques.counts());
+	}
+}
@@ -0,0 +1,135 @@
+package orca;
+
+import static nl.peterbloem.kit.Series.series;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import nl.peterbloem.kit.FrequencyModel;
+
+public class CounterTest
+{
+	@Test
+	public void testPairs()
+	{
+		PairCounter counter = new PairCounter();
+		
+		counter.add(1, 2);
+		counter.add(2, 1);
+		counter.add(0, 2);
+		
+		assertEquals(2, counter.frequency(1, 2));
+		assertEquals(2, counter.frequency(2, 1));
+		assertEquals(1, counter.frequency(2, 0));
+		assertEquals(0, counter.frequency(0, 1));
+		assertEquals(2, counter.size());
+	}
+	
+	@Test
+	public void testTriples()
+	{
+		// * packed and two-level keys
+		for(int size : new int[]{100, TripleCounter.NARROW_SIZE + 1})
+		{
+			TripleCounter counter = new TripleCounter(size);
+			
+			counter.add(1, 2, 3);
+			counter.add(3, 1, 2);
+			counter.add(2, 3, 1);
+			counter.add(0, 2, 3);
+			
+			assertEquals(3, counter.frequency(1, 2, 3));
+			assertEquals(3, counter.frequency(3, 2, 1));
+			assertEquals(1, counter.frequency(3, 2, 0));
+			assertEquals(0, counter.frequency(0, 1, 2));
+			assertEquals(2, counter.size());
+		}
+		
+		TripleCounter wide = new TripleCounter(Integer.MAX_VALUE);
+		wide.add(Integer.MAX_VALUE - 1, 5, 3_000_000);
+		assertEquals(1, wide.frequency(3_000_000, Integer.MAX_VALUE - 1, 5));
+		assertEquals(0, wide.frequency(3_000_000, Integer.MAX_VALUE - 1, 4));
+	}
+	
+	@Test
+	public void testShards()
+	{
+		int n = 300;
+		int[] shardOf = new int[n];
+		for(int i : series(n))
+			shardOf[i] = i / 70;
+		
+		for(int size : new int[]{n, TripleCounter.NARROW_SIZE + 1})
+		{
+			PairCounter pairs = new PairCounter(), 
+			            shardedPairs = new PairCounter(shardOf, 5);
+			TripleCounter triples = new TripleCounter(size), 
+			              shardedTriples = new TripleCounter(size, shardOf, 5);
+			
+			Random random = new Random(0);
+			for(int i : series(20000))
+			{
+				int a = random.nextInt(n), b = random.nextInt(n), c = random.nextInt(n);
+				
+				pairs.add(a, b);
+				shardedPairs.add(b, a);
+				triples.add(a, b, c);
+				shardedTriples.add(c, a, b);
+			}
+			
+			assertEquals(pairs.size(), shardedPairs.size());
+			assertEquals(triples.size(), shardedTriples.size());
+			
+			for(int i : series(20000))
+			{
+				int a = random.nextInt(n), b = random.nextInt(n), c = random.nextInt(n);
+				
+				assertEquals(pairs.frequency(a, b), shardedPairs.frequency(a, b));
+				assertEquals(triples.frequency(a, b, c), shardedTriples.frequency(b, c, a));
+			}
+		}
+	}
+	
+	@Test
+	public void testRandom()
+	{
+		Random random = new Random(0);
+		LongCounter counter = new LongCounter();
+		FrequencyModel<Long> model = new FrequencyModel<Long>();
+		
+		for(int i : series(100000))
+		{
+			long key = random.nextInt(20000) * 31L;
+			counter.add(key);
+			model.add(key);
+		}
+		
+		for(long key : series(20000))
+			assertEquals((int) model.frequency(key * 31), counter.get(key * 31));
+	}
+	
+	/**
+	 * Compares the memory use of the triple counter to that of the 
+	 * FrequencyModel with boxed keys that stage 1 of Orca used before. Its 
+	 * hash map takes, with compressed references, an entry (32 bytes), a key
+	 * object with three ints (24 bytes) and a boxed count (16 bytes) per 
+	 * triple, and a reference per slot of a table with load factor 0.75.
+	 */
+	@Test
+	public void testMemory()
+	{
+		int n = 1000000, triples = 1000000;
+		Random random = new Random(0);
+		
+		TripleCounter counter = new TripleCounter(n);
+		for(int i : series(triples))
+			counter.add(random.nextInt(n), random.nextInt(n), random.nextInt(n));
+		
+		long slots = Long.highestOneBit(4L * counter.size() / 3 - 1) << 1;
+		long boxed = (32 + 24 + 16) * (long) counter.size() + 4 * slots;
+		
+		assertTrue(counter.memory() * 3 < boxed);
+	}
+}
@@ -0,0 +1,104 @@
+package orca;
+
+import static nl.peterbloem.kit.Series.series;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+import org.nodes.random.RandomGraphs;
+
+public class EdgeListTest
+{
+	private static OrcaGraph parse(String text)
+		throws IOException
+	{
+		return EdgeList.read(Channels.newChannel(
+				new ByteArrayInputStream(text.getBytes(StandardCharsets.US_ASCII))));
+	}
+	
+	@Test
+	public void testFormat()
+		throws IOException
+	{
+		OrcaGraph graph = parse(
+				"# a comment\n" + 
+				"0 1\n" + 
+				"1\t2 0.5\n" +
+				"\n" +
+				"% another comment\n" +
+				"2  0\r\n" +
+				"1 0\n" +   // duplicate
+				"3 3\n" +   // self-loop
+				"  3 2");
+		
+		assertEquals(4, graph.size());
+		assertEquals(3, graph.numLinks() - 1);
+		assertArrayEquals(new int[]{0, 1, 3}, graph.neighbors(2));
+		assertArrayEquals(new int[]{2}, graph.neighbors(3));
+	}
+	
+	@Test(expected=IOException.class)
+	public void testSingleIndex()
+		throws IOException
+	{
+		parse("0 1\n2\n");
+	}
+	
+	@Test(expected=IOException.class)
+	public void testNotANumber()
+		throws IOException
+	{
+		parse("0 1\na b\n");
+	}
+	
+	@Test(expected=IOException.class)
+	public void testTooLarge()
+		throws IOException
+	{
+		parse("0 123456789012345678901234567890\n");
+	}
+	
+	@Test
+	public void testFiles()
+		throws IOException
+	{
+		OrcaGraph graph = OrcaGraph.fromUGraph(RandomGraphs.randomFast(2000, 20000));
+		
+		StringBuilder text = new StringBuilder();
+		for(int i : series(graph.size()))
+			for(int j : graph.neighbors(i))
+				if(i < j)
+					text.append(i).append('\t').append(j).append('\n');
+		byte[] bytes = text.toString().getBytes(StandardCharsets.US_ASCII);
+		
+		Path plain = Files.createTempFile("orca", ".txt"), gzipped = Files.createTempFile("orca", ".txt.gz");
+		try {
+			Files.write(plain, bytes);
+			try(OutputStream out = new GZIPOutputStream(Files.newOutputStream(gzipped)))
+			{
+				out.write(bytes);
+			}
+			
+			for(Path file : new Path[]{plain, gzipped})
+			{
+				OrcaGraph read = EdgeList.read(file);
+				
+				assertEquals(graph.numLinks(), read.numLinks());
+				for(int i : series(read.size()))
+					assertArrayEquals(graph.neighbors(i), read.neighbors(i));
+			}
+		} finally
+		{
+			Files.delete(plain);
+			Files.delete(gzipped);
+		}
+	}
+}
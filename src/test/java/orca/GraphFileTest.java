@@ -0,0 +1,197 @@
+package orca;
+
+import static nl.peterbloem.kit.Series.series;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Test;
+import org.nodes.random.RandomGraphs;
+
+public class GraphFileTest
+{
+	@Test
+	public void testRoundTrip()
+		throws IOException
+	{
+		OrcaGraph graph = OrcaGraph.fromUGraph(RandomGraphs.randomFast(200, 1000));
+		Triangles triangles = Triangles.of(graph);
+		
+		Path file = Files.createTempFile("orca", ".graph");
+		try {
+			for(Triangles t : new Triangles[]{null, triangles})
+			{
+				GraphFile.write(graph, t, file);
+				GraphFile read = GraphFile.read(file);
+				
+				assertEquals(graph.size(), read.graph().size());
+				assertEquals(graph.numLinks(), read.graph().numLinks());
+				for(int i : series(graph.size()))
+					assertArrayEquals(graph.neighbors(i), read.graph().neighbors(i));
+				
+				if(t == null)
+					assertNull(read.triangles());
+				else
+					for(int i : series(graph.size()))
+						for(int index : series(graph.degree(i)))
+							assertEquals(triangles.count(i, index), read.triangles().count(i, index));
+			}
+		} finally
+		{
+			Files.delete(file);
+		}
+	}
+	
+	@Test
+	public void testPrecomputedTriangles()
+		throws IOException
+	{
+		OrcaGraph graph = OrcaGraph.fromUGraph(RandomGraphs.randomFast(100, 500));
+		Orca expected = new Orca(graph, true);
+		
+		Path file = Files.createTempFile("orca", ".graph");
+		try {
+			GraphFile.write(graph, Triangles.of(graph), file);
+			GraphFile read = GraphFile.read(file);
+			
+			for(Orca.Relabeling relabeling : Orca.Relabeling.values())
+			{
+				Orca actual = new Orca(read.graph(), true, 
+						new Orca.Options().triangles(read.triangles()).relabel(relabeling));
+				
+				for(int node : series(graph.size()))
+					for(int orbit : series(expected.numOrbits()))
+						assertEquals(expected.orbit(node, orbit), actual.orbit(node, orbit));
+			}
+		} finally
+		{
+			Files.delete(file);
+		}
+	}
+	
+	@Test
+	public void testMapped()
+		throws IOException
+	{
+		OrcaGraph graph = OrcaGraph.fromUGraph(RandomGraphs.randomFast(200, 1000));
+		Orca expected = new Orca(graph, false);
+		
+		Path file = Files.createTempFile("orca", ".graph");
+		try {
+			for(Triangles t : new Triangles[]{null, Triangles.of(graph)})
+			{
+				GraphFile.write(graph, t, file);
+				MappedGraph mapped = MappedGraph.open(file);
+				
+				assertEquals(t != null, mapped.hasTriangles());
+				
+				for(int threads : new int[]{1, 4})
+				{
+					Orca actual = new Orca(mapped, new Orca.Options().threads(threads));
+					
+					for(int node : series(graph.size()))
+						for(int orbit : series(expected.numOrbits()))
+							assertEquals(expected.orbit(node, orbit), actual.orbit(node, orbit));
+				}
+			}
+		} finally
+		{
+			Files.delete(file);
+		}
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testWrongTriangles()
+	{
+		OrcaGraph graph = OrcaGraph.fromUGraph(RandomGraphs.randomFast(20, 40));
+		OrcaGraph other = OrcaGraph.fromUGraph(RandomGraphs.randomFast(20, 40));
+		
+		new Orca(graph, false, new Orca.Options().triangles(Triangles.of(other)));
+	}
+	
+	@Test(expected=IOException.class)
+	public void testNoGraphFile()
+		throws IOException
+	{
+		Path file = Files.createTempFile("orca", ".graph");
+		try {
+			Files.write(file, "0 1\n1 2\n".getBytes(StandardCharsets.US_ASCII));
+			GraphFile.read(file);
+		} finally
+		{
+			Files.delete(file);
+		}
+	}
+	
+	@Test
+	public void testInvalidRows()
+		throws IOException
+	{
+		// * the path 0-1-2, with targets [1], [0, 2], [1]
+		OrcaGraph graph = OrcaGraph.fromEdges(3, new int[]{0, 1}, new int[]{1, 2});
+		
+		// * an out of range, a repeated and an asymmetric target
+		int[][] corruptions = {{0, 7}, {1, 2}, {3, 0}};
+		
+		Path file = Files.createTempFile("orca", ".graph");
+		try {
+			for(int[] corruption : corruptions)
+			{
+				GraphFile.write(graph, null, file);
+				
+				try(FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE))
+				{
+					ByteBuffer value = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+					value.putInt(0, corruption[1]);
+					channel.write(value, GraphFile.HEADER + 4L * (graph.size() + 1 + corruption[0]));
+				}
+				
+				try {
+					GraphFile.read(file);
+					fail("Target "+corruption[0]+" set to "+corruption[1]+" was accepted.");
+				} catch(IOException e) 
+				{
+				}
+			}
+		} finally
+		{
+			Files.delete(file);
+		}
+	}
+	
+	@Test
+	public void testConvert()
+		throws IOException
+	{
+		String text = 
+				"# a comment\n" + 
+				"0 1\n" + 
+				"1\t2 0.5\n" +
+				"\n" +
+				"% another comment\n" +
+				"2 0\r\n" +
+				"  3 2";
+		
+		Path edges = Files.createTempFile("orca", ".txt"), file = Files.createTempFile("orca", ".graph");
+		try {
+			Files.write(edges, text.getBytes(StandardCharsets.US_ASCII));
+			GraphFile.convert(edges, file, true);
+			
+			GraphFile read = GraphFile.read(file);
+			assertEquals(4, read.graph().numLinks());
+			assertEquals(1, read.triangles().count(0, 0));
+			assertEquals(0, read.triangles().count(3, 0));
+		} finally
+		{
+			Files.delete(edges);
+			Files.delete(file);
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package orca;
+
+import static nl.peterbloem.kit.Series.series;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Test;
+import org.nodes.random.RandomGraphs;
+
+public class MainTest
+{
+	@Test
+	public void testRun()
+		throws IOException
+	{
+		OrcaGraph graph = OrcaGraph.fromUGraph(RandomGraphs.randomFast(100, 400));
+		
+		StringBuilder text = new StringBuilder();
+		for(int i : series(graph.size()))
+			for(int j : graph.neighbors(i))
+				text.append(i).append(' ').append(j).append('\n');
+		
+		Path input = Files.createTempFile("orca", ".txt"), 
+		     binary = Files.createTempFile("orca", ".graph"), 
+		     output = Files.createTempFile("orca", ".orbits");
+		try {
+			Files.write(input, text.toString().getBytes(StandardCharsets.US_ASCII));
+			GraphFile.write(graph, Triangles.of(graph), binary);
+			
+			Orca expected = new Orca(graph, true);
+			
+			for(Path in : new Path[]{input, binary})
+			{
+				assertEquals(0, Main.run(new String[]{
+						"-5", "-t", "2", "-r", "bfs", "-o", output.toString(), in.toString()}));
+				
+				List<String> lines = Files.readAllLines(output, StandardCharsets.US_ASCII);
+				assertEquals(graph.size(), lines.size());
+				
+				for(int node : series(graph.size()))
+				{
+					String[] counts = lines.get(node).split(" ");
+					assertEquals(73, counts.length);
+					
+					for(int orbit : series(73))
+						assertEquals(expected.orbit(node, orbit), Long.parseLong(counts[orbit]));
+				}
+			}
+		} finally
+		{
+			Files.delete(input);
+			Files.delete(binary);
+			Files.delete(output);
+		}
+	}
+	
+	@Test
+	public void testColumns()
+		throws IOException
+	{
+		OrcaGraph graph = OrcaGraph.fromUGraph(RandomGraphs.randomFast(100, 400));
+		
+		Path binary = Files.createTempFile("orca", ".graph"), 
+		     output = Files.createTempFile("orca", ".columns");
+		try {
+			GraphFile.write(graph, null, binary);
+			
+			Orca expected = new Orca(graph, false);
+			
+			// * without relabeling, the graph file is counted from the mapping
+			for(String relabeling : new String[]{"degree", "none"})
+			{
+				assertEquals(0, Main.run(new String[]{
+						"-4", "-r", relabeling, "-c", output.toString(), binary.toString()}));
+				
+				OrbitColumns columns = OrbitColumns.open(output);
+				
+				assertEquals(graph.size(), columns.size());
+				for(int node : series(graph.size()))
+					for(int orbit : series(15))
+						assertEquals(expected.orbit(node, orbit), columns.get(node, orbit));
+			}
+		} finally
+		{
+			Files.delete(binary);
+			Files.delete(output);
+		}
+	}
+	
+	@Test
+	public void testGraphlets()
+		throws IOException
+	{
+		OrcaGraph graph = OrcaGraph.fromUGraph(RandomGraphs.randomFast(100, 400));
+		
+		Path binary = Files.createTempFile("orca", ".graph"), 
+		     output = Files.createTempFile("orca", ".graphlets");
+		try {
+			GraphFile.write(graph, null, binary);
+			
+			assertEquals(0, Main.run(new String[]{"-5", "-g", "-o", output.toString(), binary.toString()}));
+			
+			long[] expected = new Orca(graph, true).graphlets();
+			List<String> lines = Files.readAllLines(output, StandardCharsets.US_ASCII);
+			
+			assertEquals(30, lines.size());
+			for(int g : series(30))
+				assertEquals(expected[g], Long.parseLong(lines.get(g)));
+		} finally
+		{
+			Files.delete(binary);
+			Files.delete(output);
+		}
+	}
+	
+	@Test
+	public void testUsage()
+	{
+		assertEquals(1, Main.run(new String[]{}));
+		assertEquals(1, Main.run(new String[]{"-t"}));
+		assertEquals(1, Main.run(new String[]{"-r", "random", "graph.txt"}));
+		assertEquals(1, Main.run(new String[]{"-o", "a", "-c", "b", "graph.txt"}));
+	}
+}
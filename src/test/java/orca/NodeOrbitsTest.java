@@ -0,0 +1,100 @@
+package orca;
+
+import static nl.peterbloem.kit.Series.series;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+import org.nodes.UGraph;
+import org.nodes.random.RandomGraphs;
+
+public class NodeOrbitsTest
+{
+	@Test
+	public void testOrbits()
+		throws IOException
+	{
+		UGraph<String> ugraph = RandomGraphs.randomFast(200, 800);
+		for(int i : series(1, 60))
+			ugraph.get(0).connect(ugraph.get(i * 3));
+		
+		OrcaGraph graph = OrcaGraph.fromUGraph(ugraph);
+		int[] nodes = {150, 0, 17, 5, 17, 199};
+		
+		Path file = Files.createTempFile("orca", ".graph");
+		try {
+			GraphFile.write(graph, null, file);
+			
+			for(boolean count5 : new boolean[]{false, true})
+			{
+				Orca expected = new Orca(graph, count5);
+				
+				for(NodeOrbits actual : new NodeOrbits[]{
+						NodeOrbits.of(graph, count5, nodes), 
+						NodeOrbits.of(file, count5, nodes)})
+				{
+					assertArrayEquals(new int[]{0, 5, 17, 150, 199}, actual.nodes());
+					assertEquals(expected.numOrbits(), actual.numOrbits());
+					
+					for(int node : nodes)
+						for(int orbit : series(expected.numOrbits()))
+						{
+							assertEquals(expected.orbit(node, orbit), actual.orbit(node, orbit));
+							assertEquals(expected.orbit(node, orbit), actual.orbits(node)[orbit]);
+						}
+				}
+			}
+		} finally
+		{
+			Files.delete(file);
+		}
+	}
+	
+	@Test
+	public void testLocal()
+	{
+		// * a long path, with each node also linked to the node two steps on
+		int n = 2000;
+		int[] from = new int[2 * n - 3], to = new int[2 * n - 3];
+		for(int i : series(n - 1))
+		{
+			from[i] = i;
+			to[i] = i + 1;
+		}
+		for(int i : series(n - 2))
+		{
+			from[n - 1 + i] = i;
+			to[n - 1 + i] = i + 2;
+		}
+		
+		OrcaGraph graph = OrcaGraph.fromEdges(n, from, to);
+		Orca expected = new Orca(graph, true);
+		
+		NodeOrbits actual = NodeOrbits.of(graph, true, 1000);
+		
+		// * the nodes within 3 steps: 994 to 1006
+		assertEquals(13, actual.neighborhoodSize());
+		
+		for(int orbit : series(73))
+			assertEquals(expected.orbit(1000, orbit), actual.orbit(1000, orbit));
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testNotCounted()
+	{
+		OrcaGraph graph = OrcaGraph.fromUGraph(RandomGraphs.randomFast(20, 40));
+		
+		NodeOrbits.of(graph, false, 3).orbit(4, 0);
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testOutOfRange()
+	{
+		OrcaGraph graph = OrcaGraph.fromUGraph(RandomGraphs.randomFast(20, 40));
+		
+		NodeOrbits.of(graph, false, 20);
+	}
+}
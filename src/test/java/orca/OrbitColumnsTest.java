@@ -0,0 +1,176 @@
+package orca;
+
+import static nl.peterbloem.kit.Series.series;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+import org.nodes.random.RandomGraphs;
+
+public class OrbitColumnsTest
+{
+	@Test
+	public void testInOrder()
+		throws IOException
+	{
+		// * more nodes than fit in one group
+		OrcaGraph graph = OrcaGraph.fromUGraph(RandomGraphs.randomFast(40000, 80000));
+		Orca expected = new Orca(graph, false);
+		
+		Path file = Files.createTempFile("orca", ".columns");
+		try {
+			try(OrbitColumns.Writer writer = new OrbitColumns.Writer(file, 15, graph.size()))
+			{
+				new Orca(graph, false, new Orca.Options().threads(1).sink(writer));
+			}
+			
+			OrbitColumns columns = OrbitColumns.open(file);
+			assertEquals(4, columns.graphletSize());
+			assertEquals(15, columns.numOrbits());
+			assertEquals(graph.size(), columns.size());
+			
+			check(expected, columns);
+			
+			// * small counts take at most a byte or two
+			assertTrue(Files.size(file) < 2L * 15 * graph.size());
+		} finally
+		{
+			Files.delete(file);
+		}
+	}
+	
+	@Test
+	public void testScattered()
+		throws IOException
+	{
+		OrcaGraph graph = OrcaGraph.fromUGraph(RandomGraphs.randomFast(300, 1500));
+		Orca expected = new Orca(graph, true);
+		
+		Path file = Files.createTempFile("orca", ".columns");
+		try {
+			try(OrbitColumns.Writer writer = new OrbitColumns.Writer(file, 73, graph.size()))
+			{
+				new Orca(graph, true, new Orca.Options()
+						.threads(3)
+						.relabel(Orca.Relabeling.DEGREE)
+						.sink(writer));
+			}
+			
+			OrbitColumns columns = OrbitColumns.open(file);
+			assertEquals(5, columns.graphletSize());
+			
+			check(expected, columns);
+			
+			// * concurrent readers of a file that needs an index per node
+			IntStream.range(0, graph.size()).parallel().forEach(node -> {
+				for(int orbit : series(columns.numOrbits()))
+					assertEquals(expected.orbit(node, orbit), columns.get(node, orbit));
+			});
+		} finally
+		{
+			Files.delete(file);
+		}
+	}
+	
+	@Test
+	public void testWidths()
+		throws IOException
+	{
+		int size = 2 * OrbitColumns.GROUP + 7;
+		long[] scales = {0, 1L << 4, 1L << 12, 1L << 28, 1L << 60};
+		
+		Random random = new Random(7);
+		long[][] rows = new long[size][15];
+		for(int node : series(size))
+			for(int orbit : series(15))
+				rows[node][orbit] = 42 + (long) (random.nextDouble() * scales[orbit % scales.length]);
+		
+		Path file = Files.createTempFile("orca", ".columns");
+		try {
+			// * backwards, so that no group is sequential
+			try(OrbitColumns.Writer writer = new OrbitColumns.Writer(file, 15, size))
+			{
+				for(int node = size - 1; node >= 0; node--)
+					writer.accept(node, rows[node]);
+			}
+			
+			OrbitColumns columns = OrbitColumns.open(file);
+			
+			long[] row = new long[15];
+			for(int node : series(size))
+			{
+				columns.row(node, row);
+				assertArrayEquals(rows[node], row);
+			}
+			
+			for(int orbit : series(15))
+			{
+				long[] column = columns.column(orbit);
+				for(int node : series(size))
+					assertEquals(rows[node][orbit], column[node]);
+			}
+		} finally
+		{
+			Files.delete(file);
+		}
+	}
+	
+	@Test(expected=IOException.class)
+	public void testMissingRows()
+		throws IOException
+	{
+		Path file = Files.createTempFile("orca", ".columns");
+		try {
+			try(OrbitColumns.Writer writer = new OrbitColumns.Writer(file, 15, 3))
+			{
+				writer.accept(0, new long[15]);
+				writer.accept(2, new long[15]);
+			}
+		} finally
+		{
+			Files.delete(file);
+		}
+	}
+	
+	@Test(expected=IOException.class)
+	public void testNoColumnFile()
+		throws IOException
+	{
+		Path file = Files.createTempFile("orca", ".columns");
+		try {
+			Files.write(file, new byte[100]);
+			OrbitColumns.open(file);
+		} finally
+		{
+			Files.delete(file);
+		}
+	}
+	
+	private static void check(Orca expected, OrbitColumns columns)
+	{
+		int size = columns.size(), numOrbits = columns.numOrbits();
+		
+		long[] row = new long[numOrbits];
+		for(int node : series(size))
+		{
+			columns.row(node, row);
+			for(int orbit : series(numOrbits))
+			{
+				assertEquals(expected.orbit(node, orbit), row[orbit]);
+				assertEquals(expected.orbit(node, orbit), columns.get(node, orbit));
+			}
+		}
+		
+		for(int orbit : series(numOrbits))
+		{
+			long[] column = columns.column(orbit);
+			for(int node : series(size))
+				assertEquals(expected.orbit(node, orbit), column[node]);
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package orca;
+
+import static nl.peterbloem.kit.Series.series;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+import org.nodes.random.RandomGraphs;
+
+public class OrbitMatrixTest
+{
+	@Test
+	public void testSlices()
+	{
+		// * three rows per slice
+		OrbitMatrix matrix = OrbitMatrix.allocate(10, 73, 3 * 73 * 8 + 5);
+		
+		for(int node : series(10))
+			for(int orbit : series(73))
+				matrix.set(node, orbit, 1000L * node + orbit);
+		
+		long[] row = new long[73];
+		for(int node : series(10))
+		{
+			matrix.row(node, row);
+			for(int orbit : series(73))
+			{
+				assertEquals(1000L * node + orbit, matrix.get(node, orbit));
+				assertEquals(1000L * node + orbit, row[orbit]);
+			}
+		}
+	}
+	
+	@Test(expected=IndexOutOfBoundsException.class)
+	public void testOrbitRange()
+	{
+		OrbitMatrix.allocate(10, 15).get(1, 15);
+	}
+	
+	@Test
+	public void testFile()
+		throws IOException
+	{
+		OrcaGraph graph = OrcaGraph.fromUGraph(RandomGraphs.randomFast(100, 400));
+		Orca expected = new Orca(graph, true);
+		
+		Path file = Files.createTempFile("orca", ".orbits");
+		try {
+			Orca orca = new Orca(graph, true, new Orca.Options()
+					.orbitFile(file).relabel(Orca.Relabeling.BFS));
+			assertTrue(orca.orbits().mapped());
+			
+			OrbitMatrix read = OrbitMatrix.open(file, false);
+			assertEquals(graph.size(), read.size());
+			assertEquals(73, read.numOrbits());
+			
+			// * the rows are stored in the original order
+			for(int node : series(graph.size()))
+				for(int orbit : series(73))
+					assertEquals(expected.orbit(node, orbit), read.get(node, orbit));
+		} finally
+		{
+			Files.delete(file);
+		}
+	}
+	
+	@Test(expected=IOException.class)
+	public void testNoOrbitFile()
+		throws IOException
+	{
+		Path file = Files.createTempFile("orca", ".orbits");
+		try {
+			Files.write(file, new byte[100]);
+			OrbitMatrix.open(file, false);
+		} finally
+		{
+			Files.delete(file);
+		}
+	}
+}
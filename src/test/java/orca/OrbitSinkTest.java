@@ -0,0 +1,57 @@
+package orca;
+
+import static nl.peterbloem.kit.Series.series;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.nodes.Graphs;
+import org.nodes.UGraph;
+import org.nodes.random.RandomGraphs;
+
+public class OrbitSinkTest
+{
+	@Test
+	public void testSink()
+	{
+		UGraph<String> ugraph = RandomGraphs.randomFast(200, 1000);
+		for(int i : series(1, 80))
+			ugraph.get(0).connect(ugraph.get(i * 2));
+		
+		OrcaGraph graph = OrcaGraph.fromUGraph(ugraph);
+		
+		for(boolean count5 : new boolean[]{false, true})
+		{
+			Orca expected = new Orca(graph, count5);
+			
+			for(int threads : new int[]{1, 3})
+			{
+				long[][] received = new long[graph.size()][];
+				
+				Orca orca = new Orca(graph, count5, new Orca.Options()
+						.threads(threads)
+						.hubDegree(20)
+						.relabel(Orca.Relabeling.DEGREE)
+						.sink((node, counts) -> {
+							assertNull(received[node]);
+							received[node] = counts.clone();
+						}));
+				
+				assertNull(orca.orbits());
+				
+				for(int node : series(graph.size()))
+					for(int orbit : series(expected.numOrbits()))
+						assertEquals(expected.orbit(node, orbit), received[node][orbit]);
+				
+				assertEquals(expected.count(Graphs.k(3, ""), true), orca.count(Graphs.k(3, ""), true));
+			}
+		}
+	}
+	
+	@Test(expected=IllegalStateException.class)
+	public void testNoMatrix()
+	{
+		OrcaGraph graph = OrcaGraph.fromUGraph(RandomGraphs.randomFast(20, 40));
+		
+		new Orca(graph, false, new Orca.Options().sink((node, counts) -> {})).orbit(0, 0);
+	}
+}
@@ -0,0 +1,149 @@
+package orca;
+
+import static nl.peterbloem.kit.Series.series;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.nodes.Graphs;
+import org.nodes.UGraph;
+import org.nodes.ULink;
+import org.nodes.random.RandomGraphs;
+
+public class OrcaGraphTest
+{
+	@Test
+	public void testFromEdges()
+	{
+		// * a triangle, with a duplicate link, a reversed duplicate and a self-loop
+		int[] from = {0, 1, 2, 1, 0, 2};
+		int[] to   = {1, 2, 0, 2, 0, 1};
+
+		OrcaGraph graph = OrcaGraph.fromEdges(4, from, to);
+
+		assertEquals(4, graph.size());
+		assertEquals(3, graph.numLinks());
+
+		assertArrayEquals(new int[]{1, 2}, graph.neighbors(0));
+		assertArrayEquals(new int[]{0, 2}, graph.neighbors(1));
+		assertArrayEquals(new int[]{0, 1}, graph.neighbors(2));
+		assertEquals(0, graph.degree(3));
+	}
+
+	@Test
+	public void testFromCSR()
+	{
+		OrcaGraph graph = OrcaGraph.fromCSR(
+				new int[]{0, 2, 3, 4},
+				new int[]{2, 1, 0, 0});
+
+		assertEquals(3, graph.size());
+		assertEquals(2, graph.numLinks());
+		assertArrayEquals(new int[]{1, 2}, graph.neighbors(0));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testFromCSRAsymmetric()
+	{
+		OrcaGraph.fromCSR(new int[]{0, 1, 1}, new int[]{1});
+	}
+
+	@Test
+	public void testFromUGraph()
+	{
+		UGraph<String> ugraph = RandomGraphs.randomFast(50, 200);
+		OrcaGraph graph = OrcaGraph.fromUGraph(ugraph);
+
+		assertEquals(ugraph.size(), graph.size());
+		assertEquals(ugraph.numLinks(), graph.numLinks());
+
+		for(int i : series(ugraph.size()))
+			assertEquals(ugraph.get(i).degree(), graph.degree(i));
+	}
+
+	@Test
+	public void testSameOrbits()
+	{
+		UGraph<String> ugraph = Graphs.ladder(6, "");
+
+		int[] from = new int[(int)ugraph.numLinks()];
+		int[] to = new int[(int)ugraph.numLinks()];
+
+		int i = 0;
+		for(ULink<String> link : ugraph.links())
+		{
+			from[i] = link.first().index();
+			to[i] = link.second().index();
+			i++;
+		}
+
+		Orca expected = new Orca(ugraph, true);
+		Orca actual = new Orca(OrcaGraph.fromEdges(ugraph.size(), from, to), true);
+
+		for(int node : series(ugraph.size()))
+			for(int orbit : series(expected.numOrbits()))
+				assertEquals(expected.orbit(node, orbit), actual.orbit(node, orbit));
+	}
+	
+	@Test
+	public void testRelabel()
+	{
+		OrcaGraph graph = OrcaGraph.fromUGraph(RandomGraphs.randomFast(100, 400));
+		
+		for(int[] newIndex : new int[][]{graph.degreeOrder(), graph.bfsOrder()})
+		{
+			OrcaGraph relabeled = graph.relabel(newIndex);
+			
+			assertEquals(graph.size(), relabeled.size());
+			assertEquals(graph.numLinks(), relabeled.numLinks());
+			
+			Adjacency adjacency = Adjacency.forGraph(relabeled);
+			for(int i : series(graph.size()))
+			{
+				assertEquals(graph.degree(i), relabeled.degree(newIndex[i]));
+				for(int j : graph.neighbors(i))
+					assertTrue(adjacency.connected(newIndex[i], newIndex[j]));
+			}
+		}
+		
+		// * descending degree
+		OrcaGraph relabeled = graph.relabel(graph.degreeOrder());
+		for(int i : series(1, graph.size()))
+			assertTrue(relabeled.degree(i - 1) >= relabeled.degree(i));
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testRelabelNoPermutation()
+	{
+		OrcaGraph.fromEdges(3, new int[]{0}, new int[]{1}).relabel(new int[]{0, 1, 1});
+	}
+	
+	@Test
+	public void testRelabeledOrbits()
+	{
+		UGraph<String> ugraph = RandomGraphs.randomFast(80, 300);
+		OrcaGraph graph = OrcaGraph.fromUGraph(ugraph);
+		
+		Orca expected = new Orca(graph, true);
+		
+		for(Orca.Relabeling relabeling : Orca.Relabeling.values())
+		{
+			Orca.Options options = new Orca.Options().relabel(relabeling);
+			
+			for(Orca actual : new Orca[]{
+					new Orca(graph, true, options), 
+					new Orca(graph, true, options.adjacency(Adjacency.hashed(graph)))})
+			{
+				for(int node : series(graph.size()))
+				{
+					for(int orbit : series(expected.numOrbits()))
+						assertEquals(expected.orbit(node, orbit), actual.orbit(node, orbit));
+					
+					for(int index : series(graph.degree(node)))
+						assertEquals(
+								expected.triangles().count(node, index), 
+								actual.triangles().count(node, index));
+				}
+			}
+		}
+	}
+}
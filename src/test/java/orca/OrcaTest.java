@@ -8,10 +8,12 @@ import static orca.Orca.complete;
 import static org.junit.Assert.*;
 import static org.nodes.random.RandomGraphs.randomFast;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 import org.junit.Test;
@@ -389,6 +391,44 @@ public class OrcaTest
 		assertEquals(2, Orca.overlap(new int[]{0, -1, 11}, new int[]{0, 8, 11}));
 	}
 	
+	@Test
+	public void testOverlapSkewed()
+	{
+		Random random = new Random(0);
+		for(int small : new int[]{0, 1, 3, 20, 100})
+			for(int large : new int[]{1, 50, 1000, 20000})
+			{
+				int range = 4 * Math.max(small, large);
+				int[] a = sorted(random, small, range);
+				int[] b = sorted(random, large, range);
+				
+				Set<Integer> set = new HashSet<Integer>();
+				for(int x : b)
+					set.add(x);
+				
+				int expected = 0;
+				for(int x : a)
+					if(set.contains(x))
+						expected++;
+				
+				assertEquals(expected, Orca.overlap(a, b));
+				assertEquals(expected, Orca.overlap(b, a));
+				
+				// * subranges
+				int[] padded = new int[b.length + 2];
+				System.arraycopy(b, 0, padded, 1, b.length);
+				padded[0] = Integer.MAX_VALUE;
+				padded[padded.length - 1] = Integer.MIN_VALUE;
+				
+				assertEquals(expected, Orca.overlap(a, 0, a.length, padded, 1, padded.length - 1));
+			}
+	}
+	
+	private static int[] sorted(Random random, int size, int range)
+	{
+		return random.ints(0, range).distinct().limit(size).sorted().toArray();
+	}
+	
 	@Test
 	public void testOverlapTiming()
 	{
@@ -412,4 +452,204 @@ public class OrcaTest
 		
 		System.out.println("time: " + sum + " seconds.");
 	}
+	
+	/**
+	 * Intersects short neighbor lists with a list the size of a hub.
+	 */
+	@Test
+	public void testOverlapSkewedTiming()
+	{
+		int[] hub = sorted(Global.random(), 200000, 1000000);
+		
+		double sum = 0.0;
+		for(int i : series(1000))
+		{
+			int[] a = sorted(Global.random(), 3 + i % 100, 1000000);
+			
+			tic();
+			Orca.overlap(a, hub);
+			sum += toc();
+		}
+		
+		System.out.println("time: " + sum + " seconds.");
+	}
+	
+	@Test
+	public void testOrbitSubset()
+	{
+		UGraph<String> ugraph = randomFast(150, 600);
+		for(int i : series(1, 40))
+			ugraph.get(0).connect(ugraph.get(i * 3));
+		
+		OrcaGraph graph = OrcaGraph.fromUGraph(ugraph);
+		Orca expected = new Orca(graph, true);
+		
+		Random random = new Random(3);
+		List<int[]> subsets = new ArrayList<int[]>();
+		for(int orbit : series(73))
+			subsets.add(new int[]{orbit});
+		for(int i : series(20))
+		{
+			int[] subset = new int[1 + random.nextInt(12)];
+			for(int j : series(subset.length))
+				subset[j] = random.nextInt(73);
+			subsets.add(subset);
+		}
+		
+		for(int[] subset : subsets)
+		{
+			Set<Integer> requested = new HashSet<Integer>();
+			for(int orbit : subset)
+				requested.add(orbit);
+			
+			for(int threads : new int[]{1, 3})
+			{
+				Orca actual = new Orca(graph, true, new Orca.Options()
+						.orbits(subset).threads(threads).hubDegree(10));
+				
+				for(int node : series(graph.size()))
+					for(int orbit : series(73))
+						assertEquals(
+								requested.contains(orbit) ? expected.orbit(node, orbit) : 0, 
+								actual.orbit(node, orbit));
+			}
+		}
+	}
+	
+	@Test
+	public void testOrbitSubsetClosure()
+	{
+		boolean[] requested = new boolean[73];
+		for(int orbit : series(4))
+			requested[orbit] = true;
+		
+		// * orbits 0 to 3 need no precomputation
+		boolean[] needed = Count5.closure(requested);
+		assertTrue(Arrays.equals(requested, needed));
+		assertFalse(Count5.pairs(needed));
+		assertFalse(Count5.triples(needed));
+		
+		// * the 4-cycle orbit 8 only needs its own kernel branch
+		requested = new boolean[73];
+		requested[8] = true;
+		assertFalse(Count5.pairs(Count5.closure(requested)));
+		
+		// * the chain 56 - 65 - 70 - 72
+		requested = new boolean[73];
+		requested[56] = true;
+		needed = Count5.closure(requested);
+		for(int orbit : series(73))
+			assertEquals(orbit == 56 || orbit == 65 || orbit == 70 || orbit == 72, needed[orbit]);
+		assertTrue(Count5.triples(needed));
+	}
+	
+	@Test
+	public void testOrbitSubsetAdjacency()
+	{
+		OrcaGraph graph = OrcaGraph.fromUGraph(randomFast(100, 400));
+		
+		// * orbits 0 to 3 and the 4-cycle orbit 8 need no adjacency structure
+		for(Orca.Relabeling relabeling : Orca.Relabeling.values())
+			for(int[] subset : new int[][]{{0, 1, 2, 3}, {8}})
+				assertFalse(new Orca(graph, true, new Orca.Options()
+						.orbits(subset).relabel(relabeling)).hasAdjacency());
+		
+		assertTrue(new Orca(graph, true, new Orca.Options().orbits(45)).hasAdjacency());
+		assertTrue(new Orca(graph, true).hasAdjacency());
+		assertTrue(new Orca(graph, false).hasAdjacency());
+	}
+	
+	@Test(expected=IllegalStateException.class)
+	public void testOrbitSubsetCount()
+	{
+		new Orca(OrcaGraph.fromUGraph(randomFast(30, 60)), true, new Orca.Options().orbits(0, 1, 2))
+			.count(Graphs.k(3, ""), true);
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testOrbitSubsetCount4()
+	{
+		new Orca(OrcaGraph.fromUGraph(randomFast(30, 60)), false, new Orca.Options().orbits(2));
+	}
+	
+	@Test
+	public void testGraphlets()
+	{
+		OrcaGraph graph = OrcaGraph.fromUGraph(randomFast(100, 500));
+		
+		for(boolean count5 : new boolean[]{false, true})
+		{
+			Orca expected = new Orca(graph, count5);
+			Orca totals = new Orca(graph, count5, new Orca.Options().totalsOnly().threads(2));
+			
+			assertNull(totals.orbits());
+			
+			long[] graphlets = totals.graphlets();
+			assertEquals(count5 ? 30 : 9, graphlets.length);
+			assertEquals(graph.numLinks(), graphlets[0]);
+			
+			for(int g : series(graphlets.length))
+			{
+				assertEquals(expected.count(Orca.graphlet(g), true), graphlets[g]);
+				assertEquals(expected.count(Orca.graphlet(g), false), graphlets[g]);
+			}
+		}
+	}
+	
+	@Test
+	public void testLargeTotals()
+	{
+		// * a star with 3000 leaves has C(3000, 3) 3-stars, more than fit in an int
+		int leaves = 3000;
+		int[] from = new int[leaves], to = new int[leaves];
+		for(int i : series(leaves))
+			to[i] = i + 1;
+		
+		Orca orca = new Orca(OrcaGraph.fromEdges(leaves + 1, from, to), false);
+		
+		long expected = leaves * (leaves - 1L) * (leaves - 2L) / 6;
+		assertTrue(expected > Integer.MAX_VALUE);
+		
+		UGraph<String> star = Graphs.fromBits(BitString.parse("110100"), "");
+		assertEquals(expected, orca.count(star, false));
+		assertEquals(expected, orca.graphlets()[Orca.graphletIndex(star)]);
+	}
+	
+	@Test(expected=IllegalStateException.class)
+	public void testGraphletsNoOrbits()
+	{
+		new Orca(OrcaGraph.fromUGraph(randomFast(30, 60)), false, new Orca.Options().totalsOnly())
+			.orbit(0, 0);
+	}
+	
+	@Test
+	public void testGraphletIndex()
+	{
+		List<UGraph<String>> canonical = new ArrayList<UGraph<String>>();
+		for(int g : series(30))
+			canonical.add(Nauty.canonize(Orca.graphlet(g)));
+		
+		Set<Integer> found = new HashSet<Integer>();
+		for(int n : series(2, 6))
+			for(BitString bits : BitString.all((n*n-n)/2))
+			{
+				UGraph<String> graph = Graphs.fromBits(bits, "");
+				
+				if(! Graphs.connected(graph))
+				{
+					try {
+						Orca.graphletIndex(graph);
+						fail();
+					} catch(IllegalArgumentException e) {}
+					
+					continue;
+				}
+				
+				int index = Orca.graphletIndex(graph);
+				assertEquals(canonical.get(index), Nauty.canonize(graph));
+				found.add(index);
+			}
+		
+		assertEquals(30, found.size());
+	}
 }
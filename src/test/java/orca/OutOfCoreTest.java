@@ -0,0 +1,136 @@
+package orca;
+
+import static nl.peterbloem.kit.Series.series;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+import org.nodes.UGraph;
+import org.nodes.random.RandomGraphs;
+
+import com.sun.management.ThreadMXBean;
+
+public class OutOfCoreTest
+{
+	@Test
+	public void testOrbits()
+		throws IOException
+	{
+		UGraph<String> ugraph = RandomGraphs.randomFast(1000, 2500);
+		for(int i : series(1, 40))
+			ugraph.get(0).connect(ugraph.get(i * 7));
+		
+		OrcaGraph graph = OrcaGraph.fromUGraph(ugraph);
+		
+		Path file = Files.createTempFile("orca", ".graph"), 
+		     output = Files.createTempFile("orca", ".orbits");
+		try {
+			GraphFile.write(graph, null, file);
+			
+			for(boolean count5 : new boolean[]{false, true})
+			{
+				Orca expected = new Orca(graph, count5);
+				
+				// * one chunk, and a budget that forces many chunks
+				long full = 0;
+				for(int run : series(2))
+				{
+					OutOfCore outOfCore = new OutOfCore(file, count5, 
+							run == 0 ? Long.MAX_VALUE : full / 20);
+					long[] sums = outOfCore.count(output);
+					
+					if(run == 0)
+					{
+						assertEquals(1, outOfCore.numChunks());
+						full = outOfCore.peakMemory();
+					} else
+					{
+						assertTrue(outOfCore.numChunks() > 10);
+						assertTrue(outOfCore.peakMemory() < full);
+					}
+					
+					ByteBuffer orbits = ByteBuffer.wrap(Files.readAllBytes(output))
+							.order(ByteOrder.LITTLE_ENDIAN);
+					assertEquals(8L * graph.size() * expected.numOrbits(), orbits.remaining());
+					
+					long[] expectedSums = new long[expected.numOrbits()];
+					for(int node : series(graph.size()))
+						for(int orbit : series(expected.numOrbits()))
+						{
+							assertEquals(expected.orbit(node, orbit), orbits.getLong());
+							expectedSums[orbit] += expected.orbit(node, orbit);
+						}
+					
+					assertArrayEquals(expectedSums, sums);
+				}
+			}
+		} finally
+		{
+			Files.delete(file);
+			Files.delete(output);
+		}
+	}
+	
+	/**
+	 * On a graph where the neighborhood of the first chunk is most of the 
+	 * graph, and a budget that is a tenth of the graph itself.
+	 */
+	@Test
+	public void testBudget()
+		throws IOException
+	{
+		OrcaGraph graph = OrcaGraph.fromUGraph(RandomGraphs.randomFast(20000, 60000));
+		long graphMemory = 4L * (graph.offsets().length + graph.targets().length);
+		long budget = graphMemory / 10;
+		
+		Path file = Files.createTempFile("orca", ".graph"), 
+		     output = Files.createTempFile("orca", ".orbits");
+		try {
+			GraphFile.write(graph, null, file);
+			MappedGraph mapped = MappedGraph.open(file);
+			
+			int[] chunk = new int[1024];
+			for(int i : series(chunk.length))
+				chunk[i] = i;
+			
+			ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+			assertTrue(threads.isThreadAllocatedMemorySupported());
+			long thread = Thread.currentThread().getId();
+			
+			for(boolean count5 : new boolean[]{false, true})
+			{
+				assertTrue(Neighborhood.of(mapped, chunk, count5, Long.MAX_VALUE).memory() > graphMemory);
+				
+				// * the chunk is rejected before its neighborhood is copied
+				long before = threads.getThreadAllocatedBytes(thread);
+				assertNull(Neighborhood.of(mapped, chunk, count5, budget));
+				assertTrue(threads.getThreadAllocatedBytes(thread) - before < budget);
+			}
+			
+			OutOfCore outOfCore = new OutOfCore(file, false, budget);
+			long[] sums = outOfCore.count(output);
+			
+			assertTrue(outOfCore.numChunks() > 1);
+			assertTrue(outOfCore.peakMemory() <= budget);
+			
+			Orca expected = new Orca(graph, false);
+			for(int orbit : series(expected.numOrbits()))
+			{
+				long sum = 0;
+				for(int node : series(graph.size()))
+					sum += expected.orbit(node, orbit);
+				assertEquals(sum, sums[orbit]);
+			}
+		} finally
+		{
+			Files.delete(file);
+			Files.delete(output);
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package orca;
+
+import static nl.peterbloem.kit.BitString.parse;
+import static nl.peterbloem.kit.Series.series;
+import static org.junit.Assert.*;
+import static org.nodes.Graphs.fromBits;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+import org.nodes.UGraph;
+import org.nodes.random.RandomGraphs;
+
+public class ParallelTest
+{
+	@Test
+	public void testThreads()
+	{
+		// * A star attached to a random graph, so that the chunks are uneven
+		UGraph<String> ugraph = RandomGraphs.randomFast(300, 1500);
+		for(int i : series(1, 150))
+			ugraph.get(0).connect(ugraph.get(i));
+		
+		OrcaGraph graph = OrcaGraph.fromUGraph(ugraph);
+		
+		for(boolean count5 : new boolean[]{false, true})
+		{
+			Orca expected = new Orca(graph, count5);
+			
+			for(int threads : new int[]{2, 3, 4})
+			{
+				Orca actual = new Orca(graph, count5, new Orca.Options().threads(threads));
+				assertSame(expected, actual, ugraph.size());
+			}
+		}
+	}
+	
+	@Test
+	public void testHubs()
+	{
+		UGraph<String> ugraph = RandomGraphs.randomFast(200, 800);
+		for(int i : series(1, 120))
+			ugraph.get(0).connect(ugraph.get(i));
+		for(int i : series(60, 160))
+			ugraph.get(1).connect(ugraph.get(i));
+		
+		OrcaGraph graph = OrcaGraph.fromUGraph(ugraph);
+		
+		Orca expected = new Orca(graph, true);
+		
+		for(int hubDegree : new int[]{1, 20, 100})
+			for(int threads : new int[]{2, 4})
+			{
+				Orca actual = new Orca(graph, true, 
+						new Orca.Options().threads(threads).hubDegree(hubDegree));
+				assertSame(expected, actual, ugraph.size());
+				
+				UGraph<String> star = fromBits(parse("110100"), "");
+				assertEquals(expected.count(star, false), actual.count(star, false));
+			}
+	}
+	
+	@Test
+	public void testExecutor()
+	{
+		UGraph<String> ugraph = RandomGraphs.randomFast(100, 400);
+		OrcaGraph graph = OrcaGraph.fromUGraph(ugraph);
+		
+		Orca expected = new Orca(graph, true);
+		
+		ExecutorService service = Executors.newFixedThreadPool(3);
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			assertSame(expected, 
+					new Orca(graph, true, new Orca.Options().executor(service)), 
+					ugraph.size());
+			assertSame(expected, 
+					new Orca(graph, true, new Orca.Options().executor(pool)), 
+					ugraph.size());
+		} finally {
+			service.shutdown();
+			pool.shutdown();
+		}
+	}
+	
+	@Test
+	public void testCount()
+	{
+		UGraph<String> ugraph = RandomGraphs.randomFast(100, 400);
+		OrcaGraph graph = OrcaGraph.fromUGraph(ugraph);
+		
+		Orca expected = new Orca(graph, true);
+		Orca actual = new Orca(graph, true, new Orca.Options().threads(4));
+		
+		UGraph<String> triangle = fromBits(parse("111"), "");
+		UGraph<String> path = fromBits(parse("110100"), "");
+		
+		assertEquals(expected.count(triangle, false), actual.count(triangle, false));
+		assertEquals(expected.count(path, false), actual.count(path, false));
+	}
+	
+	private static void assertSame(Orca expected, Orca actual, int size)
+	{
+		assertEquals(expected.numOrbits(), actual.numOrbits());
+		
+		for(int node : series(size))
+			for(int orbit : series(expected.numOrbits()))
+				assertEquals(expected.orbit(node, orbit), actual.orbit(node, orbit));
+	}
+}
@@ -0,0 +1,71 @@
+package orca;
+
+import static nl.peterbloem.kit.Series.series;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.nodes.Graphs;
+import org.nodes.UGraph;
+import org.nodes.random.RandomGraphs;
+
+public class TrianglesTest
+{
+	@Test
+	public void testCounts()
+	{
+		UGraph<String> ugraph = RandomGraphs.randomFast(100, 800);
+		for(int i : series(1, 60))
+			ugraph.get(0).connect(ugraph.get(i));
+		
+		OrcaGraph graph = OrcaGraph.fromUGraph(ugraph);
+		Triangles triangles = Triangles.of(graph);
+		
+		for(int i : series(graph.size()))
+		{
+			long total = 0;
+			for(int index : series(graph.degree(i)))
+			{
+				int j = graph.neighbor(i, index);
+				
+				int expected = Orca.overlap(graph.neighbors(i), graph.neighbors(j));
+				assertEquals(expected, triangles.count(i, index));
+				
+				total += expected;
+			}
+			
+			assertEquals(total / 2, triangles.count(i));
+		}
+	}
+	
+	@Test
+	public void testClustering()
+	{
+		// * K_5 has clustering 1
+		Triangles clique = Triangles.of(OrcaGraph.fromUGraph(Graphs.k(5, "")));
+		for(int i : series(5))
+			assertEquals(1.0, clique.clustering(i), 0.0);
+		
+		// * the triangle 0-1-2 with a pendant node 3 on node 0: one of the 
+		//   three pairs of neighbors of node 0 is linked, and node 3 has a 
+		//   single neighbor
+		Triangles paw = Triangles.of(OrcaGraph.fromEdges(4, 
+				new int[]{0, 0, 0, 1}, new int[]{1, 2, 3, 2}));
+		
+		assertEquals(1.0/3.0, paw.clustering(0), 1e-12);
+		assertEquals(1.0, paw.clustering(1), 0.0);
+		assertEquals(0.0, paw.clustering(3), 0.0);
+	}
+	
+	@Test
+	public void testOrca()
+	{
+		OrcaGraph graph = OrcaGraph.fromUGraph(RandomGraphs.randomFast(100, 500));
+		
+		Triangles expected = Triangles.of(graph);
+		Triangles actual = new Orca(graph, false, new Orca.Options().threads(3)).triangles();
+		
+		for(int i : series(graph.size()))
+			for(int index : series(graph.degree(i)))
+				assertEquals(expected.count(i, index), actual.count(i, index));
+	}
+}